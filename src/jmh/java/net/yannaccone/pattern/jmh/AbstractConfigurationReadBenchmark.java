@@ -0,0 +1,314 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yannaccone.pattern.factory.Configuration;
+import net.yannaccone.pattern.factory.ConfigurationException;
+import net.yannaccone.pattern.factory.ConfigurationUtil;
+import net.yannaccone.pattern.factory.ImmutableConfiguration;
+import net.yannaccone.pattern.factory.LayeredConfiguration;
+import net.yannaccone.pattern.factory.MapConfiguration;
+import net.yannaccone.pattern.factory.PersistentConfiguration;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+import net.yannaccone.pattern.factory.SlotMapConfiguration;
+import net.yannaccone.pattern.factory.TypedConfiguration;
+
+/**
+ * Benchmarks property reads against each Configuration implementation
+ * holding the same properties, and ConfigurationUtil.cast.
+ * <p>
+ * The PropertiesConfiguration holds its properties at the bottom of a chain
+ * of depth defaults, each level of which holds as many unrelated properties,
+ * so that every read walks the chain as a read of a real defaulted
+ * configuration does.  The LayeredConfiguration has the same levels as
+ * layers; the other implementations hold the flattened properties.
+ * <p>
+ * The subclasses differ only in the number of threads calling the benchmark
+ * methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class AbstractConfigurationReadBenchmark {
+  
+  /**
+   * The number of properties read.
+   */
+  @Param({"16", "256"})
+  public int properties;
+  
+  /**
+   * The number of defaults below the PropertiesConfiguration, and of layers
+   * below the top of the LayeredConfiguration.
+   */
+  @Param({"0", "4"})
+  public int depth;
+  
+  /*
+   * 
+   */
+  PropertiesConfiguration propertiesConfiguration;
+  
+  /*
+   * 
+   */
+  MapConfiguration mapConfiguration;
+  
+  /*
+   * 
+   */
+  ImmutableConfiguration immutableConfiguration;
+  
+  /*
+   * 
+   */
+  LayeredConfiguration layeredConfiguration;
+  
+  /*
+   * 
+   */
+  PersistentConfiguration persistentConfiguration;
+  
+  /*
+   * 
+   */
+  SlotMapConfiguration slotMapConfiguration;
+  
+  /*
+   * The configuration cast by the cast benchmark, typed as Configuration so
+   * that the check is not folded away
+   */
+  Configuration configuration;
+  
+  /*
+   * 
+   */
+  final String[] keys = new String[Cursor.KEYS];
+  
+  /*
+   * 
+   */
+  final int[] slots = new int[Cursor.KEYS];
+
+  /**
+   * Build the configurations and the keys.
+   */
+  @Setup
+  public void setUp() {
+    
+    String[] names = new String[properties];
+    Properties bottom = new Properties();
+    
+    for (int i = 0; i < properties; i++) {
+      
+      names[i] = "property." + i;
+      bottom.setProperty(names[i], String.valueOf(i));
+    }
+    
+    /* build the chain of defaults upwards from the properties read */
+    Properties top = bottom;
+    TypedConfiguration[] layers = new TypedConfiguration[depth + 1];
+    
+    layers[0] = ImmutableConfiguration.of(bottom);
+    
+    for (int d = 1; d <= depth; d++) {
+      
+      Properties level = d==depth ? new PropertiesConfiguration(top) : new Properties(top);
+      Properties own = new Properties();
+      
+      for (int i = 0; i < properties; i++) {
+        
+        level.setProperty("level" + d + "." + i, String.valueOf(i));
+        own.setProperty("level" + d + "." + i, String.valueOf(i));
+      }
+      
+      layers[d] = ImmutableConfiguration.of(own);
+      top = level;
+    }
+    
+    if (depth==0) {
+      
+      propertiesConfiguration = new PropertiesConfiguration();
+      propertiesConfiguration.putAll(bottom);
+      
+    } else {
+      
+      propertiesConfiguration = (PropertiesConfiguration) top;
+    }
+    
+    immutableConfiguration = ImmutableConfiguration.of(propertiesConfiguration);
+    layeredConfiguration = new LayeredConfiguration(layers);
+    persistentConfiguration = PersistentConfiguration.of(immutableConfiguration);
+    mapConfiguration = new MapConfiguration();
+    
+    for (String key : immutableConfiguration.stringPropertyNames()) {
+      
+      mapConfiguration.add(key, immutableConfiguration.getProperty(key));
+    }
+    
+    slotMapConfiguration = new SlotMapConfiguration(SlotMapConfiguration.Layout.of(names));
+    
+    for (int i = 0; i < properties; i++) {
+      
+      slotMapConfiguration.setLong(i, i);
+    }
+    
+    configuration = propertiesConfiguration;
+    
+    for (int i = 0; i < Cursor.KEYS; i++) {
+      
+      /* spread the keys across the properties rather than repeating the head */
+      slots[i] = (int) ((long) i * 7919 % properties);
+      keys[i] = names[slots[i]];
+    }
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String propertiesGetProperty(Cursor cursor) {
+    
+    return propertiesConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String mapGetProperty(Cursor cursor) {
+    
+    return mapConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String immutableGetProperty(Cursor cursor) {
+    
+    return immutableConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String layeredGetProperty(Cursor cursor) {
+    
+    return layeredConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String persistentGetProperty(Cursor cursor) {
+    
+    return persistentConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   */
+  @Benchmark
+  public String slotMapGetProperty(Cursor cursor) {
+    
+    return slotMapConfiguration.getProperty(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the parsed property value
+   * @throws ConfigurationException if the value is not an int
+   */
+  @Benchmark
+  public int propertiesGetInt(Cursor cursor) throws ConfigurationException {
+    
+    return propertiesConfiguration.getInt(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the parsed property value
+   * @throws ConfigurationException if the value is not an int
+   */
+  @Benchmark
+  public int mapGetInt(Cursor cursor) throws ConfigurationException {
+    
+    return mapConfiguration.getInt(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the parsed property value
+   * @throws ConfigurationException if the value is not an int
+   */
+  @Benchmark
+  public int immutableGetInt(Cursor cursor) throws ConfigurationException {
+    
+    return immutableConfiguration.getInt(keys[cursor.next()]);
+  }
+
+  /**
+   * @param cursor the calling thread's position in the keys
+   * @return the property value
+   * @throws ConfigurationException if the value is not a long
+   */
+  @Benchmark
+  public long slotMapGetLongBySlot(Cursor cursor) throws ConfigurationException {
+    
+    return slotMapConfiguration.getLong(slots[cursor.next()]);
+  }
+
+  /**
+   * @return the cast configuration
+   * @throws Exception if the configuration is not a PropertiesConfiguration
+   */
+  @Benchmark
+  public PropertiesConfiguration cast() throws Exception {
+    
+    return ConfigurationUtil.cast(configuration, PropertiesConfiguration.class);
+  }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yannaccone.pattern.factory.FactoryException;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+import net.yannaccone.pattern.jmh.generated.Families;
+
+/**
+ * The state shared by the factory create benchmarks: a factory of each kind
+ * over a generated Family of the requested size, and the keys the benchmarks
+ * cycle through.  Hit keys name implementations spread across the family;
+ * miss keys name none, so that the benchmarks measure the cost of failing
+ * lookups as well as successful ones.
+ * <p>
+ * The subclasses differ only in the number of threads calling the benchmark
+ * methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class AbstractFactoryCreateBenchmark {
+  
+  /**
+   * The number of implementations in the family.
+   */
+  @Param({"10", "100", "1000", "10000"})
+  public int implementations;
+  
+  /**
+   * Whether the keys resolve to an implementation ("hit") or not ("miss").
+   */
+  @Param({"hit", "miss"})
+  public String key;
+  
+  /**
+   * Whether the factories record metrics.
+   */
+  @Param({"false", "true"})
+  public boolean metrics;
+  
+  /*
+   * 
+   */
+  ComponentFactory baseFactory;
+  
+  /*
+   * 
+   */
+  ComponentBinaryFactory binaryFactory;
+  
+  /*
+   * 
+   */
+  ComponentTernaryFactory ternaryFactory;
+  
+  /*
+   * 
+   */
+  ConfigurableComponentFactory configurableFactory;
+  
+  /*
+   * 
+   */
+  PropertiesConfiguration configuration;
+  
+  /*
+   * 
+   */
+  final String[] kinds = new String[Cursor.KEYS];
+  
+  /*
+   * 
+   */
+  final String[] variants = new String[Cursor.KEYS];
+  
+  /*
+   * 
+   */
+  final String[] flavors = new String[Cursor.KEYS];
+
+  /**
+   * Create the factories, which scans the family, and the keys.
+   * 
+   * @throws FactoryException if a factory cannot be created
+   */
+  @Setup
+  public void setUp() throws FactoryException {
+    
+    Family family = Families.get(implementations);
+    boolean hit = "hit".equals(key);
+    
+    baseFactory = new ComponentFactory(family);
+    binaryFactory = new ComponentBinaryFactory(family);
+    ternaryFactory = new ComponentTernaryFactory(family);
+    configurableFactory = new ConfigurableComponentFactory(family);
+    
+    if (metrics) {
+      
+      baseFactory.enableMetrics();
+      binaryFactory.enableMetrics();
+      ternaryFactory.enableMetrics();
+      configurableFactory.enableMetrics();
+    }
+    
+    configuration = new PropertiesConfiguration();
+    configuration.setProperty("value", "42");
+    
+    for (int i = 0; i < Cursor.KEYS; i++) {
+      
+      /* spread the keys across the family rather than repeating its head */
+      int index = (int) ((long) i * 7919 % implementations);
+      
+      kinds[i] = hit ? family.kindKey(index) : "missing-" + i;
+      variants[i] = family.variantKey(index);
+      flavors[i] = family.flavorKey(index);
+    }
+    
+    if (hit) {
+      
+      /* fail at setup rather than measuring exceptions labelled as hits */
+      baseFactory.create(kinds[0]);
+      binaryFactory.create(kinds[0], variants[0]);
+      ternaryFactory.create(kinds[0], variants[0], flavors[0]);
+    }
+  }
+  
+  /**
+   * Create an instance with the BaseFactory.
+   * 
+   * @param cursor the calling thread's position in the keys
+   * @return the created instance, or the FactoryException of a miss
+   */
+  @Benchmark
+  public Object baseFactory(Cursor cursor) {
+    
+    try {
+      
+      return baseFactory.create(kinds[cursor.next()]);
+      
+    } catch (FactoryException e) {
+      
+      return e;
+    }
+  }
+  
+  /**
+   * Create an instance with the BaseBinaryFactory.
+   * 
+   * @param cursor the calling thread's position in the keys
+   * @return the created instance, or the FactoryException of a miss
+   */
+  @Benchmark
+  public Object binaryFactory(Cursor cursor) {
+    
+    int i = cursor.next();
+    
+    try {
+      
+      return binaryFactory.create(kinds[i], variants[i]);
+      
+    } catch (FactoryException e) {
+      
+      return e;
+    }
+  }
+  
+  /**
+   * Create an instance with the BaseTernaryFactory.
+   * 
+   * @param cursor the calling thread's position in the keys
+   * @return the created instance, or the FactoryException of a miss
+   */
+  @Benchmark
+  public Object ternaryFactory(Cursor cursor) {
+    
+    int i = cursor.next();
+    
+    try {
+      
+      return ternaryFactory.create(kinds[i], variants[i], flavors[i]);
+      
+    } catch (FactoryException e) {
+      
+      return e;
+    }
+  }
+  
+  /**
+   * Create and configure an instance with the BaseConfigurableFactory.
+   * 
+   * @param cursor the calling thread's position in the keys
+   * @return the created and configured instance, or the exception of a miss
+   */
+  @Benchmark
+  public Object configurableFactory(Cursor cursor) {
+    
+    try {
+      
+      return configurableFactory.create(kinds[cursor.next()], configuration);
+      
+    } catch (Exception e) {
+      
+      return e;
+    }
+  }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads the value of the generated family annotations, which all declare a
+ * single String value.  It is only used while the factories build their
+ * registries, outside of the measured code.
+ */
+final class AnnotationValues {
+
+  /*
+   * 
+   */
+  private AnnotationValues() {
+  }
+  
+  /**
+   * Get the value of an annotation.
+   * 
+   * @param annotation the annotation
+   * @return its value
+   */
+  static String value(Annotation annotation) {
+    
+    try {
+      
+      return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+      
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      
+      throw new IllegalStateException("Cannot read the value of " + annotation, e);
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.time.Duration;
+import java.util.List;
+
+import net.yannaccone.pattern.factory.ConfigurationProperty;
+
+/**
+ * The properties of ManualSettings and TypedSettings, bound with
+ * ConfigurationUtil.bind.
+ */
+public class BoundSettings {
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty("host")
+  String host;
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty("port")
+  int port;
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty("timeout")
+  Duration timeout;
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty(value = "buffer.size", defaultValue = "64k", bytes = true)
+  long bufferSize;
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty(value = "enabled", defaultValue = "true")
+  boolean enabled;
+  
+  /*
+   * 
+   */
+  @ConfigurationProperty(value = "tags", required = false)
+  List<String> tags;
+
+}
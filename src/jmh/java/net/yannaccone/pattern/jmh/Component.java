@@ -0,0 +1,37 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import net.yannaccone.pattern.factory.Configurable;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+
+/**
+ * The base type of the generated implementation families created by the
+ * benchmarked factories.
+ */
+public interface Component extends Configurable<PropertiesConfiguration> {
+
+  /**
+   * Get the configured value.
+   * 
+   * @return the value
+   */
+  int value();
+
+}
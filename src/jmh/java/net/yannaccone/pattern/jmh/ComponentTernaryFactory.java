@@ -0,0 +1,132 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.lang.annotation.Annotation;
+
+import net.yannaccone.pattern.factory.BaseTernaryFactory;
+
+/**
+ * A BaseTernaryFactory over the kinds, variants and flavors of a Family.
+ */
+public final class ComponentTernaryFactory
+    extends BaseTernaryFactory<Component, Annotation, Annotation, Annotation> {
+  
+  /*
+   * 
+   */
+  private final Class<Annotation> kind;
+  
+  /*
+   * 
+   */
+  private final Class<Annotation> variant;
+  
+  /*
+   * 
+   */
+  private final Class<Annotation> flavor;
+
+  /**
+   * @param family the Family whose implementations are created
+   */
+  @SuppressWarnings("unchecked")
+  public ComponentTernaryFactory(Family family) {
+    
+    super(Family.PACKAGE);
+    this.kind = (Class<Annotation>) family.kind();
+    this.variant = (Class<Annotation>) family.variant();
+    this.flavor = (Class<Annotation>) family.flavor();
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#baseClass()
+   */
+  @Override
+  protected Class<Component> baseClass() {
+    
+    return Component.class;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#instantiateSubClass(java.lang.Class)
+   */
+  @Override
+  @SuppressWarnings("deprecation")
+  protected Component instantiateSubClass(Class<?> subClass) throws IllegalAccessException,
+      InstantiationException {
+    
+    return subClass.asSubclass(Component.class).newInstance();
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type1AnnotationClass()
+   */
+  @Override
+  protected Class<Annotation> type1AnnotationClass() {
+    
+    return kind;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type2AnnotationClass()
+   */
+  @Override
+  protected Class<Annotation> type2AnnotationClass() {
+    
+    return variant;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type3AnnotationClass()
+   */
+  @Override
+  protected Class<Annotation> type3AnnotationClass() {
+    
+    return flavor;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type1AnnotationValue(java.lang.annotation.Annotation)
+   */
+  @Override
+  protected String type1AnnotationValue(Annotation annotation) {
+    
+    return AnnotationValues.value(annotation);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type2AnnotationValue(java.lang.annotation.Annotation)
+   */
+  @Override
+  protected String type2AnnotationValue(Annotation annotation) {
+    
+    return AnnotationValues.value(annotation);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseTernaryFactory#type3AnnotationValue(java.lang.annotation.Annotation)
+   */
+  @Override
+  protected String type3AnnotationValue(Annotation annotation) {
+    
+    return AnnotationValues.value(annotation);
+  }
+
+}
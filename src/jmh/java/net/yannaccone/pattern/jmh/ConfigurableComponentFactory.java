@@ -0,0 +1,85 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.lang.annotation.Annotation;
+
+import net.yannaccone.pattern.factory.BaseConfigurableFactory;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+
+/**
+ * A BaseConfigurableFactory over the kinds of a Family.
+ */
+public final class ConfigurableComponentFactory
+    extends BaseConfigurableFactory<Component, Annotation, PropertiesConfiguration> {
+  
+  /*
+   * 
+   */
+  private final Class<Annotation> kind;
+
+  /**
+   * @param family the Family whose implementations are created
+   */
+  @SuppressWarnings("unchecked")
+  public ConfigurableComponentFactory(Family family) {
+    
+    super(Family.PACKAGE);
+    this.kind = (Class<Annotation>) family.kind();
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseFactory#baseClass()
+   */
+  @Override
+  protected Class<Component> baseClass() {
+    
+    return Component.class;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseFactory#instantiateSubClass(java.lang.Class)
+   */
+  @Override
+  @SuppressWarnings("deprecation")
+  protected Component instantiateSubClass(Class<?> subClass) throws IllegalAccessException,
+      InstantiationException {
+    
+    return subClass.asSubclass(Component.class).newInstance();
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseFactory#annotationClass()
+   */
+  @Override
+  protected Class<Annotation> annotationClass() {
+    
+    return kind;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.BaseFactory#annotationValue(java.lang.annotation.Annotation)
+   */
+  @Override
+  protected String annotationValue(Annotation annotation) {
+    
+    return AnnotationValues.value(annotation);
+  }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yannaccone.pattern.factory.ConfigurationException;
+import net.yannaccone.pattern.factory.ConfigurationUtil;
+import net.yannaccone.pattern.factory.ImmutableConfiguration;
+import net.yannaccone.pattern.factory.MapConfiguration;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+
+/**
+ * Benchmarks the full cost of configuring a representative Configurable:
+ * a new instance configured from six properties of the common types, by
+ * hand, through the typed accessors of each configuration, after schema
+ * validation, and by binding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConfigureBenchmark {
+  
+  /*
+   * The defaults, below the properties set per instance
+   */
+  private PropertiesConfiguration propertiesConfiguration;
+  
+  /*
+   * 
+   */
+  private ImmutableConfiguration immutableConfiguration;
+  
+  /*
+   * 
+   */
+  private MapConfiguration mapConfiguration;
+
+  /**
+   * Build the configurations.
+   */
+  @Setup
+  public void setUp() {
+    
+    PropertiesConfiguration defaults = new PropertiesConfiguration();
+    
+    defaults.setProperty("timeout", "30s");
+    defaults.setProperty("buffer.size", "256k");
+    defaults.setProperty("tags", "alpha, beta, gamma");
+    
+    propertiesConfiguration = new PropertiesConfiguration(defaults);
+    propertiesConfiguration.setProperty("host", "localhost");
+    propertiesConfiguration.setProperty("port", "8080");
+    propertiesConfiguration.setProperty("enabled", "false");
+    
+    immutableConfiguration = ImmutableConfiguration.of(propertiesConfiguration);
+    mapConfiguration = new MapConfiguration();
+    
+    for (String key : immutableConfiguration.stringPropertyNames()) {
+      
+      mapConfiguration.add(key, immutableConfiguration.getProperty(key));
+    }
+  }
+
+  /**
+   * @return the configured instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public ManualSettings manualProperties() throws ConfigurationException {
+    
+    ManualSettings settings = new ManualSettings();
+    settings.configure(propertiesConfiguration);
+    
+    return settings;
+  }
+
+  /**
+   * @return the configured instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public TypedSettings typedProperties() throws ConfigurationException {
+    
+    TypedSettings settings = new TypedSettings();
+    settings.configure(propertiesConfiguration);
+    
+    return settings;
+  }
+
+  /**
+   * @return the configured instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public TypedSettings typedMap() throws ConfigurationException {
+    
+    TypedSettings settings = new TypedSettings();
+    settings.configure(mapConfiguration);
+    
+    return settings;
+  }
+
+  /**
+   * @return the configured instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public TypedSettings typedImmutable() throws ConfigurationException {
+    
+    TypedSettings settings = new TypedSettings();
+    settings.configure(immutableConfiguration);
+    
+    return settings;
+  }
+
+  /**
+   * @return the configured instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public TypedSettings validatedTypedImmutable() throws ConfigurationException {
+    
+    ConfigurationUtil.validate(TypedSettings.class, immutableConfiguration);
+    
+    TypedSettings settings = new TypedSettings();
+    settings.configure(immutableConfiguration);
+    
+    return settings;
+  }
+
+  /**
+   * @return the bound instance
+   * @throws ConfigurationException if the configuration is invalid
+   */
+  @Benchmark
+  public BoundSettings boundImmutable() throws ConfigurationException {
+    
+    return ConfigurationUtil.bind(immutableConfiguration, BoundSettings.class);
+  }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A per-thread position in the precomputed keys of a benchmark, so that
+ * threads cycle through the keys without sharing a counter.
+ */
+@State(Scope.Thread)
+public class Cursor {
+  
+  /**
+   * The number of precomputed keys; a power of two so a cursor wraps with a
+   * mask.
+   */
+  public static final int KEYS = 1024;
+  
+  /*
+   * 
+   */
+  private int next;
+  
+  /**
+   * Start each thread at a different key.
+   */
+  @Setup
+  public void setUp() {
+    
+    next = (int) Thread.currentThread().getId() * 31;
+  }
+
+  /**
+   * Get the index of the next key.
+   * 
+   * @return an index into the keys
+   */
+  public int next() {
+    
+    return next++ & (KEYS - 1);
+  }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * A generated family of Component implementations.  Each family declares its
+ * own annotation types, so the registry of a factory over a family holds
+ * exactly size() implementations.
+ * <p>
+ * Implementation i of a family is annotated with the kind "k" + i, the
+ * variant "v" + (i % 8) and the flavor "f" + (i % 2), so that every
+ * implementation has a unique key for the base, binary and ternary factories.
+ * The families are generated by the generateJmhFamilies Gradle task.
+ */
+public interface Family {
+  
+  /**
+   * The root package scanned by the benchmarked factories.
+   */
+  String PACKAGE = "net.yannaccone.pattern.jmh";
+  
+  /**
+   * Get the number of implementations.
+   * 
+   * @return the number of implementations
+   */
+  int size();
+  
+  /**
+   * Get the annotation holding the kind of each implementation.
+   * 
+   * @return the kind annotation type
+   */
+  Class<? extends Annotation> kind();
+  
+  /**
+   * Get the annotation holding the variant of each implementation.
+   * 
+   * @return the variant annotation type
+   */
+  Class<? extends Annotation> variant();
+  
+  /**
+   * Get the annotation holding the flavor of each implementation.
+   * 
+   * @return the flavor annotation type
+   */
+  Class<? extends Annotation> flavor();
+  
+  /**
+   * Get the kind of an implementation.
+   * 
+   * @param i the index of the implementation
+   * @return the kind
+   */
+  default String kindKey(int i) {
+    
+    return "k" + i;
+  }
+  
+  /**
+   * Get the variant of an implementation.
+   * 
+   * @param i the index of the implementation
+   * @return the variant
+   */
+  default String variantKey(int i) {
+    
+    return "v" + (i % 8);
+  }
+  
+  /**
+   * Get the flavor of an implementation.
+   * 
+   * @param i the index of the implementation
+   * @return the flavor
+   */
+  default String flavorKey(int i) {
+    
+    return "f" + (i % 2);
+  }
+
+}
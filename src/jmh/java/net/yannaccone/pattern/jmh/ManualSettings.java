@@ -0,0 +1,104 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.time.Duration;
+import java.util.List;
+
+import net.yannaccone.pattern.factory.Configurable;
+import net.yannaccone.pattern.factory.ConfigurationException;
+import net.yannaccone.pattern.factory.ConfigurationUtil;
+import net.yannaccone.pattern.factory.PropertiesConfiguration;
+
+/**
+ * A Configurable that reads and parses its properties by hand on every
+ * configure, as implementations written against PropertiesConfiguration
+ * alone do.
+ */
+public class ManualSettings implements Configurable<PropertiesConfiguration> {
+  
+  /*
+   * 
+   */
+  String host;
+  
+  /*
+   * 
+   */
+  int port;
+  
+  /*
+   * 
+   */
+  Duration timeout;
+  
+  /*
+   * 
+   */
+  long bufferSize;
+  
+  /*
+   * 
+   */
+  boolean enabled;
+  
+  /*
+   * 
+   */
+  List<String> tags;
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.Configurable#configure(net.yannaccone.pattern.factory.Configuration)
+   */
+  @Override
+  public void configure(PropertiesConfiguration configuration) throws ConfigurationException {
+    
+    host = require(configuration, "host");
+    port = ConfigurationUtil.parseInt("port", require(configuration, "port"));
+    
+    if (port<1 || port>65535) {
+      
+      throw new ConfigurationException("Invalid value " + port + " of property port");
+    }
+    
+    timeout = ConfigurationUtil.parseDuration("timeout", require(configuration, "timeout"));
+    bufferSize = ConfigurationUtil.parseBytes("buffer.size",
+        configuration.getProperty("buffer.size", "64k"));
+    enabled = ConfigurationUtil.parseBoolean("enabled",
+        configuration.getProperty("enabled", "true"));
+    tags = ConfigurationUtil.parseList("tags", configuration.getProperty("tags"));
+  }
+  
+  /*
+   * Get a property that must be set.
+   */
+  private static String require(PropertiesConfiguration configuration, String key)
+      throws ConfigurationException {
+    
+    String value = configuration.getProperty(key);
+    
+    if (value==null) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return value;
+  }
+
+}
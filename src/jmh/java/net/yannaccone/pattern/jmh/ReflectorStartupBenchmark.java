@@ -0,0 +1,231 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.yannaccone.pattern.reflector.Reflector;
+
+/**
+ * Measures the cold start of the Reflector: the first initialize of a JVM
+ * followed by the lookup of the annotated classes, as the first create of a
+ * factory does.  Each fork measures exactly one initialize, so the number of
+ * forks is the number of samples.
+ * <p>
+ * The classes scanned are those of a SyntheticClasspath of the requested
+ * shape, loaded by a URLClassLoader that is made the context class loader
+ * for the scan.  The roots parameter selects how the scan is rooted: at the
+ * single package shared by every jar, or at the package of each jar.
+ * <p>
+ * Alongside the time, the Footprint counters report the number of classes
+ * loaded and the heap retained by the scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, batchSize = 1)
+@Fork(10)
+public class ReflectorStartupBenchmark {
+  
+  /**
+   * The number of jars.
+   */
+  @Param({"1", "10", "50"})
+  public int jars;
+  
+  /**
+   * The number of classes in each jar.
+   */
+  @Param({"100", "1000"})
+  public int classes;
+  
+  /**
+   * The percentage of the classes that are annotated.
+   */
+  @Param({"10"})
+  public int annotatedPercent;
+  
+  /**
+   * How the scan is rooted: "shared" or "perJar".
+   */
+  @Param({"shared", "perJar"})
+  public String roots;
+  
+  /*
+   * 
+   */
+  private SyntheticClasspath classpath;
+  
+  /*
+   * 
+   */
+  private URLClassLoader loader;
+  
+  /*
+   * 
+   */
+  private String[] packages;
+  
+  /*
+   * The number of annotated classes found by the scan
+   */
+  private int found;
+
+  /**
+   * Generate or reuse the jars and create their class loader.
+   * 
+   * @throws IOException if the jars cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    
+    classpath = SyntheticClasspath.generate(
+        Paths.get(System.getProperty("java.io.tmpdir"), "pattern-jmh"), jars, classes,
+        annotatedPercent);
+    loader = new URLClassLoader(classpath.urls(), getClass().getClassLoader());
+    packages = classpath.roots("perJar".equals(roots));
+  }
+
+  /**
+   * Check that the scan found every annotated class, and close the class
+   * loader.
+   * 
+   * @throws IOException if the class loader cannot be closed
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    
+    loader.close();
+    
+    if (found!=classpath.annotated()) {
+      
+      throw new IllegalStateException("Found " + found + " annotated classes; expected " +
+          classpath.annotated());
+    }
+  }
+  
+  /**
+   * The class loading and heap cost of the measured scan.  The heap is
+   * measured after a full collection on either side of the iteration, so
+   * retainedBytes is what the Reflector keeps rather than what the scan
+   * allocated.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+    
+    /**
+     * The number of classes loaded during the iteration.
+     */
+    public long classesLoaded;
+    
+    /**
+     * The growth of the used heap across the iteration.
+     */
+    public long retainedBytes;
+    
+    /*
+     * 
+     */
+    private long loadedBefore;
+    
+    /*
+     * 
+     */
+    private long heapBefore;
+
+    /**
+     * Record the class and heap counts before the iteration.
+     */
+    @Setup(Level.Iteration)
+    public void before() {
+      
+      heapBefore = usedHeap();
+      loadedBefore = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+    }
+
+    /**
+     * Compute the counters after the iteration.
+     */
+    @TearDown(Level.Iteration)
+    public void after() {
+      
+      classesLoaded = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() -
+          loadedBefore;
+      retainedBytes = usedHeap() - heapBefore;
+    }
+    
+    /*
+     * Get the used heap after a full collection.
+     */
+    private static long usedHeap() {
+      
+      System.gc();
+      System.gc();
+      
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+  }
+
+  /**
+   * @param footprint the counters of the iteration
+   * @return the number of annotated classes found
+   */
+  @Benchmark
+  public int initialize(Footprint footprint) {
+    
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    
+    thread.setContextClassLoader(loader);
+    
+    try {
+      
+      Reflector.initialize(packages);
+      found = Reflector.resolveAnnotatedClass(SyntheticComponent.class).size();
+      
+      return found;
+      
+    } finally {
+      
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.StringMemberValue;
+
+/**
+ * A generated set of jars to scan.  Every jar holds the package
+ * synthetic.j&lt;n&gt;, where n is the index of the jar, and the same number
+ * of classes, an even share of which are annotated with SyntheticComponent.
+ * <p>
+ * The jars are written once per shape below a directory and reused by later
+ * calls, so that the forks of a benchmark do not each generate them.
+ */
+public final class SyntheticClasspath {
+  
+  /**
+   * The root package of the generated classes.
+   */
+  public static final String ROOT = "synthetic";
+  
+  /*
+   * The file written after the last jar, whose presence marks a complete set
+   */
+  private static final String COMPLETE = "complete";
+  
+  /*
+   * 
+   */
+  private final List<Path> jars;
+  
+  /*
+   * 
+   */
+  private final int annotated;
+
+  /*
+   * 
+   */
+  private SyntheticClasspath(List<Path> jars, int annotated) {
+    
+    this.jars = jars;
+    this.annotated = annotated;
+  }
+  
+  /**
+   * Get the jars of a shape, generating them if they do not exist yet.
+   * 
+   * @param directory the directory below which the jars are kept
+   * @param jars the number of jars
+   * @param classes the number of classes in each jar
+   * @param annotatedPercent the percentage of the classes that are annotated
+   * @return the SyntheticClasspath
+   * @throws IOException if the jars cannot be written
+   */
+  public static SyntheticClasspath generate(Path directory, int jars, int classes,
+      int annotatedPercent) throws IOException {
+    
+    if (jars<1 || classes<1 || annotatedPercent<0 || annotatedPercent>100) {
+      
+      throw new IllegalArgumentException("Invalid shape " + jars + " x " + classes + " @ " +
+          annotatedPercent + "%");
+    }
+    
+    Path shape = directory.resolve(jars + "x" + classes + "-" + annotatedPercent);
+    List<Path> paths = new ArrayList<>(jars);
+    
+    for (int j = 0; j < jars; j++) {
+      
+      paths.add(shape.resolve(ROOT + "-" + j + ".jar"));
+    }
+    
+    if (!Files.exists(shape.resolve(COMPLETE))) {
+      
+      Files.createDirectories(shape);
+      ClassPool pool = new ClassPool(true);
+      
+      for (int j = 0; j < jars; j++) {
+        
+        write(pool, paths.get(j), j, classes, annotatedPercent);
+      }
+      
+      Files.createFile(shape.resolve(COMPLETE));
+    }
+    
+    return new SyntheticClasspath(paths, jars * (classes * annotatedPercent / 100));
+  }
+  
+  /**
+   * Get the URLs of the jars.
+   * 
+   * @return a new array of the URLs
+   */
+  public URL[] urls() {
+    
+    URL[] urls = new URL[jars.size()];
+    
+    try {
+      
+      for (int j = 0; j < urls.length; j++) {
+        
+        urls[j] = jars.get(j).toUri().toURL();
+      }
+      
+    } catch (MalformedURLException e) {
+      
+      throw new IllegalStateException(e);
+    }
+    
+    return urls;
+  }
+  
+  /**
+   * Get the root packages that cover the generated classes.
+   * 
+   * @param perJar true for the package of each jar, false for the single
+   *        package shared by all of them
+   * @return a new array of package names
+   */
+  public String[] roots(boolean perJar) {
+    
+    if (!perJar) {
+      
+      return new String[] { ROOT };
+    }
+    
+    String[] roots = new String[jars.size()];
+    
+    for (int j = 0; j < roots.length; j++) {
+      
+      roots[j] = ROOT + ".j" + j;
+    }
+    
+    return roots;
+  }
+  
+  /**
+   * Get the number of classes annotated with SyntheticComponent.
+   * 
+   * @return the number of annotated classes across all the jars
+   */
+  public int annotated() {
+    
+    return annotated;
+  }
+  
+  /*
+   * Write one jar.  The directory entries are required for the jar to be
+   * found by ClassLoader.getResources, which is how the Reflector locates
+   * the URLs of a package.
+   */
+  private static void write(ClassPool pool, Path jar, int j, int classes,
+      int annotatedPercent) throws IOException {
+    
+    String packageName = ROOT + ".j" + j;
+    
+    try (OutputStream file = Files.newOutputStream(jar);
+        JarOutputStream out = new JarOutputStream(file)) {
+      
+      out.putNextEntry(new JarEntry(ROOT + "/"));
+      out.closeEntry();
+      out.putNextEntry(new JarEntry(packageName.replace('.', '/') + "/"));
+      out.closeEntry();
+      
+      for (int c = 0; c < classes; c++) {
+        
+        String name = packageName + ".C" + c;
+        
+        /* annotate an evenly spread share of the classes */
+        boolean annotated = c * annotatedPercent / 100!=(c + 1) * annotatedPercent / 100;
+        
+        out.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+        out.write(classBytes(pool, name, annotated));
+        out.closeEntry();
+      }
+    }
+  }
+  
+  /*
+   * Generate a small class with a field and an accessor.
+   */
+  private static byte[] classBytes(ClassPool pool, String name, boolean annotated)
+      throws IOException {
+    
+    CtClass type = pool.makeClass(name);
+    
+    try {
+      
+      type.addField(CtField.make("private int value;", type));
+      type.addMethod(CtNewMethod.make("public int value() { return value; }", type));
+      
+      if (annotated) {
+        
+        ClassFile file = type.getClassFile();
+        ConstPool constants = file.getConstPool();
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constants,
+            AnnotationsAttribute.visibleTag);
+        Annotation annotation = new Annotation(SyntheticComponent.class.getName(), constants);
+        
+        annotation.addMemberValue("value", new StringMemberValue(name, constants));
+        attribute.addAnnotation(annotation);
+        file.addAttribute(attribute);
+      }
+      
+      return type.toBytecode();
+      
+    } catch (CannotCompileException e) {
+      
+      throw new IOException("Cannot generate " + name, e);
+      
+    } finally {
+      
+      type.detach();
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.jmh;
+
+import java.time.Duration;
+import java.util.List;
+
+import net.yannaccone.pattern.factory.Configurable;
+import net.yannaccone.pattern.factory.ConfigurationException;
+import net.yannaccone.pattern.factory.ConfigurationKey;
+import net.yannaccone.pattern.factory.TypedConfiguration;
+
+/**
+ * A Configurable that reads its properties through the typed accessors, so
+ * that configurations which cache typed values parse each property once.
+ * It declares the same checks as ManualSettings as a schema.
+ */
+@ConfigurationKey("host")
+@ConfigurationKey(value = "port", type = ConfigurationKey.Type.INT, min = 1, max = 65535)
+@ConfigurationKey(value = "timeout", type = ConfigurationKey.Type.DURATION)
+@ConfigurationKey(value = "buffer.size", type = ConfigurationKey.Type.BYTES, required = false)
+@ConfigurationKey(value = "enabled", type = ConfigurationKey.Type.BOOLEAN, required = false)
+@ConfigurationKey(value = "tags", type = ConfigurationKey.Type.LIST, required = false)
+public class TypedSettings implements Configurable<TypedConfiguration> {
+  
+  /*
+   * 
+   */
+  String host;
+  
+  /*
+   * 
+   */
+  int port;
+  
+  /*
+   * 
+   */
+  Duration timeout;
+  
+  /*
+   * 
+   */
+  long bufferSize;
+  
+  /*
+   * 
+   */
+  boolean enabled;
+  
+  /*
+   * 
+   */
+  List<String> tags;
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.Configurable#configure(net.yannaccone.pattern.factory.Configuration)
+   */
+  @Override
+  public void configure(TypedConfiguration configuration) throws ConfigurationException {
+    
+    host = configuration.getProperty("host");
+    port = configuration.getInt("port");
+    timeout = configuration.getDuration("timeout");
+    bufferSize = configuration.getBytes("buffer.size", 64 * 1024);
+    enabled = configuration.getBoolean("enabled", true);
+    tags = configuration.getList("tags");
+  }
+
+}
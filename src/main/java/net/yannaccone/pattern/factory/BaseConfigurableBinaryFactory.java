@@ -19,6 +19,8 @@
 package net.yannaccone.pattern.factory;
 
 import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.concurrent.Callable;
 
 /**
  * A base implementation of the ConfigurableBinaryFactory interface that uses
@@ -36,6 +38,12 @@ public abstract class BaseConfigurableBinaryFactory<T1 extends Configurable<T4>,
     T2 extends Annotation, T3 extends Annotation, T4 extends Configuration>
     extends BaseBinaryFactory<T1, T2, T3> implements ConfigurableBinaryFactory<T1, T4> {
 
+  /*
+   * The Configuration constructors of the implementation classes
+   */
+  private final ConfigurationConstructors configurationConstructors =
+      new ConfigurationConstructors();
+
   /**
    * Constructs a new BaseConfigurableBinaryFactory that will search for
    * implementation classes within the default reflectorNamespace.
@@ -68,15 +76,189 @@ public abstract class BaseConfigurableBinaryFactory<T1 extends Configurable<T4>,
   public T1 create(String type1, String type2, T4 configuration) throws FactoryException,
       ConfigurationException {
 
-    // Use the create method from BaseBinaryFactory to create the unconfigured instance
-    T1 instance = create(type1, type2);
+    // Recorded after the exception handlers; see CreateEvent
+    CreateEvent event = new CreateEvent();
+    event.begin();
+    
+    Class<?> subClass = null;
+    T1 instance = null;
+    Exception failure = null;
+    
+    try {
+      
+      subClass = resolveSubClass(type1, type2);
+      instance = newConfiguredInstance(subClass, configuration);
+      
+    } catch (FactoryException | ConfigurationException | RuntimeException e) {
+      
+      // Runtime failures of configure or validation count as failures too
+      failure = e;
+    }
+    
+    event.record(this, type1, type2, subClass);
+    
+    FactoryMetrics metrics = getMetrics();
+    
+    if (failure!=null && metrics!=null) {
       
-    // Call the configure method of the Configurable instance, passing it the
-    // configuration instance.  The instance will use the Configuration to
-    // configure itself.
-    instance.configure(configuration);
+      metrics.failed(subClass);
+    }
+    
+    rethrow(failure);
     
     return instance;
   }
 
+  /**
+   * Prepare this factory ahead of its first create.  In addition to the
+   * preparation of the base factory, this finds the Configuration
+   * constructors of the implementation classes and compiles their
+   * configuration schemas.
+   * 
+   * @return an unmodifiable Collection of the implementation classes
+   * @throws FactoryException if the registry cannot be built, an
+   *         implementation class fails to initialize, or its Configuration
+   *         constructor is not accessible
+   */
+  @Override
+  public Collection<Class<?>> warmUp() throws FactoryException {
+    
+    Collection<Class<?>> implementations = super.warmUp();
+    
+    for (Class<?> subClass : implementations) {
+      
+      configurationConstructors.prepare(subClass, lookup());
+      ConfigurationValidators.prepare(subClass);
+    }
+    
+    return implementations;
+  }
+
+  /**
+   * Create a lightweight proxy of the base type whose implementation instance
+   * is neither created nor configured until a method is first invoked on the
+   * proxy.  The implementation class is resolved immediately, so unknown
+   * types still fail here rather than on first use.  A ConfigurationException
+   * thrown by the deferred configure call surfaces on that first invocation
+   * as the cause of an IllegalStateException.
+   * 
+   * @param type1 A first String that can be used to locate a type
+   *        implementation
+   * @param type2 A second String that can be used to locate a type
+   *        implementation
+   * @param configuration A Configuration implementation that will be used
+   *        to configure the created instance
+   * @return A proxy of the requested type implementation
+   * @throws FactoryException if the Factory is unable to resolve the type or
+   *         to generate the proxy
+   */
+  public T1 createLazy(String type1, String type2, final T4 configuration) throws FactoryException {
+    
+    final Class<?> subClass = resolveSubClass(type1, type2);
+    
+    return LazyProxies.newProxy(baseClass(), new LazyReference<T1>(new Callable<T1>() {
+      
+      @Override
+      public T1 call() throws Exception {
+        
+        return newConfiguredInstance(subClass, configuration);
+      }
+    }));
+  }
+
+  /*
+   * Build a configured instance of the implementation class; in one step
+   * through its Configuration constructor when it annotates one, otherwise by
+   * instantiating it and then calling configure.
+   */
+  private T1 newConfiguredInstance(Class<?> subClass, T4 configuration)
+      throws FactoryException, ConfigurationException {
+    
+    ConfigureEvent event = new ConfigureEvent();
+    event.begin();
+    
+    FactoryMetrics metrics = getMetrics();
+    T1 instance = null;
+    boolean constructor = false;
+    Exception failure = null;
+    
+    try {
+      
+      // Validate the configuration against the schema declared by the
+      // implementation, reporting every violation at once.
+      ConfigurationValidators.validate(subClass, configuration);
+      
+      long start = metrics==null ? 0L : System.nanoTime();
+      
+      instance = configurationConstructors.newInstance(baseClass(), subClass,
+          configuration, lookup());
+      constructor = instance!=null;
+      
+      if (constructor) {
+        
+        if (metrics!=null) {
+          
+          metrics.type(subClass).created(System.nanoTime() - start);
+        }
+        
+      } else {
+        
+        try {
+          
+          instance = instantiateSubClass(subClass);
+          
+        } catch (Exception e) {
+          
+          throw new FactoryException("Failed to instantiate " + subClass.getName(), e);
+        }
+        
+        // Call the configure method of the Configurable instance, passing it
+        // the configuration instance.  The instance will use the
+        // Configuration to configure itself.
+        long constructed = metrics==null ? 0L : System.nanoTime();
+        instance.configure(configuration);
+        
+        if (metrics!=null) {
+          
+          metrics.type(subClass).created(constructed - start,
+              System.nanoTime() - constructed);
+        }
+      }
+      
+    } catch (FactoryException | ConfigurationException | RuntimeException e) {
+      
+      failure = e;
+    }
+    
+    // Recorded after the exception handlers; see CreateEvent
+    event.record(subClass, configuration, constructor, failure!=null);
+    
+    rethrow(failure);
+    
+    return instance;
+  }
+  
+  /*
+   * Rethrow the failure of a create or configuration, if any.
+   */
+  private static void rethrow(Exception failure) throws FactoryException,
+      ConfigurationException {
+    
+    if (failure instanceof FactoryException) {
+      
+      throw (FactoryException) failure;
+    }
+    
+    if (failure instanceof ConfigurationException) {
+      
+      throw (ConfigurationException) failure;
+    }
+    
+    if (failure!=null) {
+      
+      throw (RuntimeException) failure;
+    }
+  }
+
+
 }
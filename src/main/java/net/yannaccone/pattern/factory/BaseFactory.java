@@ -19,9 +19,14 @@
 package net.yannaccone.pattern.factory;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Collection;
+import java.util.concurrent.Callable;
 
 import net.yannaccone.pattern.reflector.Reflector;
+import net.yannaccone.pattern.reflector.ReflectorException;
 
 /**
  * A base implementation of the Factory interface that uses
@@ -36,6 +41,34 @@ import net.yannaccone.pattern.reflector.Reflector;
 public abstract class BaseFactory<T1, T2 extends Annotation>
     implements Factory<T1, T2> {
   
+  /*
+   * The handle of instantiate, the target of the call sites of the factory
+   */
+  private static final MethodHandle INSTANTIATE;
+  
+  static {
+    
+    try {
+      
+      INSTANTIATE = MethodHandles.lookup().findVirtual(BaseFactory.class, "instantiate",
+          MethodType.methodType(Object.class, String.class, Class.class));
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+  
+  /*
+   * The registry of implementation classes; built on first use
+   */
+  private volatile ImplementationRegistry registry;
+  
+  /*
+   * The metrics of the factory; null until enabled
+   */
+  private volatile FactoryMetrics metrics;
+  
   /**
    * Constructs a new BaseFactory that will scan for implementation classes
    * within the default reflectorPackage. See
@@ -68,12 +101,255 @@ public abstract class BaseFactory<T1, T2 extends Annotation>
    */
   @Override
   public T1 create(String type) throws FactoryException {
+    
+    return instantiate(type, null);
+  }
+  
+  /*
+   * Create an instance of the implementation of the type, resolving the
+   * implementation class unless a call site already has, and record the
+   * creation in the CreateEvent and the metrics of the factory.
+   */
+  private T1 instantiate(String type, Class<?> resolved) throws FactoryException {
+
+    // Recorded after the exception handlers; see CreateEvent
+    CreateEvent event = new CreateEvent();
+    event.begin();
+    
+    FactoryMetrics metrics = this.metrics;
+    Class<?> subClass = null;
+    T1 instance = null;
+    FactoryException failure = null;
+    
+    try {
+      
+      subClass = resolved!=null ? resolved : resolveSubClass(type);
+      
+      long start = metrics==null ? 0L : System.nanoTime();
+      instance = instantiateSubClass(subClass);
+      
+      if (metrics!=null) {
+        
+        metrics.type(subClass).created(System.nanoTime() - start);
+      }
+      
+    } catch (FactoryException e) {
+      
+      failure = e;
+      
+    } catch (Exception e) {
+      
+      failure = new FactoryException("Failed to instantiate implementation with type " +
+          type, e);
+    }
+    
+    event.record(this, type, subClass);
+    
+    if (failure!=null) {
+      
+      if (metrics!=null) {
+        
+        metrics.failed(subClass);
+      }
+      
+      throw failure;
+    }
+    
+    return instance;
+  }
+  
+  /**
+   * Create a lightweight proxy of the base type whose implementation instance
+   * is not created until a method is first invoked on the proxy.  The
+   * implementation class is resolved immediately, so an unknown type still
+   * fails here rather than on first use.
+   * <p>
+   * The base type must be an interface, or a non-final class with an
+   * accessible nullary constructor.  See
+   * {@link net.yannaccone.pattern.factory.LazyReference LazyReference} for
+   * the initialization guarantees of the proxy.
+   * 
+   * @param type A String that can be used to locate a type implementation
+   * @return A proxy of the requested type implementation
+   * @throws FactoryException if the Factory is unable to resolve the type or
+   *         to generate the proxy
+   */
+  public T1 createLazy(final String type) throws FactoryException {
+    
+    final Class<?> subClass = resolveSubClass(type);
+    
+    return LazyProxies.newProxy(baseClass(), new LazyReference<T1>(new Callable<T1>() {
+      
+      @Override
+      public T1 call() throws Exception {
+        
+        return instantiateSubClass(subClass);
+      }
+    }));
+  }
+  
+  /**
+   * Create a reusable creation site bound to the provided type.  The
+   * implementation is resolved once, here, and the site only resolves it
+   * again after the Reflector is reloaded.  Instances are created through
+   * instantiateSubClass and recorded like those of create.
+   * 
+   * @param type A String that can be used to locate a type implementation
+   * @return A FactoryCallSite that creates instances of the requested type
+   *         implementation
+   * @throws FactoryException if the Factory is unable to resolve the type
+   */
+  public FactoryCallSite<T1> callSite(final String type) throws FactoryException {
+    
+    return new FactoryCallSite<T1>(new FactoryCallSite.Linker() {
+      
+      @Override
+      public MethodHandle link() throws FactoryException {
+        
+        Class<?> subClass = resolveSubClass(type);
+        
+        return MethodHandles.insertArguments(INSTANTIATE, 0, BaseFactory.this, type, subClass);
+      }
+    });
+  }
+  
+  /**
+   * Prepare this factory ahead of its first create: build its registry of
+   * implementations, and load and initialize every implementation class.
+   * Call it during startup to take that cost off the first requests, or
+   * before writing a class list with
+   * {@link net.yannaccone.pattern.factory.ClassListWriter ClassListWriter}.
+   * 
+   * @return an unmodifiable Collection of the implementation classes
+   * @throws FactoryException if the registry cannot be built or an
+   *         implementation class fails to initialize
+   */
+  public Collection<Class<?>> warmUp() throws FactoryException {
+    
+    Collection<Class<?>> implementations = registry().implementations();
+    
+    for (Class<?> subClass : implementations) {
+      
+      try {
+        
+        Class.forName(subClass.getName(), true, subClass.getClassLoader());
+        
+      } catch (ClassNotFoundException | LinkageError e) {
+        
+        throw new FactoryException("Failed to initialize implementation " +
+            subClass.getName(), e);
+      }
+    }
+    
+    return implementations;
+  }
+  
+  /**
+   * Enable the metrics of this factory, registering them with the platform
+   * MBeanServer and handing them to the installed
+   * {@link net.yannaccone.pattern.factory.MetricsExporter MetricsExporters}.
+   * Metrics stay enabled until they are disabled with
+   * {@link #disableMetrics() disableMetrics}, which a factory that is
+   * discarded before the JVM exits must call, since the MBeanServer keeps the
+   * metrics registered; enabling them again meanwhile returns the same
+   * FactoryMetrics.
+   * 
+   * @return the FactoryMetrics of this factory
+   */
+  public synchronized FactoryMetrics enableMetrics() {
+    
+    if (metrics==null) {
+      
+      metrics = FactoryMetrics.register(this, (factory, c) -> factory.registry().typeOf(c));
+    }
+    
+    return metrics;
+  }
+  
+  /**
+   * Disable the metrics of this factory, unregistering them from the
+   * platform MBeanServer and withdrawing them from the installed
+   * {@link net.yannaccone.pattern.factory.MetricsExporter MetricsExporters}.
+   * Enabling them again starts new metrics.
+   */
+  public synchronized void disableMetrics() {
+    
+    FactoryMetrics disabled = metrics;
+    
+    if (disabled!=null) {
+      
+      metrics = null;
+      disabled.unregister();
+    }
+  }
+  
+  /**
+   * Get the metrics of this factory.
+   * 
+   * @return the FactoryMetrics, or null if metrics are not enabled
+   */
+  public FactoryMetrics getMetrics() {
+    
+    return metrics;
+  }
+  
+  /**
+   * Locate the implementation class annotated with the provided type.
+   * 
+   * @param type A String that can be used to locate a type implementation
+   * @return the implementation class of the requested type
+   * @throws FactoryException if no implementation of the type exists or an
+   *         annotated class is not assignable to the base type
+   */
+  protected Class<?> resolveSubClass(String type) throws FactoryException {
 
     if (type==null || type.isEmpty()) {
       
       throw new FactoryException("Parameter type cannot be null or empty");
     }
     
+    Class<?> subClass = registry().get(type);
+    
+    if (subClass==null) {
+      
+      throw new FactoryException("Failed to find " + baseClass().getName() +
+          " implementation of type " + type);
+    }
+    
+    return subClass;
+  }
+  
+  /*
+   * Get the implementation registry, rebuilding it if the Reflector scan it
+   * was built from has been replaced.
+   */
+  private ImplementationRegistry registry() {
+    
+    ImplementationRegistry current = registry;
+    
+    if (current==null || !current.isCurrent()) {
+      
+      RegistryBuildEvent event = new RegistryBuildEvent();
+      event.begin();
+      
+      current = buildRegistry();
+      event.record(this, current);
+      registry = current;
+    }
+    
+    return current;
+  }
+  
+  /*
+   * Index the classes annotated with the annotation type of this factory by
+   * their annotation values.
+   */
+  private ImplementationRegistry buildRegistry() {
+    
+    // Obtain the SwitchPoint before reading the scan; a concurrent reload
+    // then leaves this registry stale rather than silently outdated
+    ImplementationRegistry built = new ImplementationRegistry(Reflector.getSwitchPoint());
+    
     Collection<Class<?>> typeAnnotateds = Reflector
         .resolveAnnotatedClass(annotationClass());
     
@@ -81,9 +357,11 @@ public abstract class BaseFactory<T1, T2 extends Annotation>
       
       if (!baseClass().isAssignableFrom(typeAnnotated)) {
         
-        throw new FactoryException("Class " + typeAnnotated.getClass().getName() +
+        built.fail(new FactoryException("Class " + typeAnnotated.getName() +
             " is annotated with " + annotationClass().getName() +
-            " but is not assignable from " + baseClass().getName());
+            " but is not assignable from " + baseClass().getName()));
+        
+        return built;
       }
         
       try {
@@ -91,20 +369,18 @@ public abstract class BaseFactory<T1, T2 extends Annotation>
         T2 annotation = Reflector.getAnnotation(
             typeAnnotated, annotationClass());
         
-        if (type.equals(annotationValue(annotation))) {
-            
-            return instantiateSubClass(typeAnnotated);
-        }
+        built.put(typeAnnotated, annotationValue(annotation));
           
-      } catch (Exception e) {
+      } catch (ReflectorException e) {
           
-        throw new FactoryException("Failed to instantiate implementation with type " +
-            type, e);
+        built.fail(new FactoryException("Failed to resolve implementation " +
+            typeAnnotated.getName(), e));
+        
+        return built;
       }
     }
     
-    throw new FactoryException("Failed to find " + baseClass().getName() +
-        " implementation of type " + type);
+    return built;
   }
   
   /**
@@ -134,6 +410,22 @@ public abstract class BaseFactory<T1, T2 extends Annotation>
   protected abstract T1 instantiateSubClass(Class<?> subClass) throws IllegalAccessException,
       InstantiationException;
 
+  /**
+   * A method that returns the Lookup used to access the constructors of
+   * implementation classes directly through MethodHandles.  The default
+   * public Lookup can only access public constructors of public classes in
+   * packages exported to every module; a concrete Factory implementation
+   * that has access to non-public implementation classes, or to packages a
+   * module exports only to the framework, may override this method to return
+   * {@link java.lang.invoke.MethodHandles#lookup() MethodHandles.lookup()}.
+   * 
+   * @return the Lookup used to access implementation constructors
+   */
+  protected MethodHandles.Lookup lookup() {
+    
+    return MethodHandles.publicLookup();
+  }
+
   /**
    * A method that returns a Class T2 instance; where T2 is the annotation
    * class configured as parameter T2 of the Factory implementation.
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Writes a class list for an Application Class-Data Sharing archive: the
+ * factories and their warmed up implementation classes, with their
+ * superclasses, interfaces and annotation types, and the classes of this
+ * framework.  The JVM then maps
+ * those classes from the archive on later starts instead of loading and
+ * verifying them, and shares them between JVMs on the same host.
+ * <p>
+ * Run it with the class list to write and the factory classes, which must
+ * extend one of the base factories and have a public nullary constructor:
+ * <pre>
+ * java -cp app.jar net.yannaccone.pattern.factory.ClassListWriter app.classlist com.acme.CodecFactory
+ * java -Xshare:dump -XX:SharedClassListFile=app.classlist -XX:SharedArchiveFile=app.jsa -cp app.jar
+ * java -XX:SharedArchiveFile=app.jsa -cp app.jar ...
+ * </pre>
+ * On Java 13 or later, running the same command with
+ * -XX:ArchiveClassesAtExit=app.jsa writes a dynamic archive of everything
+ * it loaded, without the dump step.  Archives only cover classes loaded by
+ * the application class loader from jars, not directories, on the
+ * classpath of the dump.
+ */
+public final class ClassListWriter {
+  
+  /*
+   * The package of the framework classes, in the form of a path
+   */
+  private static final String FRAMEWORK_PACKAGE = "net/yannaccone/pattern/";
+  
+  /*
+   * The class names, in the internal form the class list requires
+   */
+  private final Set<String> classNames = new TreeSet<>();
+
+  /**
+   * Write the class list of the provided factories.
+   * 
+   * @param args the class list file, followed by the factory class names
+   * @throws Exception if a factory cannot be created or warmed up, or the
+   *         class list cannot be written
+   */
+  public static void main(String[] args) throws Exception {
+    
+    if (args.length<2) {
+      
+      System.err.println("Usage: " + ClassListWriter.class.getName() +
+          " <class list file> <factory class>...");
+      System.exit(2);
+    }
+    
+    ClassListWriter writer = new ClassListWriter().addFramework();
+    
+    for (int i = 1; i < args.length; i++) {
+      
+      Object factory = Class.forName(args[i]).getConstructor().newInstance();
+      writer.add(factory.getClass());
+      
+      for (Class<?> implementation : warmUp(factory)) {
+        
+        writer.add(implementation);
+        
+        for (Annotation annotation : implementation.getAnnotations()) {
+          
+          writer.add(annotation.annotationType());
+        }
+      }
+    }
+    
+    writer.write(Paths.get(args[0]));
+    
+    System.out.println("Wrote " + writer.getClassNames().size() + " classes to " + args[0]);
+  }
+  
+  /**
+   * Add a class, with its superclasses and interfaces.  Arrays, primitive
+   * types and classes that cannot be archived by name, such as those
+   * generated for lambdas, are ignored.
+   * 
+   * @param type the class to add
+   * @return this ClassListWriter
+   */
+  public ClassListWriter add(Class<?> type) {
+    
+    if (type==null || type.isArray() || type.isPrimitive() || type.isSynthetic() ||
+        type.getName().indexOf('/')>=0) {
+      
+      return this;
+    }
+    
+    if (classNames.add(type.getName().replace('.', '/'))) {
+      
+      add(type.getSuperclass());
+      
+      for (Class<?> implemented : type.getInterfaces()) {
+        
+        add(implemented);
+      }
+    }
+    
+    return this;
+  }
+  
+  /**
+   * Add classes, with their superclasses and interfaces, such as the
+   * implementation classes returned by the warmUp method of a factory.
+   * 
+   * @param types the classes to add
+   * @return this ClassListWriter
+   */
+  public ClassListWriter add(Collection<Class<?>> types) {
+    
+    for (Class<?> type : types) {
+      
+      add(type);
+    }
+    
+    return this;
+  }
+  
+  /**
+   * Add the classes of this framework, read from the jar or directory it was
+   * loaded from, without loading them.
+   * 
+   * @return this ClassListWriter
+   * @throws IOException if the jar or directory cannot be read
+   */
+  public ClassListWriter addFramework() throws IOException {
+    
+    CodeSource source = ClassListWriter.class.getProtectionDomain().getCodeSource();
+    
+    if (source==null || source.getLocation()==null) {
+      
+      return this;
+    }
+    
+    Path location;
+    
+    try {
+      
+      location = Paths.get(source.getLocation().toURI());
+      
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      
+      throw new IOException("Cannot read the classes of " + source.getLocation(), e);
+    }
+    
+    if (Files.isDirectory(location)) {
+      
+      addFramework(location);
+      
+    } else {
+      
+      try (FileSystem jar = FileSystems.newFileSystem(location, (ClassLoader) null)) {
+        
+        addFramework(jar.getPath("/"));
+      }
+    }
+    
+    return this;
+  }
+  
+  /**
+   * Get the class names added so far.
+   * 
+   * @return an unmodifiable, sorted Set of class names in internal form
+   */
+  public Set<String> getClassNames() {
+    
+    return Collections.unmodifiableSet(classNames);
+  }
+  
+  /**
+   * Write the class list.
+   * 
+   * @param out the Writer to write to
+   * @throws IOException if writing fails
+   */
+  public void write(Writer out) throws IOException {
+    
+    for (String className : classNames) {
+      
+      out.write(className);
+      out.write('\n');
+    }
+    
+    out.flush();
+  }
+  
+  /**
+   * Write the class list to a file.
+   * 
+   * @param file the file to write
+   * @throws IOException if writing fails
+   */
+  public void write(Path file) throws IOException {
+    
+    try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      
+      write(out);
+    }
+  }
+  
+  /*
+   * Add the framework classes under a classpath root.
+   */
+  private void addFramework(Path root) throws IOException {
+    
+    Path framework = root.resolve(FRAMEWORK_PACKAGE);
+    
+    if (!Files.isDirectory(framework)) {
+      
+      return;
+    }
+    
+    try (Stream<Path> files = Files.walk(framework)) {
+      
+      files.map(file -> root.relativize(file).toString().replace('\\', '/'))
+          .filter(name -> name.endsWith(".class") && !name.endsWith("package-info.class"))
+          .forEach(name -> classNames.add(name.substring(0, name.length() - ".class".length())));
+    }
+  }
+  
+  /*
+   * Warm up a factory of any of the base factory types.
+   */
+  private static Collection<Class<?>> warmUp(Object factory) throws FactoryException {
+    
+    if (factory instanceof BaseFactory) {
+      
+      return ((BaseFactory<?, ?>) factory).warmUp();
+    }
+    
+    if (factory instanceof BaseBinaryFactory) {
+      
+      return ((BaseBinaryFactory<?, ?, ?>) factory).warmUp();
+    }
+    
+    if (factory instanceof BaseTernaryFactory) {
+      
+      return ((BaseTernaryFactory<?, ?, ?, ?>) factory).warmUp();
+    }
+    
+    throw new IllegalArgumentException(factory.getClass().getName() +
+        " does not extend a base factory");
+  }
+
+}
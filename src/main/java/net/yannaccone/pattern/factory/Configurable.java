@@ -21,6 +21,19 @@ package net.yannaccone.pattern.factory;
 /**
  * An interface that must be implemented by types that will be instantiated
  * using the ConfigurableFactory interface.
+ * <p>
+ * Implementations may also annotate a constructor with a single parameter of
+ * their Configuration type with
+ * {@link net.yannaccone.pattern.factory.ConfigurationConstructor
+ * ConfigurationConstructor}.  The configurable base factories then build the
+ * instance configured in one step instead of calling configure after
+ * instantiation, which allows the configured state to be held in final
+ * fields.
+ * <p>
+ * Implementations may declare the properties they accept with
+ * {@link net.yannaccone.pattern.factory.ConfigurationKey ConfigurationKey}; the
+ * configurable base factories then validate the configuration against those
+ * declarations before configuring the instance.
  */
 public interface Configurable<T1 extends Configuration> {
   
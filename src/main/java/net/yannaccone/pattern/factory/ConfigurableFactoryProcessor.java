@@ -0,0 +1,530 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link java.util.concurrent.Flow.Processor Flow.Processor} that consumes
+ * a stream of {@link net.yannaccone.pattern.factory.ConfigurableSpec ConfigurableSpec}
+ * elements and publishes the instances created and configured from them by a
+ * ConfigurableFactory.
+ * <p>
+ * Instances are created on the provided Executor with at most
+ * maxConcurrency creations outstanding at any time.  An outstanding creation
+ * is one that has been requested from the upstream publisher but has not yet
+ * been delivered to the downstream subscriber, so the processor never buffers
+ * more than maxConcurrency instances and creation throughput follows the
+ * demand of the downstream subscriber.  When ordered is true, instances are
+ * published in the order of their specs; otherwise they are published as soon
+ * as they are configured.
+ * <p>
+ * The processor supports a single downstream subscriber.  A failure to create
+ * or configure an instance cancels the upstream subscription and is signalled
+ * to the downstream subscriber through onError.
+ */
+public class ConfigurableFactoryProcessor<T1 extends Configurable<T2>, T2 extends Configuration>
+    implements Flow.Processor<ConfigurableSpec<T2>, T1> {
+
+  /*
+   * The factory used to create and configure instances
+   */
+  private final ConfigurableFactory<T1, T2> factory;
+  
+  /*
+   * The executor on which instances are created
+   */
+  private final Executor executor;
+  
+  /*
+   * The maximum number of outstanding creations
+   */
+  private final int maxConcurrency;
+  
+  /*
+   * Whether instances are published in the order of their specs
+   */
+  private final boolean ordered;
+
+  /*
+   * Completed instances indexed by sequence number modulo maxConcurrency; only
+   * used when ordered
+   */
+  private final AtomicReferenceArray<T1> slots;
+  
+  /*
+   * Completed instances in completion order; only used when not ordered
+   */
+  private final Queue<T1> ready;
+  
+  /*
+   * The subscription to the upstream publisher
+   */
+  private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+  
+  /*
+   * Guards against more than one downstream subscriber
+   */
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+  
+  /*
+   * The outstanding demand of the downstream subscriber
+   */
+  private final AtomicLong requested = new AtomicLong();
+  
+  /*
+   * Serializes the drain loop
+   */
+  private final AtomicInteger wip = new AtomicInteger();
+  
+  /*
+   * The downstream subscriber; set once its onSubscribe has returned
+   */
+  private volatile Flow.Subscriber<? super T1> downstream;
+  
+  /*
+   * The number of specs received from upstream; only written by onNext
+   */
+  private volatile long received;
+  
+  /*
+   * The first failure; signalled downstream by the drain loop
+   */
+  private volatile Throwable error;
+  
+  /*
+   * Set when the upstream publisher has completed
+   */
+  private volatile boolean done;
+  
+  /*
+   * Set when the downstream subscriber has cancelled or has been terminated
+   */
+  private volatile boolean cancelled;
+  
+  /*
+   * The number of instances delivered downstream; only accessed by the drain loop
+   */
+  private long emitted;
+  
+  /*
+   * Whether the initial window has been requested from upstream; only
+   * accessed by the drain loop
+   */
+  private boolean primed;
+
+  /**
+   * Constructs a new ConfigurableFactoryProcessor that creates instances on
+   * the common ForkJoinPool.
+   * 
+   * @param factory the ConfigurableFactory used to create and configure
+   *        instances
+   * @param maxConcurrency the maximum number of creations that may be
+   *        outstanding at any time
+   * @param ordered true if instances must be published in the order of their
+   *        specs
+   */
+  public ConfigurableFactoryProcessor(ConfigurableFactory<T1, T2> factory,
+      int maxConcurrency, boolean ordered) {
+    
+    this(factory, ForkJoinPool.commonPool(), maxConcurrency, ordered);
+  }
+
+  /**
+   * Constructs a new ConfigurableFactoryProcessor that creates instances on
+   * the provided executor.
+   * 
+   * @param factory the ConfigurableFactory used to create and configure
+   *        instances
+   * @param executor the Executor on which instances are created
+   * @param maxConcurrency the maximum number of creations that may be
+   *        outstanding at any time
+   * @param ordered true if instances must be published in the order of their
+   *        specs
+   */
+  public ConfigurableFactoryProcessor(ConfigurableFactory<T1, T2> factory,
+      Executor executor, int maxConcurrency, boolean ordered) {
+    
+    if (factory==null) {
+      
+      throw new IllegalArgumentException("Parameter factory cannot be null");
+    }
+    
+    if (executor==null) {
+      
+      throw new IllegalArgumentException("Parameter executor cannot be null");
+    }
+    
+    if (maxConcurrency<1) {
+      
+      throw new IllegalArgumentException("Parameter maxConcurrency must be positive");
+    }
+    
+    this.factory = factory;
+    this.executor = executor;
+    this.maxConcurrency = maxConcurrency;
+    this.ordered = ordered;
+    this.slots = ordered ? new AtomicReferenceArray<T1>(maxConcurrency) : null;
+    this.ready = ordered ? null : new ConcurrentLinkedQueue<T1>();
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super T1> subscriber) {
+    
+    if (subscriber==null) {
+      
+      throw new NullPointerException("Parameter subscriber cannot be null");
+    }
+    
+    if (!subscribed.compareAndSet(false, true)) {
+      
+      subscriber.onSubscribe(new Flow.Subscription() {
+        
+        @Override
+        public void request(long n) {
+        }
+        
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException(
+          "ConfigurableFactoryProcessor supports a single subscriber"));
+      return;
+    }
+    
+    subscriber.onSubscribe(new Downstream());
+    
+    // Only publish the subscriber once its onSubscribe has returned so that
+    // onNext can never overlap it
+    downstream = subscriber;
+    drain();
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.concurrent.Flow.Subscriber#onSubscribe(java.util.concurrent.Flow.Subscription)
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    
+    if (!upstream.compareAndSet(null, subscription)) {
+      
+      // Only one upstream publisher is supported
+      subscription.cancel();
+      return;
+    }
+    
+    drain();
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.concurrent.Flow.Subscriber#onNext(java.lang.Object)
+   */
+  @Override
+  public void onNext(final ConfigurableSpec<T2> spec) {
+    
+    if (done || cancelled) {
+      
+      return;
+    }
+    
+    final long sequence = received;
+    received = sequence + 1;
+    
+    try {
+      
+      executor.execute(new Runnable() {
+        
+        @Override
+        public void run() {
+          
+          create(sequence, spec);
+        }
+      });
+      
+    } catch (RejectedExecutionException e) {
+      
+      fail(e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.concurrent.Flow.Subscriber#onError(java.lang.Throwable)
+   */
+  @Override
+  public void onError(Throwable throwable) {
+    
+    fail(throwable);
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.concurrent.Flow.Subscriber#onComplete()
+   */
+  @Override
+  public void onComplete() {
+    
+    done = true;
+    drain();
+  }
+  
+  /*
+   * Create and configure the instance for the spec with the provided sequence
+   * number and hand it to the drain loop.
+   */
+  private void create(long sequence, ConfigurableSpec<T2> spec) {
+    
+    if (cancelled) {
+      
+      return;
+    }
+    
+    T1 instance;
+    
+    try {
+      
+      instance = factory.create(spec.getType(), spec.getConfiguration());
+      
+    } catch (Exception e) {
+      
+      fail(e);
+      return;
+    }
+    
+    if (ordered) {
+      
+      slots.set((int) (sequence % maxConcurrency), instance);
+      
+    } else {
+      
+      ready.offer(instance);
+    }
+    
+    drain();
+  }
+  
+  /*
+   * Record the first failure and let the drain loop signal it.
+   */
+  private void fail(Throwable throwable) {
+    
+    if (error==null) {
+      
+      error = throwable;
+    }
+    
+    drain();
+  }
+  
+  /*
+   * Take the next deliverable instance, or null if there is none.
+   */
+  private T1 poll() {
+    
+    if (!ordered) {
+      
+      return ready.poll();
+    }
+    
+    int index = (int) (emitted % maxConcurrency);
+    T1 instance = slots.get(index);
+    
+    if (instance!=null) {
+      
+      slots.lazySet(index, null);
+    }
+    
+    return instance;
+  }
+  
+  /*
+   * Drop every buffered instance.
+   */
+  private void clear() {
+    
+    if (ordered) {
+      
+      for (int i=0; i<maxConcurrency; i++) {
+        
+        slots.lazySet(i, null);
+      }
+      
+    } else {
+      
+      ready.clear();
+    }
+  }
+
+  /*
+   * Deliver completed instances, terminal signals and upstream requests.
+   * Only one thread runs the loop at a time; callers that find it running
+   * leave their work to the running thread.
+   */
+  private void drain() {
+    
+    if (wip.getAndIncrement()!=0) {
+      
+      return;
+    }
+    
+    int missed = 1;
+    
+    for (;;) {
+      
+      Flow.Subscriber<? super T1> subscriber = downstream;
+      Flow.Subscription subscription = upstream.get();
+      
+      if (cancelled) {
+        
+        clear();
+        
+      } else if (subscriber!=null && subscription!=null) {
+        
+        Throwable failure = error;
+        
+        if (failure!=null) {
+          
+          cancelled = true;
+          subscription.cancel();
+          clear();
+          subscriber.onError(failure);
+          
+        } else {
+          
+          long demand = requested.get();
+          long delivered = 0;
+          
+          while (delivered!=demand && !cancelled) {
+            
+            T1 instance = poll();
+            
+            if (instance==null) {
+              
+              break;
+            }
+            
+            emitted++;
+            delivered++;
+            subscriber.onNext(instance);
+          }
+          
+          if (delivered!=0 && demand!=Long.MAX_VALUE) {
+            
+            requested.addAndGet(-delivered);
+          }
+          
+          if (done && emitted==received && error==null && !cancelled) {
+            
+            cancelled = true;
+            subscriber.onComplete();
+            
+          } else if (!done && !cancelled) {
+            
+            // Every delivered instance frees a slot in the window of
+            // outstanding creations
+            long replenish = delivered;
+            
+            if (!primed) {
+              
+              primed = true;
+              replenish += maxConcurrency;
+            }
+            
+            if (replenish!=0) {
+              
+              subscription.request(replenish);
+            }
+          }
+        }
+      }
+      
+      missed = wip.addAndGet(-missed);
+      
+      if (missed==0) {
+        
+        break;
+      }
+    }
+  }
+  
+  /*
+   * The subscription handed to the downstream subscriber.
+   */
+  private final class Downstream implements Flow.Subscription {
+
+    @Override
+    public void request(long n) {
+      
+      if (n<=0) {
+        
+        fail(new IllegalArgumentException("Requested count must be positive"));
+        return;
+      }
+      
+      for (;;) {
+        
+        long current = requested.get();
+        long next = current + n;
+        
+        if (next<0) {
+          
+          next = Long.MAX_VALUE;
+        }
+        
+        if (requested.compareAndSet(current, next)) {
+          
+          break;
+        }
+      }
+      
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      
+      if (!cancelled) {
+        
+        cancelled = true;
+        
+        Flow.Subscription subscription = upstream.get();
+        
+        if (subscription!=null) {
+          
+          subscription.cancel();
+        }
+      }
+      
+      drain();
+    }
+  }
+
+}
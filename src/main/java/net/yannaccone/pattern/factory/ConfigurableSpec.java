@@ -0,0 +1,81 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+/**
+ * An immutable pairing of a type String and the Configuration that should be
+ * applied to the instance of that type.  ConfigurableSpec instances are the
+ * input elements of a
+ * {@link net.yannaccone.pattern.factory.ConfigurableFactoryProcessor ConfigurableFactoryProcessor}.
+ */
+public final class ConfigurableSpec<T1 extends Configuration> {
+
+  /*
+   * The String used to locate the type implementation
+   */
+  private final String type;
+  
+  /*
+   * The Configuration used to configure the created instance
+   */
+  private final T1 configuration;
+
+  /**
+   * Create a new ConfigurableSpec for the provided type and configuration.
+   * 
+   * @param type A String that can be used to locate a type implementation
+   * @param configuration A Configuration implementation that can be used
+   *        to configure the created instance
+   */
+  public ConfigurableSpec(String type, T1 configuration) {
+    
+    this.type = type;
+    this.configuration = configuration;
+  }
+
+  /**
+   * Get the type String of this spec.
+   * 
+   * @return the String used to locate the type implementation
+   */
+  public String getType() {
+    
+    return type;
+  }
+
+  /**
+   * Get the Configuration of this spec.
+   * 
+   * @return the Configuration used to configure the created instance
+   */
+  public T1 getConfiguration() {
+    
+    return configuration;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return "ConfigurableSpec[type=" + type + "]";
+  }
+
+}
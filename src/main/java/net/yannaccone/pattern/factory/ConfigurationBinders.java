@@ -0,0 +1,484 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates and caches the binders used by
+ * {@link net.yannaccone.pattern.factory.ConfigurationUtil#bind(Configuration, Class)
+ * ConfigurationUtil.bind}.
+ * <p>
+ * A binder is a single MethodHandle of type (TypedConfiguration)Object,
+ * composed once per bound class from the accessors of TypedConfiguration and
+ * the constructor and field setters of the class.  Binding an instance
+ * invokes that handle, so it costs one typed read per property and no
+ * reflection.
+ * <p>
+ * A class whose constructor has every parameter annotated with
+ * ConfigurationProperty, such as a record whose components are annotated, is
+ * bound through that constructor.  Any other class is instantiated through
+ * its no-argument constructor and its annotated fields, including inherited
+ * ones, are assigned.
+ */
+final class ConfigurationBinders {
+  
+  /*
+   * The type of every binder
+   */
+  private static final MethodType BINDER_TYPE =
+      MethodType.methodType(Object.class, TypedConfiguration.class);
+  
+  /*
+   * (TypedConfiguration, String)boolean; whether a property is set
+   */
+  private static final MethodHandle IS_SET;
+  
+  /*
+   * (String)Object; throws the exception reporting a missing property
+   */
+  private static final MethodHandle MISSING;
+  
+  static {
+    
+    try {
+      
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      
+      IS_SET = lookup.findStatic(ConfigurationBinders.class, "isSet",
+          MethodType.methodType(boolean.class, TypedConfiguration.class, String.class));
+      MISSING = lookup.findStatic(ConfigurationBinders.class, "missing",
+          MethodType.methodType(Object.class, String.class));
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+  
+  /*
+   * The binder for each bound class, or the ConfigurationException that
+   * prevented its creation
+   */
+  private static final ClassValue<Object> BINDERS = new ClassValue<Object>() {
+    
+    @Override
+    protected Object computeValue(Class<?> type) {
+      
+      try {
+        
+        return compile(type);
+        
+      } catch (ConfigurationException e) {
+        
+        return e;
+      }
+    }
+  };
+  
+  /*
+   * 
+   */
+  private ConfigurationBinders() {
+  }
+  
+  /**
+   * Create an instance of the bound class from the properties of a
+   * Configuration.
+   * 
+   * @param configuration the Configuration to read
+   * @param type the bound class
+   * @return the bound instance
+   * @throws ConfigurationException if the Configuration is not a
+   *         TypedConfiguration, the class cannot be bound, or a property is
+   *         missing or invalid
+   */
+  static <T> T bind(Configuration configuration, Class<T> type) throws ConfigurationException {
+    
+    if (!(configuration instanceof TypedConfiguration)) {
+      
+      throw new ConfigurationException("Invalid configuration type; expected " +
+          TypedConfiguration.class.getName() + ", found " +
+          (configuration==null ? "null" : configuration.getClass().getName()));
+    }
+    
+    Object binder = BINDERS.get(type);
+    
+    if (binder instanceof ConfigurationException) {
+      
+      ConfigurationException e = (ConfigurationException) binder;
+      throw new ConfigurationException(e.getMessage(), e.getCause());
+    }
+    
+    try {
+      
+      return type.cast((Object) ((MethodHandle) binder).invokeExact(
+          (TypedConfiguration) configuration));
+      
+    } catch (ConfigurationException | RuntimeException | Error e) {
+      
+      throw e;
+      
+    } catch (Throwable e) {
+      
+      throw new ConfigurationException("Failed to bind " + type.getName(), e);
+    }
+  }
+  
+  /*
+   * Create the binder of a class.
+   */
+  private static MethodHandle compile(Class<?> type) throws ConfigurationException {
+    
+    if (type.isInterface() || type.isArray() || type.isPrimitive() || type.isEnum() ||
+        Modifier.isAbstract(type.getModifiers())) {
+      
+      throw new ConfigurationException("Cannot bind " + type.getName() +
+          "; it must be a concrete class");
+    }
+    
+    if (type.getEnclosingClass()!=null && !Modifier.isStatic(type.getModifiers())) {
+      
+      throw new ConfigurationException("Cannot bind " + type.getName() +
+          "; it must be a top level or static nested class");
+    }
+    
+    Constructor<?> constructor = findConstructor(type);
+    
+    try {
+      
+      if (constructor!=null) {
+        
+        return constructorBinder(type, constructor);
+      }
+      
+      return fieldBinder(type);
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new ConfigurationException("Cannot bind " + type.getName() +
+          "; its package must be open to this library", e);
+    }
+  }
+  
+  /*
+   * Find the constructor whose parameters are all bound to properties.
+   */
+  private static Constructor<?> findConstructor(Class<?> type) throws ConfigurationException {
+    
+    Constructor<?> found = null;
+    
+    for (Constructor<?> candidate : type.getDeclaredConstructors()) {
+      
+      if (candidate.getParameterCount()==0) {
+        
+        continue;
+      }
+      
+      boolean bound = true;
+      
+      for (Parameter parameter : candidate.getParameters()) {
+        
+        bound &= parameter.isAnnotationPresent(ConfigurationProperty.class);
+      }
+      
+      if (!bound) {
+        
+        continue;
+      }
+      
+      if (found!=null) {
+        
+        throw new ConfigurationException("Cannot bind " + type.getName() +
+            "; it declares more than one constructor with bound parameters");
+      }
+      
+      found = candidate;
+    }
+    
+    return found;
+  }
+  
+  /*
+   * Create a binder that passes every property to the constructor.
+   */
+  private static MethodHandle constructorBinder(Class<?> type, Constructor<?> constructor)
+      throws ConfigurationException, IllegalAccessException {
+    
+    Parameter[] parameters = constructor.getParameters();
+    MethodHandle[] values = new MethodHandle[parameters.length];
+    
+    for (int i = 0; i<parameters.length; i++) {
+      
+      ConfigurationProperty property = parameters[i].getAnnotation(ConfigurationProperty.class);
+      Class<?> valueType = parameters[i].getType();
+      MethodHandle value = value(type, property, valueType);
+      
+      if (value==null) {
+        
+        value = MethodHandles.guardWithTest(isSet(property.value()),
+            accessor(type, property, valueType),
+            MethodHandles.dropArguments(MethodHandles.zero(valueType), 0,
+                TypedConfiguration.class));
+      }
+      
+      values[i] = value;
+    }
+    
+    MethodHandle binder = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+        .unreflectConstructor(constructor);
+    
+    binder = binder.asType(binder.type().changeReturnType(Object.class));
+    binder = MethodHandles.filterArguments(binder, 0, values);
+    
+    return MethodHandles.permuteArguments(binder, BINDER_TYPE, new int[parameters.length]);
+  }
+  
+  /*
+   * Create a binder that assigns every property to a field of a new instance.
+   */
+  private static MethodHandle fieldBinder(Class<?> type) throws ConfigurationException,
+      NoSuchMethodException, IllegalAccessException {
+    
+    List<Field> fields = new ArrayList<>();
+    
+    for (Class<?> c = type; c!=Object.class; c = c.getSuperclass()) {
+      
+      for (Field field : c.getDeclaredFields()) {
+        
+        if (!field.isAnnotationPresent(ConfigurationProperty.class)) {
+          
+          continue;
+        }
+        
+        if (Modifier.isStatic(field.getModifiers()) ||
+            Modifier.isFinal(field.getModifiers())) {
+          
+          throw new ConfigurationException("Cannot bind field " + field.getName() + " of " +
+              c.getName() + "; bound fields must not be static or final");
+        }
+        
+        fields.add(field);
+      }
+    }
+    
+    // (Object, TypedConfiguration)Object, returning the instance
+    MethodHandle binder = MethodHandles.dropArguments(
+        MethodHandles.identity(Object.class), 1, TypedConfiguration.class);
+    
+    for (int i = fields.size() - 1; i>=0; i--) {
+      
+      Field field = fields.get(i);
+      ConfigurationProperty property = field.getAnnotation(ConfigurationProperty.class);
+      Class<?> valueType = field.getType();
+      
+      MethodHandle setter = MethodHandles.privateLookupIn(field.getDeclaringClass(),
+          MethodHandles.lookup()).unreflectSetter(field);
+      
+      setter = setter.asType(MethodType.methodType(void.class, Object.class, valueType));
+      
+      MethodHandle value = value(type, property, valueType);
+      MethodHandle assign;
+      
+      if (value==null) {
+        
+        assign = MethodHandles.filterArguments(setter, 1,
+            accessor(type, property, valueType));
+        assign = MethodHandles.guardWithTest(
+            MethodHandles.dropArguments(isSet(property.value()), 0, Object.class),
+            assign, MethodHandles.empty(assign.type()));
+        
+      } else {
+        
+        assign = MethodHandles.filterArguments(setter, 1, value);
+      }
+      
+      binder = MethodHandles.foldArguments(binder, assign);
+    }
+    
+    MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+        .findConstructor(type, MethodType.methodType(void.class));
+    
+    return MethodHandles.collectArguments(binder, 0,
+        constructor.asType(MethodType.methodType(Object.class)));
+  }
+  
+  /*
+   * Create the handle of type (TypedConfiguration)valueType that reads a
+   * property, applying its default value and failing if a required property
+   * is missing; or null if the property is optional and has no default value.
+   */
+  private static MethodHandle value(Class<?> type, ConfigurationProperty property,
+      Class<?> valueType) throws ConfigurationException {
+    
+    String key = property.value();
+    MethodHandle accessor = accessor(type, property, valueType);
+    
+    if (!ConfigurationProperty.NONE.equals(property.defaultValue())) {
+      
+      // convert the default value exactly as a property value would be
+      Object defaultValue = invoke(accessor, ImmutableConfiguration.builder()
+          .put(key, property.defaultValue()).build());
+      
+      return MethodHandles.guardWithTest(isSet(key), accessor,
+          MethodHandles.dropArguments(MethodHandles.constant(valueType, defaultValue), 0,
+              TypedConfiguration.class));
+    }
+    
+    if (!property.required()) {
+      
+      return null;
+    }
+    
+    if (valueType==String.class || valueType==List.class) {
+      
+      MethodHandle missing = MethodHandles.insertArguments(MISSING, 0, key);
+      
+      return MethodHandles.guardWithTest(isSet(key), accessor,
+          MethodHandles.dropArguments(missing.asType(MethodType.methodType(valueType)), 0,
+              TypedConfiguration.class));
+    }
+    
+    // the remaining accessors fail themselves if the property is missing
+    return accessor;
+  }
+  
+  /*
+   * Create the handle of type (TypedConfiguration)valueType that reads a
+   * property with the matching TypedConfiguration accessor.
+   */
+  private static MethodHandle accessor(Class<?> type, ConfigurationProperty property,
+      Class<?> valueType) throws ConfigurationException {
+    
+    String key = property.value();
+    MethodHandle accessor;
+    
+    try {
+      
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Class<?> primitiveType = MethodType.methodType(valueType).unwrap().returnType();
+      
+      if (valueType==String.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getProperty",
+            MethodType.methodType(String.class, String.class));
+        
+      } else if (primitiveType==int.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getInt",
+            MethodType.methodType(int.class, String.class));
+        
+      } else if (primitiveType==long.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class,
+            property.bytes() ? "getBytes" : "getLong",
+            MethodType.methodType(long.class, String.class));
+        
+      } else if (primitiveType==boolean.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getBoolean",
+            MethodType.methodType(boolean.class, String.class));
+        
+      } else if (valueType==Duration.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getDuration",
+            MethodType.methodType(Duration.class, String.class));
+        
+      } else if (valueType.isEnum()) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getEnum",
+            MethodType.methodType(Enum.class, String.class, Class.class));
+        accessor = MethodHandles.insertArguments(accessor, 2, valueType);
+        
+      } else if (valueType==List.class) {
+        
+        accessor = lookup.findVirtual(TypedConfiguration.class, "getList",
+            MethodType.methodType(List.class, String.class));
+        
+      } else {
+        
+        throw new ConfigurationException("Cannot bind property " + key + " of " +
+            type.getName() + "; unsupported type " + valueType.getName());
+      }
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new IllegalStateException(e);
+    }
+    
+    accessor = MethodHandles.insertArguments(accessor, 1, key);
+    
+    return accessor.asType(MethodType.methodType(valueType, TypedConfiguration.class));
+  }
+  
+  /*
+   * Create the handle of type (TypedConfiguration)boolean that tests whether
+   * a property is set.
+   */
+  private static MethodHandle isSet(String key) {
+    
+    return MethodHandles.insertArguments(IS_SET, 1, key);
+  }
+  
+  /*
+   * Invoke an accessor, while the binder is being created.
+   */
+  private static Object invoke(MethodHandle accessor, TypedConfiguration configuration)
+      throws ConfigurationException {
+    
+    try {
+      
+      return accessor.invoke(configuration);
+      
+    } catch (ConfigurationException | RuntimeException | Error e) {
+      
+      throw e;
+      
+    } catch (Throwable e) {
+      
+      throw new ConfigurationException(e);
+    }
+  }
+  
+  /*
+   * Whether a property is set.
+   */
+  private static boolean isSet(TypedConfiguration configuration, String key) {
+    
+    return configuration.getProperty(key)!=null;
+  }
+  
+  /*
+   * Report a missing required property.
+   */
+  private static Object missing(String key) throws ConfigurationException {
+    
+    throw new ConfigurationException("Missing required property " + key);
+  }
+
+}
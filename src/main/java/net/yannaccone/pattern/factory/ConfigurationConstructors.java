@@ -0,0 +1,202 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Detects and caches the Configuration constructors of implementation
+ * classes for the configurable base factories.
+ * <p>
+ * A Configuration constructor is a constructor annotated with
+ * {@link ConfigurationConstructor} that has a single parameter whose type
+ * implements Configuration.  An implementation that declares one is built
+ * configured in a single step, so it may keep its configured state in final
+ * fields and be shared safely without further synchronization.  Its
+ * configure method is not called by the base factories.  Implementations
+ * without one are instantiated and then configured.
+ */
+final class ConfigurationConstructors {
+  
+  /*
+   * Marks implementation classes without a Configuration constructor
+   */
+  private static final Object NONE = new Object();
+  
+  /*
+   * The Binding of the Configuration constructor of each implementation
+   * class, or NONE
+   */
+  private final ConcurrentMap<Class<?>, Object> constructors = new ConcurrentHashMap<>();
+
+  /**
+   * Create a configured instance of the implementation class through its
+   * Configuration constructor.
+   * 
+   * @param baseClass the base type of the factory
+   * @param subClass the implementation class to instantiate
+   * @param configuration the Configuration to pass to the constructor
+   * @param lookup the Lookup used to access the constructor the first time
+   *        the implementation class is seen
+   * @return the configured instance, or null if the implementation class has
+   *         no Configuration constructor
+   * @throws FactoryException if the constructor is not accessible or fails
+   * @throws ConfigurationException if the configuration is not of the type
+   *         the constructor accepts, or the constructor rejects it
+   */
+  <T> T newInstance(Class<T> baseClass, Class<?> subClass, Configuration configuration,
+      MethodHandles.Lookup lookup) throws FactoryException, ConfigurationException {
+    
+    Object constructor = prepare(subClass, lookup);
+    
+    if (constructor==NONE) {
+      
+      return null;
+    }
+    
+    return baseClass.cast(((Binding) constructor).newInstance(configuration));
+  }
+  
+  /**
+   * Find and cache the Configuration constructor of the implementation
+   * class, if it has not been found yet.
+   * 
+   * @param subClass the implementation class
+   * @param lookup the Lookup used to access the constructor
+   * @return the Binding of the Configuration constructor of the class, or
+   *         NONE
+   * @throws FactoryException if the annotated constructor is not a
+   *         Configuration constructor or is not accessible, or the class
+   *         annotates more than one
+   */
+  Object prepare(Class<?> subClass, MethodHandles.Lookup lookup) throws FactoryException {
+    
+    Object constructor = constructors.get(subClass);
+    
+    if (constructor==null) {
+      
+      constructor = find(subClass, lookup);
+      constructors.putIfAbsent(subClass, constructor);
+    }
+    
+    return constructor;
+  }
+  
+  /*
+   * Find the Configuration constructor of the implementation class.
+   */
+  private static Object find(Class<?> subClass, MethodHandles.Lookup lookup)
+      throws FactoryException {
+    
+    Constructor<?> found = null;
+    
+    for (Constructor<?> candidate : subClass.getDeclaredConstructors()) {
+      
+      if (!candidate.isAnnotationPresent(ConfigurationConstructor.class)) {
+        
+        continue;
+      }
+      
+      if (found!=null) {
+        
+        throw new FactoryException("Class " + subClass.getName() +
+            " annotates more than one ConfigurationConstructor");
+      }
+      
+      if (candidate.getParameterCount()!=1 ||
+          !Configuration.class.isAssignableFrom(candidate.getParameterTypes()[0])) {
+        
+        throw new FactoryException("ConfigurationConstructor of " + subClass.getName() +
+            " must have a single Configuration parameter");
+      }
+      
+      found = candidate;
+    }
+    
+    if (found==null) {
+      
+      return NONE;
+    }
+    
+    Class<?> parameterType = found.getParameterTypes()[0];
+    
+    try {
+      
+      MethodHandle handle = lookup.findConstructor(subClass,
+          MethodType.methodType(void.class, parameterType));
+      
+      return new Binding(subClass, parameterType, handle.asType(
+          MethodType.methodType(Object.class, Configuration.class)));
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new FactoryException("Configuration constructor of " + subClass.getName() +
+          " is not accessible; the factory must provide a Lookup with access to it", e);
+    }
+  }
+  
+  /*
+   * A Configuration constructor adapted to the type (Configuration)Object.
+   */
+  private static final class Binding {
+    
+    private final Class<?> subClass;
+    
+    private final Class<?> parameterType;
+    
+    private final MethodHandle handle;
+    
+    Binding(Class<?> subClass, Class<?> parameterType, MethodHandle handle) {
+      
+      this.subClass = subClass;
+      this.parameterType = parameterType;
+      this.handle = handle;
+    }
+    
+    Object newInstance(Configuration configuration) throws FactoryException,
+        ConfigurationException {
+      
+      if (!parameterType.isInstance(configuration)) {
+        
+        throw new ConfigurationException("Invalid configuration type; expected " +
+            parameterType.getName() + ", found " +
+            (configuration==null ? "null" : configuration.getClass().getName()));
+      }
+      
+      try {
+        
+        return handle.invokeExact(configuration);
+        
+      } catch (ConfigurationException | RuntimeException | Error e) {
+        
+        throw e;
+        
+      } catch (Throwable e) {
+        
+        throw new FactoryException("Failed to instantiate " + subClass.getName(), e);
+      }
+    }
+  }
+
+}
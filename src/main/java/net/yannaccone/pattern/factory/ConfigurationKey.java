@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a property of the configuration accepted by a Configurable
+ * implementation.  The configurable base factories validate every declared
+ * property in a single pass before the implementation is configured, and
+ * report all violations together in a
+ * {@link net.yannaccone.pattern.factory.ConfigurationValidationException
+ * ConfigurationValidationException}.
+ * <p>
+ * The declarations of each implementation class are compiled into a
+ * validator once, when the class is first configured.  Validation reads each
+ * property with the typed accessor of its type, so a configuration that
+ * caches parsed values hands the already parsed value to configure.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(ConfigurationSchema.class)
+public @interface ConfigurationKey {
+
+  /**
+   * The types a property may be declared with.
+   */
+  enum Type {
+    
+    /**
+     * Any String; min and max bound its length.
+     */
+    STRING,
+    
+    /**
+     * An int, as read by TypedConfiguration.getInt.
+     */
+    INT,
+    
+    /**
+     * A long, as read by TypedConfiguration.getLong.
+     */
+    LONG,
+    
+    /**
+     * A boolean, as read by TypedConfiguration.getBoolean.
+     */
+    BOOLEAN,
+    
+    /**
+     * A Duration, as read by TypedConfiguration.getDuration; min and max
+     * are in milliseconds.
+     */
+    DURATION,
+    
+    /**
+     * A size, as read by TypedConfiguration.getBytes; min and max are in
+     * bytes.
+     */
+    BYTES,
+    
+    /**
+     * A comma separated list, as read by TypedConfiguration.getList; min and
+     * max bound its number of elements.
+     */
+    LIST
+  }
+  
+  /**
+   * The property name.
+   * 
+   * @return the property name
+   */
+  String value();
+  
+  /**
+   * The type of the property.
+   * 
+   * @return the Type
+   */
+  Type type() default Type.STRING;
+  
+  /**
+   * Whether the property must be set.
+   * 
+   * @return whether the property is required
+   */
+  boolean required() default true;
+  
+  /**
+   * The smallest valid value, or length or size, depending on the type.
+   * 
+   * @return the lower bound, inclusive
+   */
+  long min() default Long.MIN_VALUE;
+  
+  /**
+   * The largest valid value, or length or size, depending on the type.
+   * 
+   * @return the upper bound, inclusive
+   */
+  long max() default Long.MAX_VALUE;
+  
+  /**
+   * A regular expression that a STRING property must match entirely.
+   * 
+   * @return the pattern, or an empty String for any value
+   */
+  String pattern() default "";
+  
+  /**
+   * The values a STRING property may take.
+   * 
+   * @return the allowed values, or none for any value
+   */
+  String[] allowed() default {};
+
+}
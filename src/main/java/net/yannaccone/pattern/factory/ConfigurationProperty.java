@@ -0,0 +1,82 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field or constructor parameter that is bound to a property by
+ * {@link net.yannaccone.pattern.factory.ConfigurationUtil#bind(Configuration, Class)
+ * ConfigurationUtil.bind}.
+ * <p>
+ * The annotated element may be a String, an int, long or boolean or their
+ * wrapper types, a Duration, an enum type, or a List of Strings.  Its value
+ * is read with the matching accessor of TypedConfiguration.
+ * <p>
+ * Since the annotation also applies to parameters, annotating the components
+ * of a record binds the record through its canonical constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface ConfigurationProperty {
+
+  /**
+   * The value of {@link #defaultValue()} when no default value is declared.
+   */
+  String NONE = "\n\t\t\n\t\t\n\n\t\t\t\t\n";
+  
+  /**
+   * The property name.
+   * 
+   * @return the property name
+   */
+  String value();
+  
+  /**
+   * Whether binding fails if the property is not set and has no default
+   * value.  An optional property that is not set leaves a field unchanged,
+   * and passes zero, false or null to a constructor parameter.
+   * 
+   * @return whether the property is required
+   */
+  boolean required() default true;
+  
+  /**
+   * The value used if the property is not set, in the same format as a
+   * property value.  It is converted once, when the binder is created.
+   * 
+   * @return the default value, or {@link #NONE}
+   */
+  String defaultValue() default NONE;
+  
+  /**
+   * Whether a long property is a size, read with
+   * {@link net.yannaccone.pattern.factory.TypedConfiguration#getBytes(String)
+   * getBytes} so that units such as "64k" are accepted.
+   * 
+   * @return whether the property is a size
+   */
+  boolean bytes() default false;
+
+}
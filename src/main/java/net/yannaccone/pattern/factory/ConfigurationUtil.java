@@ -18,6 +18,14 @@
  */
 package net.yannaccone.pattern.factory;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
 /**
  *
  */
@@ -49,4 +57,341 @@ public final class ConfigurationUtil {
     return configurationClass.cast(configuration);
   }
   
+  /**
+   * Create an instance of a class from the properties of a Configuration.
+   * The class declares the properties it binds with
+   * {@link net.yannaccone.pattern.factory.ConfigurationProperty
+   * ConfigurationProperty}, either on the parameters of a constructor, as the
+   * components of a record do, or on non-final fields assigned after the
+   * no-argument constructor runs.
+   * <p>
+   * The binder of each class is composed from MethodHandles the first time
+   * the class is bound and reused afterwards, so binding costs a typed read
+   * per property rather than reflection.
+   * 
+   * @param configuration the Configuration to read, which must be a
+   *        TypedConfiguration
+   * @param type the class to bind
+   * @return the bound instance
+   * @throws ConfigurationException if the Configuration is not a
+   *         TypedConfiguration, the class cannot be bound, or a property is
+   *         missing or invalid
+   */
+  public static <T> T bind(Configuration configuration, Class<T> type)
+      throws ConfigurationException {
+    
+    return ConfigurationBinders.bind(configuration, type);
+  }
+  
+  /**
+   * Validate a Configuration against the schema declared by a class with
+   * {@link net.yannaccone.pattern.factory.ConfigurationKey ConfigurationKey}.
+   * The configurable base factories do this before configuring an instance.
+   * 
+   * @param type the class declaring the schema
+   * @param configuration the Configuration to validate
+   * @throws ConfigurationValidationException if the configuration violates
+   *         the schema, listing every violation
+   * @throws ConfigurationException if the schema is invalid, or the
+   *         configuration is not a TypedConfiguration and the schema is not
+   *         empty
+   */
+  public static void validate(Class<?> type, Configuration configuration)
+      throws ConfigurationException {
+    
+    ConfigurationValidators.validate(type, configuration);
+  }
+  
+  /**
+   * Parse a property value as an int.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value
+   * @throws ConfigurationException if the value is not an int
+   */
+  public static int parseInt(String key, String value) throws ConfigurationException {
+    
+    return toInt(key, parseLong(key, value));
+  }
+  
+  /**
+   * Parse a property value as a long.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value
+   * @throws ConfigurationException if the value is not a long
+   */
+  public static long parseLong(String key, String value) throws ConfigurationException {
+    
+    try {
+      
+      return Long.parseLong(value.trim());
+      
+    } catch (NumberFormatException e) {
+      
+      throw invalid(key, value, "a long");
+    }
+  }
+  
+  /**
+   * Parse a property value as a double.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value
+   * @throws ConfigurationException if the value is not a double
+   */
+  public static double parseDouble(String key, String value) throws ConfigurationException {
+    
+    try {
+      
+      return Double.parseDouble(value.trim());
+      
+    } catch (NumberFormatException e) {
+      
+      throw invalid(key, value, "a double");
+    }
+  }
+  
+  /**
+   * Parse a property value as a boolean.  The value must be "true" or
+   * "false", ignoring case.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value
+   * @throws ConfigurationException if the value is not a boolean
+   */
+  public static boolean parseBoolean(String key, String value) throws ConfigurationException {
+    
+    String trimmed = value.trim();
+    
+    if (trimmed.equalsIgnoreCase("true")) {
+      
+      return true;
+    }
+    
+    if (trimmed.equalsIgnoreCase("false")) {
+      
+      return false;
+    }
+    
+    throw invalid(key, value, "a boolean");
+  }
+  
+  /**
+   * Parse a property value as a Duration.  The value is either an ISO-8601
+   * duration such as "PT1M30S", or a whole number followed by one of the
+   * units ns, us, ms, s, m, h or d.  A number without a unit is a number of
+   * milliseconds.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value
+   * @throws ConfigurationException if the value is not a duration
+   */
+  public static Duration parseDuration(String key, String value) throws ConfigurationException {
+    
+    String trimmed = value.trim();
+    
+    try {
+      
+      if (!trimmed.isEmpty() && Character.toUpperCase(trimmed.charAt(0))=='P') {
+        
+        return Duration.parse(trimmed);
+      }
+      
+      int end = numberEnd(trimmed);
+      long amount = Long.parseLong(trimmed.substring(0, end));
+      String unit = trimmed.substring(end).trim().toLowerCase(Locale.ROOT);
+      
+      switch (unit) {
+        
+        case "ns":
+          return Duration.ofNanos(amount);
+        case "us":
+          return Duration.of(amount, ChronoUnit.MICROS);
+        case "":
+        case "ms":
+          return Duration.ofMillis(amount);
+        case "s":
+          return Duration.ofSeconds(amount);
+        case "m":
+          return Duration.ofMinutes(amount);
+        case "h":
+          return Duration.ofHours(amount);
+        case "d":
+          return Duration.ofDays(amount);
+        default:
+          throw invalid(key, value, "a duration");
+      }
+      
+    } catch (RuntimeException e) {
+      
+      throw invalid(key, value, "a duration");
+    }
+  }
+  
+  /**
+   * Parse a property value as a number of bytes.  The value is a whole
+   * number optionally followed by one of the binary units k, m, g or t, which
+   * may also be written kb or kib, mb or mib, and so on, ignoring case.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @return the parsed value in bytes
+   * @throws ConfigurationException if the value is not a size
+   */
+  public static long parseBytes(String key, String value) throws ConfigurationException {
+    
+    String trimmed = value.trim();
+    
+    try {
+      
+      int end = numberEnd(trimmed);
+      long amount = Long.parseLong(trimmed.substring(0, end));
+      String unit = trimmed.substring(end).trim().toLowerCase(Locale.ROOT);
+      
+      if (unit.endsWith("ib")) {
+        
+        unit = unit.substring(0, unit.length() - 2);
+        
+      } else if (unit.length()>1 && unit.endsWith("b")) {
+        
+        unit = unit.substring(0, unit.length() - 1);
+      }
+      
+      switch (unit) {
+        
+        case "":
+        case "b":
+          return amount;
+        case "k":
+          return Math.multiplyExact(amount, 1L << 10);
+        case "m":
+          return Math.multiplyExact(amount, 1L << 20);
+        case "g":
+          return Math.multiplyExact(amount, 1L << 30);
+        case "t":
+          return Math.multiplyExact(amount, 1L << 40);
+        default:
+          throw invalid(key, value, "a size");
+      }
+      
+    } catch (RuntimeException e) {
+      
+      throw invalid(key, value, "a size");
+    }
+  }
+  
+  /**
+   * Parse a property value as a constant of an enum type.  The value is
+   * matched against the constant names exactly, and then ignoring case.
+   * 
+   * @param <E> the enum type
+   * @param key the property name, used in error messages
+   * @param value the property value
+   * @param enumType the Class of the enum type
+   * @return the parsed value
+   * @throws ConfigurationException if the value does not name a constant of
+   *         the enum type
+   */
+  public static <E extends Enum<E>> E parseEnum(String key, String value, Class<E> enumType)
+      throws ConfigurationException {
+    
+    String trimmed = value.trim();
+    
+    for (E constant : enumType.getEnumConstants()) {
+      
+      if (constant.name().equals(trimmed)) {
+        
+        return constant;
+      }
+    }
+    
+    for (E constant : enumType.getEnumConstants()) {
+      
+      if (constant.name().equalsIgnoreCase(trimmed)) {
+        
+        return constant;
+      }
+    }
+    
+    throw invalid(key, value, "one of " + Arrays.toString(enumType.getEnumConstants()));
+  }
+  
+  /**
+   * Parse a property value as a list of comma separated Strings.
+   * 
+   * @param key the property name, used in error messages
+   * @param value the property value, or null
+   * @return an unmodifiable List of the trimmed, non-empty elements of the
+   *         value; empty if value is null
+   */
+  public static List<String> parseList(String key, String value) {
+    
+    if (value==null) {
+      
+      return Collections.emptyList();
+    }
+    
+    List<String> elements = new ArrayList<>();
+    
+    for (String element : value.split(",")) {
+      
+      String trimmed = element.trim();
+      
+      if (!trimmed.isEmpty()) {
+        
+        elements.add(trimmed);
+      }
+    }
+    
+    return Collections.unmodifiableList(elements);
+  }
+  
+  /*
+   * Narrow a parsed long property value to an int.
+   */
+  static int toInt(String key, long value) throws ConfigurationException {
+    
+    if (value<Integer.MIN_VALUE || value>Integer.MAX_VALUE) {
+      
+      throw invalid(key, String.valueOf(value), "an int");
+    }
+    
+    return (int) value;
+  }
+  
+  /*
+   * Find the end of the leading, optionally signed, whole number of a value.
+   */
+  private static int numberEnd(String value) {
+    
+    int end = 0;
+    
+    if (end<value.length() && (value.charAt(end)=='-' || value.charAt(end)=='+')) {
+      
+      end++;
+    }
+    
+    while (end<value.length() && Character.isDigit(value.charAt(end))) {
+      
+      end++;
+    }
+    
+    return end;
+  }
+  
+  /*
+   * Create the exception reporting a value that cannot be converted.
+   */
+  private static ConfigurationException invalid(String key, String value, String expected) {
+    
+    return new ConfigurationException("Invalid value '" + value + "' of property " +
+        key + "; expected " + expected);
+  }
+
 }
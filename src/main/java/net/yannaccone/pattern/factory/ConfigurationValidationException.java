@@ -0,0 +1,59 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ConfigurationException reporting every violation of a configuration
+ * schema found in a single validation pass.
+ */
+public class ConfigurationValidationException extends ConfigurationException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The violations, one message each
+	 */
+	private final List<String> errors;
+
+	/**
+	 * @param message A message explaining the exception
+	 * @param errors The messages of the individual violations
+	 */
+	public ConfigurationValidationException(String message, List<String> errors) {
+		super(message + ": " + String.join("; ", errors));
+		this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+	}
+
+	/**
+	 * Get the violations.
+	 * 
+	 * @return an unmodifiable List of the messages of the violations
+	 */
+	public List<String> getErrors() {
+		return errors;
+	}
+
+}
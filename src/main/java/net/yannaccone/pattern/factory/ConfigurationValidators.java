@@ -0,0 +1,287 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles and caches the validators of the configuration schemas declared by
+ * Configurable implementations with
+ * {@link net.yannaccone.pattern.factory.ConfigurationKey ConfigurationKey}.
+ * <p>
+ * The declarations of each class are read once, with their patterns
+ * compiled and their allowed values hashed, into an array of checks that a
+ * validation runs in a single pass.  Classes that declare no schema map to an
+ * empty validator, so validating them costs a ClassValue lookup.
+ */
+final class ConfigurationValidators {
+  
+  /*
+   * The checks of each implementation class, or the ConfigurationException
+   * reporting an invalid schema
+   */
+  private static final ClassValue<Object> VALIDATORS = new ClassValue<Object>() {
+    
+    @Override
+    protected Object computeValue(Class<?> type) {
+      
+      try {
+        
+        return compile(type);
+        
+      } catch (ConfigurationException e) {
+        
+        return e;
+      }
+    }
+  };
+  
+  /*
+   * 
+   */
+  private ConfigurationValidators() {
+  }
+  
+  /**
+   * Validate a configuration against the schema declared by an
+   * implementation class.
+   * 
+   * @param type the implementation class
+   * @param configuration the Configuration to validate
+   * @throws ConfigurationValidationException if the configuration violates
+   *         the schema, listing every violation
+   * @throws ConfigurationException if the schema is invalid, or the
+   *         configuration is not a TypedConfiguration and the schema is not
+   *         empty
+   */
+  static void validate(Class<?> type, Configuration configuration)
+      throws ConfigurationException {
+    
+    Object validator = VALIDATORS.get(type);
+    
+    if (validator instanceof ConfigurationException) {
+      
+      ConfigurationException e = (ConfigurationException) validator;
+      throw new ConfigurationException(e.getMessage(), e.getCause());
+    }
+    
+    Check[] checks = (Check[]) validator;
+    
+    if (checks.length==0) {
+      
+      return;
+    }
+    
+    if (!(configuration instanceof TypedConfiguration)) {
+      
+      throw new ConfigurationException("Cannot validate the configuration of " +
+          type.getName() + "; expected " + TypedConfiguration.class.getName() + ", found " +
+          (configuration==null ? "null" : configuration.getClass().getName()));
+    }
+    
+    TypedConfiguration typed = (TypedConfiguration) configuration;
+    List<String> errors = null;
+    
+    for (Check check : checks) {
+      
+      String error = check.apply(typed);
+      
+      if (error!=null) {
+        
+        if (errors==null) {
+          
+          errors = new ArrayList<>();
+        }
+        
+        errors.add(error);
+      }
+    }
+    
+    if (errors!=null) {
+      
+      throw new ConfigurationValidationException("Invalid configuration of " +
+          type.getName(), errors);
+    }
+  }
+  
+  /**
+   * Compile the validator of an implementation class ahead of its first
+   * validation.  An invalid schema is reported by validate.
+   * 
+   * @param type the implementation class
+   */
+  static void prepare(Class<?> type) {
+    
+    VALIDATORS.get(type);
+  }
+  
+  /*
+   * Compile the checks of a class.
+   */
+  private static Check[] compile(Class<?> type) throws ConfigurationException {
+    
+    ConfigurationKey[] keys = type.getAnnotationsByType(ConfigurationKey.class);
+    Check[] checks = new Check[keys.length];
+    
+    for (int i = 0; i<keys.length; i++) {
+      
+      try {
+        
+        checks[i] = new Check(keys[i]);
+        
+      } catch (PatternSyntaxException e) {
+        
+        throw new ConfigurationException("Invalid schema of " + type.getName() +
+            "; property " + keys[i].value() + " has an invalid pattern", e);
+      }
+    }
+    
+    return checks;
+  }
+  
+  /*
+   * The compiled declaration of a property
+   */
+  private static final class Check {
+    
+    private final String key;
+    
+    private final ConfigurationKey.Type type;
+    
+    private final boolean required;
+    
+    private final long min;
+    
+    private final long max;
+    
+    /*
+     * The compiled pattern, or null
+     */
+    private final Pattern pattern;
+    
+    /*
+     * The allowed values, or null
+     */
+    private final Set<String> allowed;
+    
+    Check(ConfigurationKey declaration) {
+      
+      this.key = declaration.value();
+      this.type = declaration.type();
+      this.required = declaration.required();
+      this.min = declaration.min();
+      this.max = declaration.max();
+      this.pattern = declaration.pattern().isEmpty() ? null :
+          Pattern.compile(declaration.pattern());
+      this.allowed = declaration.allowed().length==0 ? null :
+          new HashSet<>(Arrays.asList(declaration.allowed()));
+    }
+    
+    /*
+     * Check the property, returning the message of its violation or null.
+     */
+    String apply(TypedConfiguration configuration) {
+      
+      String value;
+      
+      try {
+        
+        value = configuration.getProperty(key);
+        
+      } catch (IllegalStateException e) {
+        
+        // A value that cannot be resolved, as by InterpolatingConfiguration
+        return e.getMessage();
+      }
+      
+      if (value==null) {
+        
+        return required ? "Missing required property " + key : null;
+      }
+      
+      try {
+        
+        switch (type) {
+          
+          case INT:
+            return range(value, configuration.getInt(key), "");
+          case LONG:
+            return range(value, configuration.getLong(key), "");
+          case BOOLEAN:
+            configuration.getBoolean(key);
+            return null;
+          case DURATION:
+            return range(value, configuration.getDuration(key).toMillis(), "ms");
+          case BYTES:
+            return range(value, configuration.getBytes(key), " bytes");
+          case LIST:
+            return range(value, configuration.getList(key).size(), " elements");
+          default:
+            break;
+        }
+        
+      } catch (ConfigurationException | ArithmeticException e) {
+        
+        return e.getMessage();
+      }
+      
+      if (allowed!=null && !allowed.contains(value)) {
+        
+        return invalid(value, "one of " + allowed);
+      }
+      
+      if (pattern!=null && !pattern.matcher(value).matches()) {
+        
+        return invalid(value, "a match of " + pattern.pattern());
+      }
+      
+      return range(value, value.length(), " characters");
+    }
+    
+    /*
+     * Check that a converted value is within the bounds.
+     */
+    private String range(String value, long converted, String unit) {
+      
+      if (converted<min) {
+        
+        return invalid(value, "at least " + min + unit);
+      }
+      
+      if (converted>max) {
+        
+        return invalid(value, "at most " + max + unit);
+      }
+      
+      return null;
+    }
+    
+    private String invalid(String value, String expected) {
+      
+      return "Invalid value '" + value + "' of property " + key + "; expected " + expected;
+    }
+  }
+
+}
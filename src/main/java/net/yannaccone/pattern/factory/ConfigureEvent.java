@@ -0,0 +1,92 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning the configuration of an instance by a
+ * configurable factory: the validation of the configuration, and then either
+ * the call to the Configuration constructor of the implementation, or its
+ * instantiation and the call to configure.  It is committed whether the
+ * configuration succeeds or fails, so that failed and slow configurations
+ * alike show up.  Like {@link CreateEvent} it is disabled by default.
+ */
+@Name("net.yannaccone.pattern.factory.Configure")
+@Label("Factory Configure")
+@Category({"Pattern", "Factory"})
+@Description("The validation and configuration of an instance created by a factory")
+@Enabled(false)
+@StackTrace(false)
+final class ConfigureEvent extends jdk.jfr.Event {
+  
+  /*
+   * 
+   */
+  @Label("Implementation")
+  Class<?> implementation;
+  
+  /*
+   * 
+   */
+  @Label("Configuration")
+  Class<?> configuration;
+  
+  /*
+   * 
+   */
+  @Label("Constructor")
+  @Description("Whether the instance was built by its Configuration constructor")
+  boolean constructor;
+  
+  /*
+   * 
+   */
+  @Label("Failed")
+  @Description("Whether validation, instantiation or configuration failed")
+  boolean failed;
+  
+  /**
+   * Commit the event if it is enabled and within its threshold.
+   * 
+   * @param implementation the implementation class
+   * @param configuration the Configuration
+   * @param constructor whether the instance was built by its Configuration
+   *        constructor
+   * @param failed whether the configuration failed
+   */
+  void record(Class<?> implementation, Configuration configuration, boolean constructor,
+      boolean failed) {
+    
+    if (shouldCommit()) {
+      
+      this.implementation = implementation;
+      this.configuration = configuration==null ? null : configuration.getClass();
+      this.constructor = constructor;
+      this.failed = failed;
+      commit();
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning a create call of a base factory,
+ * including the configuration of the instance by the configurable
+ * factories.  It is disabled by default, since create is called on hot
+ * paths; enable it in the recording settings.  While disabled, its
+ * allocation is removed by the JIT and only the enabled check remains.
+ * <p>
+ * That holds only while the event does not escape the create method, so
+ * the factories record it after their exception handlers rather than from
+ * within them; an event referenced from a handler escapes, and is then
+ * allocated on every call even while disabled.
+ */
+@Name("net.yannaccone.pattern.factory.Create")
+@Label("Factory Create")
+@Category({"Pattern", "Factory"})
+@Description("The creation of an instance by a factory")
+@Enabled(false)
+@StackTrace(false)
+final class CreateEvent extends jdk.jfr.Event {
+  
+  /*
+   * 
+   */
+  @Label("Factory")
+  Class<?> factory;
+  
+  /*
+   * 
+   */
+  @Label("Type")
+  @Description("The type Strings requested, separated by colons")
+  String type;
+  
+  /*
+   * 
+   */
+  @Label("Implementation")
+  Class<?> implementation;
+  
+  /*
+   * 
+   */
+  @Label("Hit")
+  @Description("Whether an implementation of the type was found")
+  boolean hit;
+  
+  /**
+   * Commit the event if it is enabled and within its threshold.
+   * 
+   * @param factory the factory
+   * @param type the type String
+   * @param implementation the implementation class resolved, or null if
+   *        none was found
+   */
+  void record(Object factory, String type, Class<?> implementation) {
+    
+    if (shouldCommit()) {
+      
+      commit(factory, type, implementation);
+    }
+  }
+  
+  /**
+   * Commit the event of a factory with two type Strings if it is enabled
+   * and within its threshold.
+   * 
+   * @param factory the factory
+   * @param type1 the first type String
+   * @param type2 the second type String
+   * @param implementation the implementation class resolved, or null if
+   *        none was found
+   */
+  void record(Object factory, String type1, String type2, Class<?> implementation) {
+    
+    if (shouldCommit()) {
+      
+      commit(factory, type1 + ":" + type2, implementation);
+    }
+  }
+  
+  /**
+   * Commit the event of a factory with three type Strings if it is enabled
+   * and within its threshold.
+   * 
+   * @param factory the factory
+   * @param type1 the first type String
+   * @param type2 the second type String
+   * @param type3 the third type String
+   * @param implementation the implementation class resolved, or null if
+   *        none was found
+   */
+  void record(Object factory, String type1, String type2, String type3,
+      Class<?> implementation) {
+    
+    if (shouldCommit()) {
+      
+      commit(factory, type1 + ":" + type2 + ":" + type3, implementation);
+    }
+  }
+  
+  /*
+   * Set the fields and commit.
+   */
+  private void commit(Object factory, String type, Class<?> implementation) {
+    
+    this.factory = factory.getClass();
+    this.type = type;
+    this.implementation = implementation;
+    this.hit = implementation!=null;
+    commit();
+  }
+
+}
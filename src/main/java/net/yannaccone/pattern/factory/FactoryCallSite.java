@@ -0,0 +1,188 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+
+import net.yannaccone.pattern.reflector.Reflector;
+
+/**
+ * A reusable creation site bound to fixed type Strings of a base factory,
+ * obtained from the callSite methods of the base factories.
+ * <p>
+ * The implementation class is resolved once, when the site is linked, and the
+ * target of the underlying MutableCallSite creates instances of that class
+ * through the factory, guarded by the SwitchPoint of the Reflector scan it
+ * was resolved from.  The target calls the instantiateSubClass method of the
+ * factory, and records each creation in the CreateEvent and the metrics of
+ * the factory, exactly as create on the factory does; only the resolution is
+ * skipped.  The site only relinks when
+ * {@link net.yannaccone.pattern.reflector.Reflector#reload(String...) Reflector.reload}
+ * invalidates that SwitchPoint.
+ * <p>
+ * {@link #create() create} reads the invoker of the site from an instance
+ * field, which the JIT does not treat as a constant.  For the JIT to inline
+ * through the site to its current target, hold its
+ * {@link #dynamicInvoker() dynamicInvoker} in a static final field and call
+ * it with invokeExact:
+ * <pre>
+ * static final MethodHandle JSON = factory.callSite("json").dynamicInvoker();
+ * ...
+ * Codec codec = (Codec) (Object) JSON.invokeExact();
+ * </pre>
+ */
+public final class FactoryCallSite<T1> {
+  
+  /*
+   * The type of the targets of every FactoryCallSite
+   */
+  private static final MethodType TARGET_TYPE = MethodType.methodType(Object.class);
+  
+  /*
+   * The handle of relink(), bound to each FactoryCallSite
+   */
+  private static final MethodHandle RELINK;
+  
+  static {
+    
+    try {
+      
+      RELINK = MethodHandles.lookup().findVirtual(FactoryCallSite.class, "relink",
+          TARGET_TYPE);
+      
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+  
+  /*
+   * Resolves the target for the bound type Strings
+   */
+  private final Linker linker;
+  
+  /*
+   * The call site holding the guarded target
+   */
+  private final MutableCallSite callSite = new MutableCallSite(TARGET_TYPE);
+  
+  /*
+   * The invoker of callSite
+   */
+  private final MethodHandle invoker = callSite.dynamicInvoker();
+  
+  /*
+   * The handle of relink() bound to this FactoryCallSite
+   */
+  private final MethodHandle relink = RELINK.bindTo(this);
+
+  /**
+   * Create and link a new FactoryCallSite.
+   * 
+   * @param linker the Linker that resolves the target of the site
+   * @throws FactoryException if the target cannot be resolved
+   */
+  FactoryCallSite(Linker linker) throws FactoryException {
+    
+    this.linker = linker;
+    
+    link();
+  }
+  
+  /**
+   * Create a new instance of the implementation the site is bound to.
+   * 
+   * @return a new instance of the implementation
+   * @throws FactoryException if the implementation cannot be resolved after
+   *         a reload or fails to instantiate
+   */
+  @SuppressWarnings("unchecked")
+  public T1 create() throws FactoryException {
+    
+    try {
+      
+      return (T1) invoker.invokeExact();
+      
+    } catch (FactoryException | RuntimeException | Error e) {
+      
+      throw e;
+      
+    } catch (Throwable e) {
+      
+      throw new FactoryException("Failed to instantiate implementation", e);
+    }
+  }
+  
+  /**
+   * Get the dynamic invoker of the underlying MutableCallSite, for callers
+   * that embed the site in their own MethodHandle chains or hold it in a
+   * static final field.  The invoker has the type ()Object, and throws the
+   * FactoryException of a failed creation.
+   * 
+   * @return the dynamic invoker of the site
+   */
+  public MethodHandle dynamicInvoker() {
+    
+    return invoker;
+  }
+  
+  /*
+   * Resolve the target and install it behind the SwitchPoint of the current
+   * scan.  The SwitchPoint is obtained first, so a concurrent reload can only
+   * make the installed target stale, never outdated.
+   */
+  private MethodHandle link() throws FactoryException {
+    
+    SwitchPoint switchPoint = Reflector.getSwitchPoint();
+    MethodHandle target = linker.link().asType(TARGET_TYPE);
+    
+    callSite.setTarget(switchPoint.guardWithTest(target, relink));
+    
+    return target;
+  }
+  
+  /*
+   * The fallback of the guarded target; relinks the site and creates an
+   * instance through the new target.
+   */
+  private Object relink() throws Throwable {
+    
+    return link().invokeExact();
+  }
+  
+  /**
+   * Resolves the target of a FactoryCallSite.
+   */
+  interface Linker {
+    
+    /**
+     * Resolve the current implementation and return a handle that creates an
+     * instance of it.
+     * 
+     * @return a handle of type ()Object
+     * @throws FactoryException if the implementation cannot be resolved
+     */
+    MethodHandle link() throws FactoryException;
+  }
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of a factory, enabled with the enableMetrics method of the
+ * base factories: the number of misses of the factory, and the
+ * {@link net.yannaccone.pattern.factory.TypeMetrics TypeMetrics} of each
+ * implementation it creates.  Misses are counted per factory rather than per
+ * requested type, so that requests for arbitrary unknown types cannot grow
+ * the metrics without bound.
+ * <p>
+ * Enabled metrics are registered as an MXBean with the platform
+ * MBeanServer, and handed to every
+ * {@link net.yannaccone.pattern.factory.MetricsExporter MetricsExporter},
+ * until the factory disables them.  The metrics refer to their factory
+ * weakly, so that they do not keep it reachable.
+ * Once an implementation has been created, recording its creations
+ * allocates nothing.
+ */
+public final class FactoryMetrics implements FactoryMetricsMXBean {
+  
+  /*
+   * The JMX domain of the metrics
+   */
+  private static final String DOMAIN = "net.yannaccone.pattern";
+  
+  /*
+   * The exporters, located once
+   */
+  private static List<MetricsExporter> exporters;
+  
+  /*
+   * 
+   */
+  private final String factory;
+  
+  /*
+   * Labels an implementation class with its type Strings
+   */
+  private final Function<Class<?>, String> types;
+  
+  /*
+   * 
+   */
+  private final ConcurrentMap<Class<?>, TypeMetrics> typeMetrics =
+      new ConcurrentHashMap<Class<?>, TypeMetrics>();
+  
+  /*
+   * 
+   */
+  private final LongAdder misses = new LongAdder();
+  
+  /*
+   * 
+   */
+  private volatile ObjectName objectName;
+
+  /*
+   * 
+   */
+  private FactoryMetrics(String factory, Function<Class<?>, String> types) {
+    
+    this.factory = factory;
+    this.types = types;
+  }
+  
+  /*
+   * Create the metrics of a factory, register them with the platform
+   * MBeanServer and hand them to the exporters.  The types function is
+   * passed the factory, so that the metrics need not hold it strongly.
+   */
+  static <F> FactoryMetrics register(F factory, BiFunction<? super F, Class<?>, String> types) {
+    
+    WeakReference<F> reference = new WeakReference<>(factory);
+    FactoryMetrics metrics = new FactoryMetrics(factory.getClass().getName(), c -> {
+      
+      F referent = reference.get();
+      
+      return referent==null ? null : types.apply(referent, c);
+    });
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    
+    try {
+      
+      String name = ObjectName.quote(metrics.factory);
+      
+      for (int i = 2; metrics.objectName==null; i++) {
+        
+        try {
+          
+          metrics.objectName = server.registerMBean(metrics, new ObjectName(DOMAIN +
+              ":type=FactoryMetrics,name=" + name)).getObjectName();
+          
+        } catch (InstanceAlreadyExistsException e) {
+          
+          // Another instance of the same factory class
+          name = ObjectName.quote(metrics.factory + "#" + i);
+        }
+      }
+      
+    } catch (JMException e) {
+      
+      throw new IllegalStateException("Failed to register the metrics of " +
+          metrics.factory, e);
+    }
+    
+    for (MetricsExporter exporter : exporters()) {
+      
+      exporter.export(metrics);
+    }
+    
+    return metrics;
+  }
+
+  /*
+   * Unregister the metrics from the platform MBeanServer, freeing their
+   * ObjectName, and withdraw them from the exporters.
+   */
+  void unregister() {
+    
+    ObjectName name = objectName;
+    
+    if (name!=null) {
+      
+      try {
+        
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        
+      } catch (InstanceNotFoundException e) {
+        
+        // Already unregistered through the MBeanServer
+        
+      } catch (JMException e) {
+        
+        throw new IllegalStateException("Failed to unregister the metrics of " + factory, e);
+      }
+    }
+    
+    for (MetricsExporter exporter : exporters()) {
+      
+      exporter.remove(this);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getObjectName()
+   */
+  @Override
+  public ObjectName getObjectName() {
+    
+    return objectName;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getFactory()
+   */
+  @Override
+  public String getFactory() {
+    
+    return factory;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getCreated()
+   */
+  @Override
+  public long getCreated() {
+    
+    long created = 0L;
+    
+    for (TypeMetrics type : typeMetrics.values()) {
+      
+      created += type.getCreated();
+    }
+    
+    return created;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getFailures()
+   */
+  @Override
+  public long getFailures() {
+    
+    long failures = 0L;
+    
+    for (TypeMetrics type : typeMetrics.values()) {
+      
+      failures += type.getFailures();
+    }
+    
+    return failures;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getMisses()
+   */
+  @Override
+  public long getMisses() {
+    
+    return misses.sum();
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.FactoryMetricsMXBean#getTypes()
+   */
+  @Override
+  public List<TypeMetrics> getTypes() {
+    
+    return new ArrayList<TypeMetrics>(typeMetrics.values());
+  }
+  
+  /**
+   * Get the metrics of an implementation class.
+   * 
+   * @param implementation the implementation class
+   * @return the TypeMetrics, or null if the factory has not yet created the
+   *         implementation
+   */
+  public TypeMetrics getTypeMetrics(Class<?> implementation) {
+    
+    return typeMetrics.get(implementation);
+  }
+  
+  /*
+   * Get the metrics of an implementation class, creating them on its first
+   * creation.
+   */
+  TypeMetrics type(Class<?> implementation) {
+    
+    TypeMetrics type = typeMetrics.get(implementation);
+    
+    if (type==null) {
+      
+      type = typeMetrics.computeIfAbsent(implementation,
+          c -> new TypeMetrics(c, types.apply(c)));
+    }
+    
+    return type;
+  }
+  
+  /*
+   * Record a failed creation; a miss if no implementation class was
+   * resolved.
+   */
+  void failed(Class<?> implementation) {
+    
+    if (implementation==null) {
+      
+      misses.increment();
+      
+    } else {
+      
+      type(implementation).failed();
+    }
+  }
+  
+  /*
+   * Locate the exporters on first use.
+   */
+  private static synchronized List<MetricsExporter> exporters() {
+    
+    if (exporters==null) {
+      
+      exporters = new ArrayList<MetricsExporter>();
+      
+      for (MetricsExporter exporter : ServiceLoader.load(MetricsExporter.class)) {
+        
+        exporters.add(exporter);
+      }
+    }
+    
+    return exporters;
+  }
+
+}
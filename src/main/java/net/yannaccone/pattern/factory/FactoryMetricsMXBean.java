@@ -0,0 +1,76 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.List;
+
+import javax.management.ObjectName;
+
+/**
+ * The management interface of the {@link FactoryMetrics} of a factory,
+ * registered with the platform MBeanServer under the domain
+ * net.yannaccone.pattern with type=FactoryMetrics.
+ */
+public interface FactoryMetricsMXBean {
+  
+  /**
+   * Get the name under which the metrics are registered.
+   * 
+   * @return the ObjectName
+   */
+  ObjectName getObjectName();
+  
+  /**
+   * Get the name of the factory class.
+   * 
+   * @return the class name
+   */
+  String getFactory();
+  
+  /**
+   * Get the number of instances created, across all implementations.
+   * 
+   * @return the number of instances
+   */
+  long getCreated();
+  
+  /**
+   * Get the number of creations that failed while constructing or
+   * configuring an instance, across all implementations.
+   * 
+   * @return the number of failures
+   */
+  long getFailures();
+  
+  /**
+   * Get the number of creations that failed because no implementation of
+   * the requested type exists.
+   * 
+   * @return the number of misses
+   */
+  long getMisses();
+  
+  /**
+   * Get the metrics of each implementation created so far.
+   * 
+   * @return a new List of the TypeMetrics
+   */
+  List<TypeMetrics> getTypes();
+
+}
@@ -0,0 +1,716 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable Configuration that stores String configuration properties in a
+ * compact open-addressing table.  Reads take no locks and do not allocate,
+ * so an ImmutableConfiguration can be read from any number of threads on hot
+ * paths.  It is intended as a replacement for PropertiesConfiguration, whose
+ * Hashtable synchronizes every read and walks its chain of defaults on every
+ * miss.
+ * <p>
+ * Instances are created with a {@link ImmutableConfiguration.Builder Builder},
+ * which flattens the defaults of any Properties it is given so that every
+ * property resolves with a single table lookup.
+ * <p>
+ * The typed accessors parse each value once and cache the result in the slot
+ * of its property.  Later reads of an int, long, boolean or size return the
+ * cached primitive without boxing; later reads of a Duration, enum constant
+ * or List return the cached object.
+ */
+public final class ImmutableConfiguration implements TypedConfiguration {
+  
+  /*
+   * Kinds of primitive values cached in the slots of the table
+   */
+  private static final int UNCACHED = 0;
+  private static final int CLAIMED = 1;
+  private static final int LONG = 2;
+  private static final int BOOLEAN = 3;
+  private static final int BYTES = 4;
+  
+  /*
+   * Accesses the elements of kinds with acquire/release ordering, so that a
+   * reader that sees a kind also sees the primitive cached with it
+   */
+  private static final VarHandle KINDS = MethodHandles.arrayElementVarHandle(int[].class);
+  
+  /*
+   * The empty configuration
+   */
+  private static final ImmutableConfiguration EMPTY =
+      new ImmutableConfiguration(Collections.<String, String>emptyMap());
+  
+  /*
+   * The keys of the table; null marks an empty slot
+   */
+  private final String[] keys;
+  
+  /*
+   * The values of the table, in the slots of their keys
+   */
+  private final String[] values;
+  
+  /*
+   * The spread hash codes of the keys, in the slots of their keys
+   */
+  private final int[] hashes;
+  
+  /*
+   * The table length minus one; the table length is a power of two
+   */
+  private final int mask;
+  
+  /*
+   * The property names, in insertion order
+   */
+  private final Set<String> names;
+  
+  /*
+   * The kind of primitive cached in each slot
+   */
+  private final int[] kinds;
+  
+  /*
+   * The primitive cached in each slot, valid when its kind is set
+   */
+  private final long[] primitives;
+  
+  /*
+   * The parsed object cached in each slot, or null
+   */
+  private final Object[] objects;
+
+  /*
+   * Build the table from the provided entries.
+   */
+  private ImmutableConfiguration(Map<String, String> entries) {
+    
+    // Keep the table at most half full so that probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+    
+    this.keys = new String[capacity];
+    this.values = new String[capacity];
+    this.hashes = new int[capacity];
+    this.mask = capacity - 1;
+    this.kinds = new int[capacity];
+    this.primitives = new long[capacity];
+    this.objects = new Object[capacity];
+    
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      
+      int hash = spread(entry.getKey().hashCode());
+      int index = hash & mask;
+      
+      while (keys[index]!=null) {
+        
+        index = (index + 1) & mask;
+      }
+      
+      keys[index] = entry.getKey();
+      values[index] = entry.getValue();
+      hashes[index] = hash;
+    }
+    
+    this.names = Collections.unmodifiableSet(new LinkedHashSet<>(entries.keySet()));
+  }
+  
+  /**
+   * Get an empty ImmutableConfiguration.
+   * 
+   * @return an ImmutableConfiguration with no properties
+   */
+  public static ImmutableConfiguration empty() {
+    
+    return EMPTY;
+  }
+  
+  /**
+   * Create a new Builder.
+   * 
+   * @return a new, empty Builder
+   */
+  public static Builder builder() {
+    
+    return new Builder();
+  }
+  
+  /**
+   * Create a new ImmutableConfiguration from the provided Properties,
+   * including their defaults.
+   * 
+   * @param properties the Properties to copy
+   * @return a new ImmutableConfiguration
+   */
+  public static ImmutableConfiguration of(Properties properties) {
+    
+    return builder().putAll(properties).build();
+  }
+  
+  /**
+   * Create a new Builder that starts with the properties of this
+   * configuration.
+   * 
+   * @return a new Builder
+   */
+  public Builder toBuilder() {
+    
+    return builder().putAll(this);
+  }
+
+  /**
+   * Get the value of a property.
+   * 
+   * @param key the property name
+   * @return the property value, or null if the property is not set
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? null : values[index];
+  }
+  
+  /**
+   * Get the value of a property, or a default value if the property is not
+   * set.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   */
+  @Override
+  public String getProperty(String key, String defaultValue) {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : values[index];
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.toInt(key, primitive(key, require(key), LONG));
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : ConfigurationUtil.toInt(key, primitive(key, index, LONG));
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    return primitive(key, require(key), LONG);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : primitive(key, index, LONG);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    return primitive(key, require(key), BOOLEAN)!=0;
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : primitive(key, index, BOOLEAN)!=0;
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String)
+   */
+  @Override
+  public long getBytes(String key) throws ConfigurationException {
+    
+    return primitive(key, require(key), BYTES);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String, long)
+   */
+  @Override
+  public long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : primitive(key, index, BYTES);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String)
+   */
+  @Override
+  public Duration getDuration(String key) throws ConfigurationException {
+    
+    return duration(key, require(key));
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String, java.time.Duration)
+   */
+  @Override
+  public Duration getDuration(String key, Duration defaultValue) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : duration(key, index);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return constant(key, require(key), enumType);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class, java.lang.Enum)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    return index<0 ? defaultValue : constant(key, index, enumType);
+  }
+  
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getList(java.lang.String)
+   */
+  @Override
+  public List<String> getList(String key) {
+    
+    int index = indexOf(key);
+    
+    if (index<0) {
+      
+      return Collections.emptyList();
+    }
+    
+    Object cached = objects[index];
+    
+    if (cached instanceof List) {
+      
+      @SuppressWarnings("unchecked")
+      List<String> list = (List<String>) cached;
+      return list;
+    }
+    
+    List<String> list = ConfigurationUtil.parseList(key, values[index]);
+    objects[index] = list;
+    
+    return list;
+  }
+  
+  /**
+   * Check whether a property is set.
+   * 
+   * @param key the property name
+   * @return true if the property is set
+   */
+  public boolean containsKey(String key) {
+    
+    return indexOf(key)>=0;
+  }
+  
+  /**
+   * Get the number of properties.
+   * 
+   * @return the number of properties
+   */
+  public int size() {
+    
+    return names.size();
+  }
+  
+  /**
+   * Get the property names.
+   * 
+   * @return an unmodifiable Set of the property names, in the order they
+   *         were added to the Builder
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    return names;
+  }
+  
+  /**
+   * Pass every property to the provided action without allocating.
+   * 
+   * @param action the action to perform on each property name and value
+   */
+  public void forEach(BiConsumer<? super String, ? super String> action) {
+    
+    for (int i=0; i<keys.length; i++) {
+      
+      if (keys[i]!=null) {
+        
+        action.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    
+    if (obj==this) {
+      
+      return true;
+    }
+    
+    if (!(obj instanceof ImmutableConfiguration)) {
+      
+      return false;
+    }
+    
+    ImmutableConfiguration other = (ImmutableConfiguration) obj;
+    
+    if (other.size()!=size()) {
+      
+      return false;
+    }
+    
+    for (int i=0; i<keys.length; i++) {
+      
+      if (keys[i]!=null && !values[i].equals(other.getProperty(keys[i]))) {
+        
+        return false;
+      }
+    }
+    
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    
+    int hashCode = 0;
+    
+    for (int i=0; i<keys.length; i++) {
+      
+      if (keys[i]!=null) {
+        
+        hashCode += keys[i].hashCode() ^ values[i].hashCode();
+      }
+    }
+    
+    return hashCode;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    StringBuilder builder = new StringBuilder("{");
+    
+    for (String name : names) {
+      
+      if (builder.length()>1) {
+        
+        builder.append(", ");
+      }
+      
+      builder.append(name).append('=').append(getProperty(name));
+    }
+    
+    return builder.append('}').toString();
+  }
+  
+  /*
+   * Find the slot of a key, or -1 if the key is not in the table.
+   */
+  int indexOf(String key) {
+    
+    int hash = spread(key.hashCode());
+    String[] keys = this.keys;
+    
+    for (int index=hash & mask; ; index=(index + 1) & mask) {
+      
+      String candidate = keys[index];
+      
+      if (candidate==null) {
+        
+        return -1;
+      }
+      
+      if (candidate==key || (hashes[index]==hash && candidate.equals(key))) {
+        
+        return index;
+      }
+    }
+  }
+  
+  /*
+   * Find the slot of a required property.
+   */
+  private int require(String key) throws ConfigurationException {
+    
+    int index = indexOf(key);
+    
+    if (index<0) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return index;
+  }
+  
+  /*
+   * Get the primitive of the provided kind for the value in a slot, parsing
+   * and caching it on first use.  A slot caches a single kind; a value read
+   * as more than one kind is parsed on every read of the other kinds.
+   */
+  private long primitive(String key, int index, int kind) throws ConfigurationException {
+    
+    if ((int) KINDS.getAcquire(kinds, index)==kind) {
+      
+      return primitives[index];
+    }
+    
+    long parsed;
+    
+    switch (kind) {
+      
+      case LONG:
+        parsed = ConfigurationUtil.parseLong(key, values[index]);
+        break;
+      case BOOLEAN:
+        parsed = ConfigurationUtil.parseBoolean(key, values[index]) ? 1 : 0;
+        break;
+      default:
+        parsed = ConfigurationUtil.parseBytes(key, values[index]);
+        break;
+    }
+    
+    // Claim the slot before writing it, so that racing readers of different
+    // kinds can never pair one kind with another's value
+    if (KINDS.compareAndSet(kinds, index, UNCACHED, CLAIMED)) {
+      
+      primitives[index] = parsed;
+      KINDS.setRelease(kinds, index, kind);
+    }
+    
+    return parsed;
+  }
+  
+  /*
+   * Get the Duration for the value in a slot, parsing and caching it on
+   * first use.  Durations are immutable, so they may be cached without
+   * ordering.
+   */
+  private Duration duration(String key, int index) throws ConfigurationException {
+    
+    Object cached = objects[index];
+    
+    if (cached instanceof Duration) {
+      
+      return (Duration) cached;
+    }
+    
+    Duration duration = ConfigurationUtil.parseDuration(key, values[index]);
+    objects[index] = duration;
+    
+    return duration;
+  }
+  
+  /*
+   * Get the enum constant for the value in a slot, parsing and caching it on
+   * first use.
+   */
+  private <E extends Enum<E>> E constant(String key, int index, Class<E> enumType)
+      throws ConfigurationException {
+    
+    Object cached = objects[index];
+    
+    if (enumType.isInstance(cached)) {
+      
+      return enumType.cast(cached);
+    }
+    
+    E constant = ConfigurationUtil.parseEnum(key, values[index], enumType);
+    objects[index] = constant;
+    
+    return constant;
+  }
+  
+  /*
+   * Mix the high bits of a hash code into the low bits used as the index.
+   */
+  private static int spread(int hashCode) {
+    
+    return hashCode ^ (hashCode >>> 16);
+  }
+  
+  /**
+   * A builder of ImmutableConfiguration instances.  A Builder is not thread
+   * safe.  Properties added later replace properties of the same name added
+   * earlier.
+   */
+  public static final class Builder {
+    
+    /*
+     * The properties to build, in insertion order
+     */
+    private final Map<String, String> entries = new LinkedHashMap<>();
+    
+    /*
+     * 
+     */
+    private Builder() {
+    }
+    
+    /**
+     * Add a property.
+     * 
+     * @param key the property name
+     * @param value the property value
+     * @return this Builder
+     */
+    public Builder put(String key, String value) {
+      
+      if (key==null || value==null) {
+        
+        throw new IllegalArgumentException("Property names and values cannot be null");
+      }
+      
+      entries.put(key, value);
+      
+      return this;
+    }
+    
+    /**
+     * Add every String property of the provided Properties, including the
+     * properties inherited from their defaults.  This also accepts a
+     * PropertiesConfiguration.  Entries whose key or value is not a String
+     * are ignored, as they are by
+     * {@link java.util.Properties#stringPropertyNames() stringPropertyNames}.
+     * 
+     * @param properties the Properties to add
+     * @return this Builder
+     */
+    public Builder putAll(Properties properties) {
+      
+      for (String name : properties.stringPropertyNames()) {
+        
+        entries.put(name, properties.getProperty(name));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Add every property of the provided configuration.
+     * 
+     * @param configuration the ImmutableConfiguration to add
+     * @return this Builder
+     */
+    public Builder putAll(ImmutableConfiguration configuration) {
+      
+      for (String name : configuration.stringPropertyNames()) {
+        
+        entries.put(name, configuration.getProperty(name));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Remove a property.
+     * 
+     * @param key the property name
+     * @return this Builder
+     */
+    public Builder remove(String key) {
+      
+      entries.remove(key);
+      
+      return this;
+    }
+    
+    /**
+     * Build an ImmutableConfiguration from the properties added so far.  The
+     * Builder can continue to be used afterwards.
+     * 
+     * @return a new ImmutableConfiguration
+     */
+    public ImmutableConfiguration build() {
+      
+      return entries.isEmpty() ? EMPTY : new ImmutableConfiguration(entries);
+    }
+  }
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.SwitchPoint;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of implementation classes by their type Strings, built by a base
+ * factory from one Reflector scan.  The registry is stale once the
+ * SwitchPoint of that scan has been invalidated by
+ * {@link net.yannaccone.pattern.reflector.Reflector#reload(String...) Reflector.reload},
+ * and must then be rebuilt.
+ * <p>
+ * Registries of factories with more than one type String nest one map per
+ * type String, so that lookups do not need to build a composite key.  A
+ * registry is immutable once built.
+ */
+final class ImplementationRegistry {
+  
+  /*
+   * The SwitchPoint of the scan the registry was built from
+   */
+  private final SwitchPoint switchPoint;
+  
+  /*
+   * The implementation classes, nested one level per type String
+   */
+  private final Map<String, Object> implementations = new HashMap<>();
+  
+  /*
+   * The type Strings of each implementation class, separated by colons
+   */
+  private final Map<Class<?>, String> typeNames = new HashMap<>();
+  
+  /*
+   * The failure found while building the registry, if any
+   */
+  private FactoryException failure;
+  
+  /*
+   * The number of implementation classes registered
+   */
+  private int size;
+
+  /**
+   * Create a new, empty ImplementationRegistry for the scan associated with
+   * the provided SwitchPoint.
+   * 
+   * @param switchPoint the SwitchPoint of the scan the registry is built from
+   */
+  ImplementationRegistry(SwitchPoint switchPoint) {
+    
+    this.switchPoint = switchPoint;
+  }
+  
+  /**
+   * Get the SwitchPoint of the scan the registry was built from.
+   * 
+   * @return the SwitchPoint of the scan
+   */
+  SwitchPoint getSwitchPoint() {
+    
+    return switchPoint;
+  }
+  
+  /**
+   * Check whether the scan the registry was built from is still current.
+   * 
+   * @return true if the registry can be used
+   */
+  boolean isCurrent() {
+    
+    return !switchPoint.hasBeenInvalidated();
+  }
+  
+  /**
+   * Register an implementation class under the provided type Strings.  If an
+   * implementation is already registered under the same type Strings, the
+   * first one is kept.
+   * 
+   * @param implementation the implementation class
+   * @param types the type Strings of the implementation, one per annotation
+   */
+  @SuppressWarnings("unchecked")
+  void put(Class<?> implementation, String... types) {
+    
+    Map<String, Object> level = implementations;
+    
+    for (int i=0; i<types.length - 1; i++) {
+      
+      Object next = level.get(types[i]);
+      
+      if (next==null) {
+        
+        next = new HashMap<String, Object>();
+        level.put(types[i], next);
+      }
+      
+      level = (Map<String, Object>) next;
+    }
+    
+    if (!level.containsKey(types[types.length - 1])) {
+      
+      level.put(types[types.length - 1], implementation);
+      typeNames.putIfAbsent(implementation, String.join(":", types));
+      size++;
+    }
+  }
+  
+  /**
+   * Record a failure found while building the registry; it is thrown by
+   * every lookup.
+   * 
+   * @param failure the failure
+   */
+  void fail(FactoryException failure) {
+    
+    this.failure = failure;
+  }
+  
+  /**
+   * Check whether a failure was found while building the registry.
+   * 
+   * @return true if lookups throw the failure
+   */
+  boolean isFailed() {
+    
+    return failure!=null;
+  }
+  
+  /**
+   * Get the number of implementation classes registered.
+   * 
+   * @return the number of implementation classes
+   */
+  int size() {
+    
+    return size;
+  }
+  
+  /**
+   * Get the implementation classes registered.
+   * 
+   * @return an unmodifiable Collection of the implementation classes
+   * @throws FactoryException if building the registry failed
+   */
+  Collection<Class<?>> implementations() throws FactoryException {
+    
+    checkFailure();
+    
+    return Collections.unmodifiableSet(typeNames.keySet());
+  }
+  
+  /**
+   * Get the type Strings an implementation class is registered under.
+   * 
+   * @param implementation the implementation class
+   * @return the type Strings separated by colons, or null if the class is
+   *         not registered
+   */
+  String typeOf(Class<?> implementation) {
+    
+    return typeNames.get(implementation);
+  }
+  
+  /**
+   * Get the implementation class registered under a single type String.
+   * 
+   * @param type the type String
+   * @return the implementation class, or null if none is registered
+   * @throws FactoryException if building the registry failed
+   */
+  Class<?> get(String type) throws FactoryException {
+    
+    checkFailure();
+    
+    return (Class<?>) implementations.get(type);
+  }
+  
+  /**
+   * Get the implementation class registered under two type Strings.
+   * 
+   * @param type1 the first type String
+   * @param type2 the second type String
+   * @return the implementation class, or null if none is registered
+   * @throws FactoryException if building the registry failed
+   */
+  Class<?> get(String type1, String type2) throws FactoryException {
+    
+    checkFailure();
+    
+    Map<?, ?> level = (Map<?, ?>) implementations.get(type1);
+    
+    return level==null ? null : (Class<?>) level.get(type2);
+  }
+  
+  /**
+   * Get the implementation class registered under three type Strings.
+   * 
+   * @param type1 the first type String
+   * @param type2 the second type String
+   * @param type3 the third type String
+   * @return the implementation class, or null if none is registered
+   * @throws FactoryException if building the registry failed
+   */
+  Class<?> get(String type1, String type2, String type3) throws FactoryException {
+    
+    checkFailure();
+    
+    Map<?, ?> level = (Map<?, ?>) implementations.get(type1);
+    
+    if (level!=null) {
+      
+      level = (Map<?, ?>) level.get(type2);
+    }
+    
+    return level==null ? null : (Class<?>) level.get(type3);
+  }
+  
+  /*
+   * Throw a copy of the failure found while building the registry, if any.
+   */
+  private void checkFailure() throws FactoryException {
+    
+    if (failure!=null) {
+      
+      throw new FactoryException(failure.getMessage(), failure.getCause());
+    }
+  }
+
+}
@@ -0,0 +1,403 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A Configuration that resolves placeholders in the values of another
+ * TypedConfiguration.
+ * <p>
+ * A placeholder is written ${name} and is replaced by the value of the
+ * property name, itself resolved; ${env.NAME} is replaced by an environment
+ * variable and ${sys.name} by a system property.  $${ is written to produce a
+ * literal ${.
+ * <p>
+ * Each value is resolved on first read and memoized, so later reads cost a
+ * hash lookup and never resolve again.  The memoized values belong to the
+ * current content of the wrapped configuration, which should therefore be
+ * immutable; to follow a configuration that changes, wrap each new snapshot
+ * of it, for example each {@link ReloadingConfiguration#snapshot()}, in a new
+ * InterpolatingConfiguration.
+ * <p>
+ * A property whose value refers to itself, directly or through other
+ * properties, or to a property, environment variable or system property that
+ * is not set, is invalid: the typed accessors throw a ConfigurationException
+ * for it, like for any value they cannot convert, and getProperty, which
+ * cannot declare one, throws an IllegalStateException.
+ */
+public final class InterpolatingConfiguration implements TypedConfiguration {
+  
+  /*
+   * The prefixes of placeholders resolved outside the configuration
+   */
+  private static final String ENV = "env.";
+  private static final String SYS = "sys.";
+  
+  /*
+   * The configuration holding the unresolved values
+   */
+  private final TypedConfiguration source;
+  
+  /*
+   * The resolved values read so far
+   */
+  private final ConcurrentMap<String, String> resolved = new ConcurrentHashMap<>();
+
+  /**
+   * Resolve the placeholders of a configuration.
+   * 
+   * @param source the configuration holding the unresolved values
+   */
+  public InterpolatingConfiguration(TypedConfiguration source) {
+    
+    if (source==null) {
+      
+      throw new IllegalArgumentException("source must not be null");
+    }
+    
+    this.source = source;
+  }
+
+  /**
+   * Get the resolved value of a property.
+   * 
+   * @param key the property name
+   * @return the property value with its placeholders resolved, or null if
+   *         the property is not set
+   * @throws IllegalStateException if a placeholder cannot be resolved or the
+   *         references of the property form a cycle, with the
+   *         ConfigurationException reporting it as its cause
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    try {
+      
+      return property(key);
+      
+    } catch (ConfigurationException e) {
+      
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseInt(key, require(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseInt(key, value);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseLong(key, require(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseLong(key, value);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseBoolean(key, require(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue)
+      throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseBoolean(key, value);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String)
+   */
+  @Override
+  public Duration getDuration(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseDuration(key, require(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String, java.time.Duration)
+   */
+  @Override
+  public Duration getDuration(String key, Duration defaultValue)
+      throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseDuration(key, value);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String)
+   */
+  @Override
+  public long getBytes(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseBytes(key, require(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String, long)
+   */
+  @Override
+  public long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseBytes(key, value);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return ConfigurationUtil.parseEnum(key, require(key), enumType);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class, java.lang.Enum)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    String value = property(key);
+    
+    return value==null ? defaultValue : ConfigurationUtil.parseEnum(key, value, enumType);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getList(java.lang.String)
+   */
+  @Override
+  public List<String> getList(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseList(key, property(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#stringPropertyNames()
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    return source.stringPropertyNames();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return getClass().getSimpleName() + "[" + source + "]";
+  }
+  
+  /*
+   * Get the resolved value of a property, or null if it is not set.
+   */
+  private String property(String key) throws ConfigurationException {
+    
+    String value = resolved.get(key);
+    
+    return value!=null ? value : resolve(key, new LinkedHashSet<>());
+  }
+  
+  /*
+   * Get the resolved value of a required property.
+   */
+  private String require(String key) throws ConfigurationException {
+    
+    String value = property(key);
+    
+    if (value==null) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return value;
+  }
+  
+  /*
+   * Resolve a property and memoize it, tracking the properties being
+   * resolved to detect cycles.
+   */
+  private String resolve(String key, Set<String> resolving)
+      throws ConfigurationException {
+    
+    String value = resolved.get(key);
+    
+    if (value!=null) {
+      
+      return value;
+    }
+    
+    String raw = source.getProperty(key);
+    
+    if (raw==null) {
+      
+      return null;
+    }
+    
+    if (raw.indexOf('$')<0) {
+      
+      value = raw;
+      
+    } else {
+      
+      if (!resolving.add(key)) {
+        
+        throw new ConfigurationException("Cyclic placeholder reference: " +
+            String.join(" -> ", resolving) + " -> " + key);
+      }
+      
+      value = interpolate(key, raw, resolving);
+      resolving.remove(key);
+    }
+    
+    String previous = resolved.putIfAbsent(key, value);
+    
+    return previous==null ? value : previous;
+  }
+  
+  /*
+   * Replace the placeholders of a value.
+   */
+  private String interpolate(String key, String raw, Set<String> resolving)
+      throws ConfigurationException {
+    
+    StringBuilder builder = new StringBuilder(raw.length());
+    int position = 0;
+    
+    while (position<raw.length()) {
+      
+      int start = raw.indexOf('$', position);
+      
+      if (start<0 || start==raw.length() - 1) {
+        
+        break;
+      }
+      
+      builder.append(raw, position, start);
+      
+      if (raw.startsWith("$${", start)) {
+        
+        builder.append("${");
+        position = start + 3;
+        continue;
+      }
+      
+      if (raw.charAt(start + 1)!='{') {
+        
+        builder.append('$');
+        position = start + 1;
+        continue;
+      }
+      
+      int end = raw.indexOf('}', start + 2);
+      
+      if (end<0) {
+        
+        throw new ConfigurationException("Unterminated placeholder in property " + key);
+      }
+      
+      String name = raw.substring(start + 2, end);
+      String replacement = lookup(name, resolving);
+      
+      if (replacement==null) {
+        
+        throw new ConfigurationException("Unresolved placeholder ${" + name +
+            "} in property " + key);
+      }
+      
+      builder.append(replacement);
+      position = end + 1;
+    }
+    
+    return builder.append(raw, position, raw.length()).toString();
+  }
+  
+  /*
+   * Get the replacement of a placeholder.
+   */
+  private String lookup(String name, Set<String> resolving)
+      throws ConfigurationException {
+    
+    if (name.startsWith(ENV)) {
+      
+      Map<String, String> environment = System.getenv();
+      
+      return environment.get(name.substring(ENV.length()));
+    }
+    
+    if (name.startsWith(SYS)) {
+      
+      return System.getProperty(name.substring(SYS.length()));
+    }
+    
+    return resolve(name, resolving);
+  }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with log-linear buckets,
+ * in the manner of HdrHistogram.  Latencies below 16 ns have a bucket each;
+ * above that, every power of two is split into 16 buckets, so a percentile
+ * is reported within 1/16 of its true value.  Latencies beyond about 18
+ * minutes are counted in the last bucket.
+ * <p>
+ * Recording a latency increments one bucket and a LongAdder, and allocates
+ * nothing; the number of latencies is summed from the buckets when read.
+ * Reads are not atomic with respect to concurrent recording, so a
+ * percentile read while latencies are being recorded reflects some of them
+ * and not others.
+ */
+public final class LatencyHistogram {
+  
+  /*
+   * The number of bits of a latency kept below its highest set bit
+   */
+  private static final int SUB_BITS = 4;
+  
+  /*
+   * The number of buckets per power of two
+   */
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  
+  /*
+   * The highest power of two with its own buckets; 2^40 ns is about 18
+   * minutes
+   */
+  private static final int MAX_EXPONENT = 40;
+  
+  /*
+   * The number of buckets
+   */
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+  
+  /*
+   * 
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  
+  /*
+   * 
+   */
+  private final LongAdder total = new LongAdder();
+  
+  /*
+   * 
+   */
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+  
+  /**
+   * Record a latency.
+   * 
+   * @param nanos the latency in nanoseconds; negative latencies are
+   *        recorded as zero
+   */
+  public void record(long nanos) {
+    
+    long value = Math.max(nanos, 0L);
+    
+    counts.getAndIncrement(index(value));
+    total.add(value);
+    max.accumulate(value);
+  }
+  
+  /**
+   * Get the number of latencies recorded.
+   * 
+   * @return the number of latencies
+   */
+  public long getCount() {
+    
+    long n = 0;
+    
+    for (int i = 0; i < BUCKETS; i++) {
+      
+      n += counts.get(i);
+    }
+    
+    return n;
+  }
+  
+  /**
+   * Get the sum of the latencies recorded.
+   * 
+   * @return the sum in nanoseconds
+   */
+  public long getTotalNanos() {
+    
+    return total.sum();
+  }
+  
+  /**
+   * Get the highest latency recorded.
+   * 
+   * @return the highest latency in nanoseconds, or 0 if none was recorded
+   */
+  public long getMaxNanos() {
+    
+    return max.get();
+  }
+  
+  /**
+   * Get the mean of the latencies recorded.
+   * 
+   * @return the mean in nanoseconds, or 0 if none was recorded
+   */
+  public double getMeanNanos() {
+    
+    long n = getCount();
+    
+    return n==0 ? 0.0 : (double) total.sum() / n;
+  }
+  
+  /**
+   * Get the median latency.
+   * 
+   * @return the median in nanoseconds
+   */
+  public long getMedianNanos() {
+    
+    return getValueAtPercentile(50.0);
+  }
+  
+  /**
+   * Get the 99th percentile latency.
+   * 
+   * @return the 99th percentile in nanoseconds
+   */
+  public long get99thPercentileNanos() {
+    
+    return getValueAtPercentile(99.0);
+  }
+  
+  /**
+   * Get the latency at or below which the provided percentage of the
+   * latencies fall.  The latency returned is the highest latency of the
+   * bucket holding the percentile, capped at the highest latency recorded.
+   * 
+   * @param percentile the percentile, from 0 to 100
+   * @return the latency in nanoseconds, or 0 if none was recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    
+    if (percentile<0.0 || percentile>100.0) {
+      
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    
+    long[] snapshot = new long[BUCKETS];
+    long n = 0;
+    
+    for (int i = 0; i < BUCKETS; i++) {
+      
+      snapshot[i] = counts.get(i);
+      n += snapshot[i];
+    }
+    
+    if (n==0) {
+      
+      return 0L;
+    }
+    
+    long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * n));
+    long seen = 0;
+    
+    for (int i = 0; i < BUCKETS; i++) {
+      
+      seen += snapshot[i];
+      
+      if (seen>=rank) {
+        
+        return Math.min(highestValue(i), getMaxNanos());
+      }
+    }
+    
+    return getMaxNanos();
+  }
+  
+  /*
+   * Get the bucket of a non-negative latency.
+   */
+  static int index(long value) {
+    
+    if (value<SUB_COUNT) {
+      
+      return (int) value;
+    }
+    
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    
+    if (exponent>MAX_EXPONENT) {
+      
+      return BUCKETS - 1;
+    }
+    
+    int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_COUNT;
+    
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+  
+  /*
+   * Get the highest latency counted in a bucket.
+   */
+  static long highestValue(int index) {
+    
+    int group = index / SUB_COUNT;
+    
+    if (group==0) {
+      
+      return index;
+    }
+    
+    if (index==BUCKETS - 1) {
+      
+      return Long.MAX_VALUE;
+    }
+    
+    long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << (group - 1);
+    
+    return lowest + (1L << (group - 1)) - 1;
+  }
+
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A Configuration composed of an ordered list of layers, such as defaults,
+ * environment, tenant and instance configurations, in which a property set
+ * in a later layer overrides the same property in every earlier layer.
+ * <p>
+ * Each property is resolved to the layer that holds it on first read, and
+ * the resolution is kept in a flattened cache, so that later reads cost one
+ * hash lookup however many layers there are.  Reads go to the holding layer,
+ * which therefore also supplies its own cache of parsed typed values.  Cache
+ * hits take no locks; misses and layer updates are serialized so that a
+ * miss never caches a resolution made against replaced layers.
+ * <p>
+ * Replacing a layer invalidates only the properties set in the old or the
+ * new layer.  A layer that is modified in place, such as a MapConfiguration,
+ * needs no invalidation when it changes the value of a property it already
+ * holds, since the value is read from the layer; adding or removing a
+ * property must be followed by a call to {@link #invalidate(String)}.
+ */
+public final class LayeredConfiguration implements TypedConfiguration {
+  
+  /*
+   * The holder of properties that are set in no layer
+   */
+  private static final TypedConfiguration NONE = ImmutableConfiguration.empty();
+  
+  /*
+   * Serializes cache misses with layer updates
+   */
+  private final Object lock = new Object();
+  
+  /*
+   * The layers, lowest precedence first; replaced, never modified
+   */
+  private volatile TypedConfiguration[] layers;
+  
+  /*
+   * The layer holding each property resolved so far, or NONE
+   */
+  private final ConcurrentMap<String, TypedConfiguration> holders = new ConcurrentHashMap<>();
+
+  /**
+   * Create a layered configuration.
+   * 
+   * @param layers the layers, lowest precedence first
+   */
+  public LayeredConfiguration(TypedConfiguration... layers) {
+    
+    for (TypedConfiguration layer : layers) {
+      
+      if (layer==null) {
+        
+        throw new IllegalArgumentException("layers must not contain null");
+      }
+    }
+    
+    this.layers = layers.clone();
+  }
+  
+  /**
+   * Get the number of layers.
+   * 
+   * @return the number of layers
+   */
+  public int getLayerCount() {
+    
+    return layers.length;
+  }
+  
+  /**
+   * Get a layer.
+   * 
+   * @param index the index of the layer, 0 being the lowest precedence
+   * @return the layer
+   */
+  public TypedConfiguration getLayer(int index) {
+    
+    return layers[index];
+  }
+  
+  /**
+   * Replace a layer, invalidating the cached resolution of every property
+   * set in the replaced or the replacing layer.
+   * 
+   * @param index the index of the layer, 0 being the lowest precedence
+   * @param layer the new layer
+   */
+  public void replaceLayer(int index, TypedConfiguration layer) {
+    
+    if (layer==null) {
+      
+      throw new IllegalArgumentException("layer must not be null");
+    }
+    
+    synchronized (lock) {
+      
+      TypedConfiguration[] replaced = layers.clone();
+      TypedConfiguration old = replaced[index];
+      
+      replaced[index] = layer;
+      layers = replaced;
+      
+      for (String key : old.stringPropertyNames()) {
+        
+        holders.remove(key);
+      }
+      
+      for (String key : layer.stringPropertyNames()) {
+        
+        holders.remove(key);
+      }
+    }
+  }
+  
+  /**
+   * Invalidate the cached resolution of a property, after it has been added
+   * to or removed from a layer in place.
+   * 
+   * @param key the property name
+   */
+  public void invalidate(String key) {
+    
+    synchronized (lock) {
+      
+      holders.remove(key);
+    }
+  }
+  
+  /**
+   * Invalidate the cached resolution of every property.
+   */
+  public void invalidateAll() {
+    
+    synchronized (lock) {
+      
+      holders.clear();
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String)
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    return holder(key).getProperty(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String, java.lang.String)
+   */
+  @Override
+  public String getProperty(String key, String defaultValue) {
+    
+    return holder(key).getProperty(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return holder(key).getInt(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    return holder(key).getInt(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    return holder(key).getLong(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    return holder(key).getLong(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    return holder(key).getBoolean(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue) throws ConfigurationException {
+    
+    return holder(key).getBoolean(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String)
+   */
+  @Override
+  public Duration getDuration(String key) throws ConfigurationException {
+    
+    return holder(key).getDuration(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String, java.time.Duration)
+   */
+  @Override
+  public Duration getDuration(String key, Duration defaultValue) throws ConfigurationException {
+    
+    return holder(key).getDuration(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String)
+   */
+  @Override
+  public long getBytes(String key) throws ConfigurationException {
+    
+    return holder(key).getBytes(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String, long)
+   */
+  @Override
+  public long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    return holder(key).getBytes(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return holder(key).getEnum(key, enumType);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class, java.lang.Enum)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    return holder(key).getEnum(key, enumType, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getList(java.lang.String)
+   */
+  @Override
+  public List<String> getList(String key) throws ConfigurationException {
+    
+    return holder(key).getList(key);
+  }
+
+  /**
+   * Get the names of the properties set in any layer.
+   * 
+   * @return a new Set of the property names
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    Set<String> names = new LinkedHashSet<>();
+    
+    for (TypedConfiguration layer : layers) {
+      
+      names.addAll(layer.stringPropertyNames());
+    }
+    
+    return names;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return getClass().getSimpleName() + Arrays.toString(layers);
+  }
+  
+  /*
+   * Get the layer holding a property, resolving and caching it on a miss.
+   */
+  private TypedConfiguration holder(String key) {
+    
+    TypedConfiguration holder = holders.get(key);
+    
+    if (holder!=null) {
+      
+      return holder;
+    }
+    
+    synchronized (lock) {
+      
+      holder = holders.get(key);
+      
+      if (holder==null) {
+        
+        holder = NONE;
+        TypedConfiguration[] current = layers;
+        
+        for (int i = current.length - 1; i>=0; i--) {
+          
+          if (current[i].getProperty(key)!=null) {
+            
+            holder = current[i];
+            break;
+          }
+        }
+        
+        holders.put(key, holder);
+      }
+      
+      return holder;
+    }
+  }
+
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+/**
+ * Generates and caches the proxy classes returned by the createLazy methods of
+ * the base factories.
+ * <p>
+ * One proxy class is generated per base type, in the package of the base
+ * type.  The proxy implements or extends the base type and holds a
+ * {@link net.yannaccone.pattern.factory.LazyReference LazyReference}; every
+ * overridable public and protected method forwards to the instance held by
+ * that reference.  The forwarding methods are ordinary bytecode rather than
+ * {@link java.lang.reflect.Proxy java.lang.reflect.Proxy} dispatch, so once
+ * the reference is initialized a call through the proxy costs a field load, a
+ * volatile read and the delegated call, all of which the JIT can inline.
+ */
+final class LazyProxies {
+  
+  /*
+   * The suffix appended to the name of the base type to name its proxy class
+   */
+  private static final String PROXY_SUFFIX = "$$LazyProxy";
+  
+  /*
+   * The proxy constructor for each base type, or the FactoryException that
+   * prevented its generation
+   */
+  private static final ClassValue<Object> CONSTRUCTORS = new ClassValue<Object>() {
+    
+    @Override
+    protected Object computeValue(Class<?> baseClass) {
+      
+      try {
+        
+        return generate(baseClass);
+        
+      } catch (FactoryException e) {
+        
+        return e;
+      }
+    }
+  };
+
+  /*
+   * 
+   */
+  private LazyProxies() {
+  }
+  
+  /**
+   * Create a new proxy of the base type that forwards to the instance held by
+   * the provided reference.
+   * 
+   * @param baseClass the base type to proxy
+   * @param reference the reference that creates the proxied instance on
+   *        first use
+   * @return a new proxy instance
+   * @throws FactoryException if a proxy class cannot be generated for the
+   *         base type
+   */
+  static <T> T newProxy(Class<T> baseClass, LazyReference<? extends T> reference)
+      throws FactoryException {
+    
+    Object constructor = CONSTRUCTORS.get(baseClass);
+    
+    if (constructor instanceof FactoryException) {
+      
+      FactoryException e = (FactoryException) constructor;
+      throw new FactoryException(e.getMessage(), e.getCause());
+    }
+    
+    try {
+      
+      return baseClass.cast(((MethodHandle) constructor).invokeExact(reference));
+      
+    } catch (Throwable e) {
+      
+      throw new FactoryException("Failed to instantiate lazy proxy of " +
+          baseClass.getName(), e);
+    }
+  }
+  
+  /*
+   * Generate the proxy class for the base type and return a constructor
+   * handle of type (LazyReference)Object.  Generation is serialized so that
+   * racing computations of the ClassValue never define the same class twice.
+   */
+  private static synchronized MethodHandle generate(Class<?> baseClass)
+      throws FactoryException {
+    
+    if (Modifier.isFinal(baseClass.getModifiers()) || baseClass.isPrimitive() ||
+        baseClass.isArray()) {
+      
+      throw new FactoryException("Cannot generate a lazy proxy of " +
+          baseClass.getName() + "; it must be an interface or a non-final class");
+    }
+    
+    String proxyName = baseClass.getName() + PROXY_SUFFIX;
+    
+    try {
+      
+      MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(baseClass,
+          MethodHandles.lookup());
+      
+      Class<?> proxyClass;
+      
+      try {
+        
+        proxyClass = lookup.findClass(proxyName);
+        
+      } catch (ClassNotFoundException e) {
+        
+        proxyClass = lookup.defineClass(toBytecode(baseClass, proxyName));
+      }
+      
+      return lookup.findConstructor(proxyClass,
+          MethodType.methodType(void.class, LazyReference.class))
+          .asType(MethodType.methodType(Object.class, LazyReference.class));
+      
+    } catch (FactoryException e) {
+      
+      throw e;
+      
+    } catch (Exception | LinkageError e) {
+      
+      throw new FactoryException("Failed to generate lazy proxy of " +
+          baseClass.getName(), e);
+    }
+  }
+  
+  /*
+   * Build the class file of the proxy.
+   */
+  private static byte[] toBytecode(Class<?> baseClass, String proxyName) throws Exception {
+    
+    ClassPool pool = new ClassPool(true);
+    pool.appendClassPath(new ClassClassPath(LazyReference.class));
+    
+    if (baseClass.getClassLoader()!=null) {
+      
+      pool.appendClassPath(new LoaderClassPath(baseClass.getClassLoader()));
+    }
+    
+    CtClass base = pool.get(baseClass.getName());
+    CtClass proxy = pool.makeClass(proxyName);
+    proxy.setModifiers(javassist.Modifier.PUBLIC | javassist.Modifier.FINAL);
+    
+    if (baseClass.isInterface()) {
+      
+      proxy.addInterface(base);
+      
+    } else {
+      
+      proxy.setSuperclass(base);
+    }
+    
+    proxy.addField(CtField.make("private final " + LazyReference.class.getName() +
+        " reference;", proxy));
+    proxy.addConstructor(CtNewConstructor.make(
+        new CtClass[] { pool.get(LazyReference.class.getName()) }, new CtClass[0],
+        "{ super(); this.reference = $1; }", proxy));
+    
+    String target = "((" + baseClass.getName() + ") this.reference.get())";
+    
+    for (Method method : forwardedMethods(baseClass)) {
+      
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      CtClass[] parameters = new CtClass[parameterTypes.length];
+      
+      for (int i=0; i<parameterTypes.length; i++) {
+        
+        parameters[i] = pool.get(ctName(parameterTypes[i]));
+      }
+      
+      Class<?>[] exceptionTypes = method.getExceptionTypes();
+      CtClass[] exceptions = new CtClass[exceptionTypes.length];
+      
+      for (int i=0; i<exceptionTypes.length; i++) {
+        
+        exceptions[i] = pool.get(ctName(exceptionTypes[i]));
+      }
+      
+      String call = target + "." + method.getName() + "($$);";
+      String body = method.getReturnType()==void.class ? "{ " + call + " }" :
+          "{ return " + call + " }";
+      
+      proxy.addMethod(CtNewMethod.make(Modifier.isProtected(method.getModifiers()) ?
+          javassist.Modifier.PROTECTED : javassist.Modifier.PUBLIC,
+          pool.get(ctName(method.getReturnType())), method.getName(), parameters,
+          exceptions, body, proxy));
+    }
+    
+    byte[] bytecode = proxy.toBytecode();
+    proxy.detach();
+    
+    return bytecode;
+  }
+  
+  /*
+   * Collect the public and protected instance methods of the base type that
+   * a subclass can override, keyed by name and descriptor so that methods
+   * inherited along several paths are forwarded once.
+   */
+  private static Iterable<Method> forwardedMethods(Class<?> baseClass)
+      throws NoSuchMethodException {
+    
+    Map<String, Method> methods = new LinkedHashMap<>();
+    
+    for (Method method : baseClass.getMethods()) {
+      
+      addForwarded(methods, method);
+    }
+    
+    // Protected methods can only be invoked on the delegate when they are
+    // declared in the package of the proxy
+    for (Class<?> type=baseClass; type!=null && type!=Object.class;
+        type=type.getSuperclass()) {
+      
+      if (type.getPackage()!=baseClass.getPackage() ||
+          type.getClassLoader()!=baseClass.getClassLoader()) {
+        
+        continue;
+      }
+      
+      for (Method method : type.getDeclaredMethods()) {
+        
+        if (Modifier.isProtected(method.getModifiers())) {
+          
+          addForwarded(methods, method);
+        }
+      }
+    }
+    
+    if (baseClass.isInterface()) {
+      
+      // Interfaces do not report the public methods of Object
+      addForwarded(methods, Object.class.getMethod("equals", Object.class));
+      addForwarded(methods, Object.class.getMethod("hashCode"));
+      addForwarded(methods, Object.class.getMethod("toString"));
+    }
+    
+    return methods.values();
+  }
+  
+  /*
+   * Add a method to the forwarded methods unless it cannot be overridden or
+   * an override has already been added.
+   */
+  private static void addForwarded(Map<String, Method> methods, Method method) {
+    
+    int modifiers = method.getModifiers();
+    
+    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) ||
+        method.isSynthetic() || method.isBridge()) {
+      
+      return;
+    }
+    
+    StringBuilder key = new StringBuilder(method.getName()).append('(');
+    
+    for (Class<?> parameterType : method.getParameterTypes()) {
+      
+      key.append(parameterType.getName()).append(';');
+    }
+    
+    key.append(')').append(method.getReturnType().getName());
+    
+    if (!methods.containsKey(key.toString())) {
+      
+      methods.put(key.toString(), method);
+    }
+  }
+  
+  /*
+   * The name javassist uses for a Class; array types are written in source
+   * form.
+   */
+  private static String ctName(Class<?> type) {
+    
+    return type.isArray() ? ctName(type.getComponentType()) + "[]" : type.getName();
+  }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free, lazily initialized reference used by the proxies returned from
+ * the createLazy methods of the base factories.  The first call to get()
+ * invokes the initializer and publishes its result; every later call returns
+ * the published instance with a single volatile read.
+ * <p>
+ * Initialization is lock-free rather than exclusive: threads that race on the
+ * first call may each invoke the initializer, but only one result is
+ * published and returned to every caller.  A failed initialization is not
+ * published, so a later call will retry it.
+ */
+public final class LazyReference<T1> {
+  
+  /*
+   * Updater used to publish the initialized value exactly once
+   */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<LazyReference, Object> VALUE =
+      AtomicReferenceFieldUpdater.newUpdater(LazyReference.class, Object.class, "value");
+  
+  /*
+   * The initialized value; null until published
+   */
+  private volatile Object value;
+  
+  /*
+   * The initializer; cleared once the value is published
+   */
+  private volatile Callable<? extends T1> initializer;
+
+  /**
+   * Create a new LazyReference that will obtain its value from the provided
+   * initializer.
+   * 
+   * @param initializer the Callable that creates the value on first access
+   */
+  public LazyReference(Callable<? extends T1> initializer) {
+    
+    if (initializer==null) {
+      
+      throw new IllegalArgumentException("Parameter initializer cannot be null");
+    }
+    
+    this.initializer = initializer;
+  }
+
+  /**
+   * Get the value, initializing it if this is the first access.
+   * 
+   * @return the initialized value
+   * @throws IllegalStateException if the initializer fails with a checked
+   *         exception, such as a ConfigurationException thrown while
+   *         configuring a lazily created instance
+   */
+  @SuppressWarnings("unchecked")
+  public T1 get() {
+    
+    Object current = value;
+    
+    if (current!=null) {
+      
+      return (T1) current;
+    }
+    
+    return initialize();
+  }
+  
+  /**
+   * Check whether the value has been initialized.
+   * 
+   * @return true if get() has published a value
+   */
+  public boolean isInitialized() {
+    
+    return value!=null;
+  }
+  
+  /*
+   * The slow path of get(); kept separate so that get() stays small enough to
+   * be inlined at every proxied call site.
+   */
+  @SuppressWarnings("unchecked")
+  private T1 initialize() {
+    
+    Callable<? extends T1> current = initializer;
+    
+    if (current==null) {
+      
+      // The initializer is only cleared after the value has been published
+      return (T1) value;
+    }
+    
+    T1 created;
+    
+    try {
+      
+      created = current.call();
+      
+    } catch (RuntimeException e) {
+      
+      throw e;
+      
+    } catch (Exception e) {
+      
+      throw new IllegalStateException("Failed to initialize lazy instance", e);
+    }
+    
+    if (created==null) {
+      
+      throw new IllegalStateException("Lazy initializer returned null");
+    }
+    
+    if (VALUE.compareAndSet(this, null, created)) {
+      
+      initializer = null;
+      return created;
+    }
+    
+    // Another thread won the race; discard our instance in favor of theirs
+    return (T1) value;
+  }
+
+}
@@ -18,23 +18,61 @@
  */
 package net.yannaccone.pattern.factory;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.yannaccone.pattern.factory.Configuration;
 
 /**
  * A Configuration implementation that stores configuration parameters as a
  * key-value Map of Object(s).
+ * <p>
+ * The typed accessors accept values that are already of the requested type,
+ * and otherwise parse the String form of the value.  Parsed values are cached
+ * until the property is replaced through add, so each value is parsed once;
+ * primitive values are cached without boxing.
+ * <p>
+ * For hot paths that read a fixed set of properties, SlotMapConfiguration
+ * resolves each property to an array slot once and stores numbers unboxed.
  */
-public class MapConfiguration implements Configuration {
+public class MapConfiguration implements TypedConfiguration {
+  
+  /*
+   * Kinds of values cached in typedValues
+   */
+  private static final int LONG = 0;
+  private static final int BOOLEAN = 1;
+  private static final int BYTES = 2;
+  private static final int DURATION = 3;
+  private static final int ENUM = 4;
+  private static final int LIST = 5;
   
   /*
    * 
    */
   private final Map<Object,Object> configurationMap;
+  
+  /*
+   * Unmodifiable views of the keys and entries of configurationMap, created
+   * once rather than on every call
+   */
+  private final Set<Object> keySet;
+  
+  private final Set<Map.Entry<Object,Object>> entrySet;
+  
+  /*
+   * The parsed values of the typed accessors, by key
+   */
+  private final ConcurrentMap<Object, TypedValue> typedValues = new ConcurrentHashMap<>();
 
   /**
    * 
@@ -42,6 +80,8 @@ public class MapConfiguration implements Configuration {
   public MapConfiguration() {
     
     this.configurationMap = new HashMap<>();
+    this.keySet = Collections.unmodifiableSet(configurationMap.keySet());
+    this.entrySet = Collections.unmodifiableSet(configurationMap.entrySet());
   }
   
   /**
@@ -53,8 +93,178 @@ public class MapConfiguration implements Configuration {
   public void add(Object key, Object value) {
     
     configurationMap.put(key, value);
+    
+    // The cache holds no null key, which the configurationMap accepts
+    if (key!=null) {
+      
+      typedValues.remove(key);
+    }
+  }
+  
+  /**
+   * Get the String form of a configuration property.
+   * 
+   * @param key the property name
+   * @return the String form of the property value, or null if the property
+   *         is not set
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    Object value = configurationMap.get(key);
+    
+    return value==null ? null : value.toString();
   }
 
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.toInt(key, primitive(key, LONG));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    return ConfigurationUtil.toInt(key, primitive(key, LONG, defaultValue));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    return primitive(key, LONG);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    return primitive(key, LONG, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    return primitive(key, BOOLEAN)!=0;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue)
+      throws ConfigurationException {
+    
+    return primitive(key, BOOLEAN, defaultValue ? 1 : 0)!=0;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String)
+   */
+  @Override
+  public long getBytes(String key) throws ConfigurationException {
+    
+    return primitive(key, BYTES);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String, long)
+   */
+  @Override
+  public long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    return primitive(key, BYTES, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String)
+   */
+  @Override
+  public Duration getDuration(String key) throws ConfigurationException {
+    
+    return (Duration) object(key, DURATION, null);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String, java.time.Duration)
+   */
+  @Override
+  public Duration getDuration(String key, Duration defaultValue)
+      throws ConfigurationException {
+    
+    return (Duration) object(key, DURATION, null, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return enumType.cast(object(key, ENUM, enumType));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class, java.lang.Enum)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    return enumType.cast(object(key, ENUM, enumType, defaultValue));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getList(java.lang.String)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<String> getList(String key) throws ConfigurationException {
+    
+    if (!configurationMap.containsKey(key)) {
+      
+      return Collections.emptyList();
+    }
+    
+    return (List<String>) object(key, LIST, null);
+  }
+
+  /**
+   * Get the String keys from the configurationMap.  Keys of other types are
+   * not included.
+   * 
+   * @return a new Set of the String keys
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    Set<String> names = new LinkedHashSet<>();
+    
+    for (Object key : configurationMap.keySet()) {
+      
+      if (key instanceof String) {
+        
+        names.add((String) key);
+      }
+    }
+    
+    return names;
+  }
+  
   /**
    * Get the keys from the configurationMap
    * 
@@ -62,7 +272,7 @@ public class MapConfiguration implements Configuration {
    */
   public Set<Object> keySet() {
     
-    return Collections.unmodifiableSet(configurationMap.keySet());
+    return keySet;
   }
   
   /**
@@ -72,7 +282,209 @@ public class MapConfiguration implements Configuration {
    */
   public Set<Map.Entry<Object,Object>> entrySet() {
     
-    return Collections.unmodifiableSet(configurationMap.entrySet());
+    return entrySet;
   }
   
+  /*
+   * Get the primitive of the provided kind for a property, converting and
+   * caching it on first use.
+   */
+  private long primitive(String key, int kind) throws ConfigurationException {
+    
+    TypedValue cached = key==null ? null : typedValues.get(key);
+    
+    if (cached!=null && cached.kind==kind) {
+      
+      return cached.primitive;
+    }
+    
+    return toPrimitive(key, kind, require(key));
+  }
+  
+  /*
+   * Get the primitive of the provided kind for a property, or defaultValue if
+   * the property is not set.  A cached value answers with a single lookup,
+   * since add discards the cached value of a replaced property.
+   */
+  private long primitive(String key, int kind, long defaultValue)
+      throws ConfigurationException {
+    
+    TypedValue cached = key==null ? null : typedValues.get(key);
+    
+    if (cached!=null && cached.kind==kind) {
+      
+      return cached.primitive;
+    }
+    
+    Object value = configurationMap.get(key);
+    
+    return value==null ? defaultValue : toPrimitive(key, kind, value);
+  }
+  
+  /*
+   * Convert the value of a property to the primitive of the provided kind and
+   * cache it.
+   */
+  private long toPrimitive(String key, int kind, Object value)
+      throws ConfigurationException {
+    
+    long converted;
+    
+    if (kind==BOOLEAN) {
+      
+      converted = (value instanceof Boolean ? (Boolean) value :
+          ConfigurationUtil.parseBoolean(key, value.toString())) ? 1 : 0;
+      
+    } else if (value instanceof Long || value instanceof Integer ||
+        value instanceof Short || value instanceof Byte) {
+      
+      converted = ((Number) value).longValue();
+      
+    } else if (kind==LONG) {
+      
+      converted = ConfigurationUtil.parseLong(key, value.toString());
+      
+    } else {
+      
+      converted = ConfigurationUtil.parseBytes(key, value.toString());
+    }
+    
+    if (key!=null) {
+      
+      typedValues.putIfAbsent(key, new TypedValue(kind, converted, null));
+    }
+    
+    return converted;
+  }
+  
+  /*
+   * Get the object of the provided kind for a property, converting and
+   * caching it on first use.
+   */
+  @SuppressWarnings("rawtypes")
+  private Object object(String key, int kind, Class<? extends Enum> enumType)
+      throws ConfigurationException {
+    
+    Object cached = cached(key, kind, enumType);
+    
+    return cached!=null ? cached : toObject(key, kind, enumType, require(key));
+  }
+  
+  /*
+   * Get the object of the provided kind for a property, or defaultValue if
+   * the property is not set.
+   */
+  @SuppressWarnings("rawtypes")
+  private Object object(String key, int kind, Class<? extends Enum> enumType,
+      Object defaultValue) throws ConfigurationException {
+    
+    Object cached = cached(key, kind, enumType);
+    
+    if (cached!=null) {
+      
+      return cached;
+    }
+    
+    Object value = configurationMap.get(key);
+    
+    return value==null ? defaultValue : toObject(key, kind, enumType, value);
+  }
+  
+  /*
+   * Get the cached object of the provided kind for a property, or null if
+   * none is cached.
+   */
+  @SuppressWarnings("rawtypes")
+  private Object cached(String key, int kind, Class<? extends Enum> enumType) {
+    
+    TypedValue cached = key==null ? null : typedValues.get(key);
+    
+    if (cached!=null && cached.kind==kind &&
+        (enumType==null || enumType.isInstance(cached.object))) {
+      
+      return cached.object;
+    }
+    
+    return null;
+  }
+  
+  /*
+   * Convert the value of a property to the object of the provided kind and
+   * cache it.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Object toObject(String key, int kind, Class<? extends Enum> enumType,
+      Object value) throws ConfigurationException {
+    
+    Object converted;
+    
+    if (kind==DURATION) {
+      
+      converted = value instanceof Duration ? value :
+          ConfigurationUtil.parseDuration(key, value.toString());
+      
+    } else if (kind==ENUM) {
+      
+      converted = enumType.isInstance(value) ? value :
+          ConfigurationUtil.parseEnum(key, value.toString(), enumType);
+      
+    } else if (value instanceof Collection) {
+      
+      List<String> elements = new ArrayList<>();
+      
+      for (Object element : (Collection<?>) value) {
+        
+        elements.add(String.valueOf(element));
+      }
+      
+      converted = Collections.unmodifiableList(elements);
+      
+    } else {
+      
+      converted = ConfigurationUtil.parseList(key, value.toString());
+    }
+    
+    if (key!=null) {
+      
+      typedValues.putIfAbsent(key, new TypedValue(kind, 0, converted));
+    }
+    
+    return converted;
+  }
+  
+  /*
+   * Get the value of a required property.
+   */
+  private Object require(String key) throws ConfigurationException {
+    
+    Object value = configurationMap.get(key);
+    
+    if (value==null) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return value;
+  }
+  
+  /*
+   * A converted property value.  A property caches a single kind; a property
+   * read as more than one kind is converted on every read of the other kinds.
+   */
+  private static final class TypedValue {
+    
+    private final int kind;
+    
+    private final long primitive;
+    
+    private final Object object;
+    
+    TypedValue(int kind, long primitive, Object object) {
+      
+      this.kind = kind;
+      this.primitive = primitive;
+      this.object = object;
+    }
+  }
+
 }
@@ -0,0 +1,567 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A read-only Configuration backed by a memory-mapped properties file.
+ * <p>
+ * The file is parsed in place, in the format read by
+ * {@link java.util.Properties#load(java.io.InputStream) Properties.load}:
+ * ISO-8859-1 text with escapes, comments and continuation lines.  Loading only
+ * indexes the file; it creates a String for each retained key, but none for
+ * the keys rejected by the prefix filter and none for any value.  A value is
+ * decoded from the mapped file the first time it is read and then kept, so a
+ * large file costs heap only for the properties that are actually used.
+ * <p>
+ * The properties can be copied into a PropertiesConfiguration or a
+ * MapConfiguration with copyTo.  The mapping is released when the
+ * MappedConfiguration is garbage collected; the file must not be modified
+ * while it is mapped.
+ */
+public final class MappedConfiguration implements TypedConfiguration {
+  
+  /*
+   * The mapped file
+   */
+  private final ByteBuffer buffer;
+  
+  /*
+   * The slot of each retained key, in file order
+   */
+  private final Map<String, Integer> index;
+  
+  /*
+   * The position in buffer at which the value of each slot starts, or -1 if
+   * the value is empty
+   */
+  private final int[] offsets;
+  
+  /*
+   * The decoded value of each slot, or null until first read.  Slots are
+   * filled racily; a race only decodes a value twice, and Strings are safe to
+   * publish without synchronization.
+   */
+  private final String[] values;
+
+  /*
+   * 
+   */
+  private MappedConfiguration(ByteBuffer buffer, Map<String, Integer> index, int[] offsets) {
+    
+    this.buffer = buffer;
+    this.index = index;
+    this.offsets = offsets;
+    this.values = new String[offsets.length];
+  }
+  
+  /**
+   * Map and index a properties file.
+   * 
+   * @param file the properties file
+   * @return the MappedConfiguration
+   * @throws IOException if the file cannot be read or is larger than 2GB
+   */
+  public static MappedConfiguration map(Path file) throws IOException {
+    
+    return map(file, "");
+  }
+  
+  /**
+   * Map and index the properties of a file whose keys start with a prefix.
+   * Keys are compared with the prefix as they are decoded, so rejected keys
+   * are never copied out of the file.
+   * 
+   * @param file the properties file
+   * @param prefix the prefix of the keys to retain
+   * @return the MappedConfiguration
+   * @throws IOException if the file cannot be read or is larger than 2GB
+   */
+  public static MappedConfiguration map(Path file, String prefix) throws IOException {
+    
+    if (prefix==null) {
+      
+      throw new IllegalArgumentException("prefix must not be null");
+    }
+    
+    ByteBuffer buffer;
+    
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      
+      if (channel.size()>Integer.MAX_VALUE) {
+        
+        throw new IOException("File " + file + " is too large to map");
+      }
+      
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    
+    Map<String, Integer> index = new LinkedHashMap<>();
+    int[] offsets = new int[16];
+    Cursor cursor = new Cursor(buffer);
+    StringBuilder key = new StringBuilder();
+    
+    while (cursor.startLine()) {
+      
+      key.setLength(0);
+      
+      if (!cursor.readKey(key, prefix)) {
+        
+        cursor.skipLine();
+        continue;
+      }
+      
+      String name = key.toString();
+      Integer slot = index.get(name);
+      
+      if (slot==null) {
+        
+        slot = index.size();
+        index.put(name, slot);
+        
+        if (slot==offsets.length) {
+          
+          offsets = Arrays.copyOf(offsets, slot * 2);
+        }
+      }
+      
+      // a key at the end of its line has an empty value
+      offsets[slot] = cursor.ended() ? -1 : cursor.position();
+      cursor.skipLine();
+    }
+    
+    return new MappedConfiguration(buffer, Collections.unmodifiableMap(index),
+        Arrays.copyOf(offsets, index.size()));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String)
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    Integer slot = index.get(key);
+    
+    return slot==null ? null : value(slot);
+  }
+  
+  /**
+   * Whether a property is set.
+   * 
+   * @param key the property name
+   * @return true if the property is set
+   */
+  public boolean containsKey(String key) {
+    
+    return index.containsKey(key);
+  }
+  
+  /**
+   * Get the number of properties.
+   * 
+   * @return the number of properties
+   */
+  public int size() {
+    
+    return index.size();
+  }
+  
+  /**
+   * Get the property names, in the order they first appear in the file.
+   * 
+   * @return an unmodifiable Set of the property names
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    return index.keySet();
+  }
+  
+  /**
+   * Copy every property into a Properties object, such as a
+   * PropertiesConfiguration.
+   * 
+   * @param target the Properties to copy into
+   */
+  public void copyTo(Properties target) {
+    
+    for (Map.Entry<String, Integer> entry : index.entrySet()) {
+      
+      target.setProperty(entry.getKey(), value(entry.getValue()));
+    }
+  }
+  
+  /**
+   * Copy every property into a MapConfiguration.
+   * 
+   * @param target the MapConfiguration to copy into
+   */
+  public void copyTo(MapConfiguration target) {
+    
+    for (Map.Entry<String, Integer> entry : index.entrySet()) {
+      
+      target.add(entry.getKey(), value(entry.getValue()));
+    }
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return getClass().getSimpleName() + "[" + index.size() + " properties]";
+  }
+  
+  /*
+   * Get the value of a slot, decoding it on first use.
+   */
+  private String value(int slot) {
+    
+    String value = values[slot];
+    
+    if (value==null && offsets[slot]<0) {
+      
+      value = "";
+      
+    } else if (value==null) {
+      
+      Cursor cursor = new Cursor(buffer);
+      StringBuilder builder = new StringBuilder();
+      
+      cursor.seek(offsets[slot]);
+      
+      for (int c = cursor.next(); c>=0; c = cursor.next()) {
+        
+        builder.append((char) c);
+      }
+      
+      value = builder.toString();
+      values[slot] = value;
+    }
+    
+    return value;
+  }
+  
+  /*
+   * Decodes the logical lines of a properties file from a buffer, using
+   * absolute reads so that any number of cursors can share the buffer.
+   */
+  private static final class Cursor {
+    
+    private final ByteBuffer buffer;
+    
+    private final int limit;
+    
+    private int position;
+    
+    /*
+     * Whether the last character returned by next was escaped
+     */
+    private boolean escaped;
+    
+    /*
+     * Whether next has reached the end of the logical line
+     */
+    private boolean ended;
+    
+    Cursor(ByteBuffer buffer) {
+      
+      this.buffer = buffer;
+      this.limit = buffer.limit();
+    }
+    
+    int position() {
+      
+      return position;
+    }
+    
+    void seek(int position) {
+      
+      this.position = position;
+      this.ended = false;
+    }
+    
+    boolean ended() {
+      
+      return ended;
+    }
+    
+    /*
+     * Skip blank and comment lines and leading whitespace, and return whether
+     * a logical line starts at the new position.
+     */
+    boolean startLine() {
+      
+      ended = false;
+      
+      while (position<limit) {
+        
+        int b = byteAt(position);
+        
+        if (b==' ' || b=='\t' || b=='\f' || b=='\r' || b=='\n') {
+          
+          position++;
+          
+        } else if (b=='#' || b=='!') {
+          
+          skipComment();
+          
+        } else {
+          
+          return true;
+        }
+      }
+      
+      return false;
+    }
+    
+    /*
+     * Read the key of the logical line into key, comparing it with the prefix
+     * as it is decoded, and leave the cursor at the start of the value.
+     * Return false, with the cursor inside the line, as soon as the key does
+     * not match the prefix.
+     */
+    boolean readKey(StringBuilder key, String prefix) {
+      
+      int c;
+      boolean first = true;
+      
+      while (true) {
+        
+        c = next();
+        
+        if (first && !escaped && (c=='#' || c=='!')) {
+          
+          // the line began with a continuation, and what follows is a comment
+          skipComment();
+          ended = true;
+          return false;
+        }
+        
+        first = false;
+        
+        if (c<0) {
+          
+          // a line holding only a continuation is blank
+          return key.length()>0 && key.length()>=prefix.length();
+        }
+        
+        if (!escaped && (c=='=' || c==':')) {
+          
+          break;
+        }
+        
+        if (!escaped && (c==' ' || c=='\t' || c=='\f')) {
+          
+          // a single '=' or ':' may follow the whitespace that ends the key
+          skipWhitespace();
+          int start = position;
+          c = next();
+          
+          if (c<0 || escaped || (c!='=' && c!=':')) {
+            
+            seek(start);
+          }
+          
+          break;
+        }
+        
+        int length = key.length();
+        
+        if (length<prefix.length() && prefix.charAt(length)!=c) {
+          
+          return false;
+        }
+        
+        key.append((char) c);
+      }
+      
+      if (key.length()<prefix.length()) {
+        
+        return false;
+      }
+      
+      skipWhitespace();
+      
+      return true;
+    }
+    
+    /*
+     * Skip to the start of the next logical line.
+     */
+    void skipLine() {
+      
+      while (!ended) {
+        
+        next();
+      }
+    }
+    
+    /*
+     * Skip to the end of the physical line; comments have no continuation
+     * lines.
+     */
+    private void skipComment() {
+      
+      while (position<limit && byteAt(position)!='\r' && byteAt(position)!='\n') {
+        
+        position++;
+      }
+    }
+    
+    /*
+     * Skip unescaped whitespace within the logical line.
+     */
+    private void skipWhitespace() {
+      
+      while (true) {
+        
+        int start = position;
+        int c = next();
+        
+        if (c<0 || escaped || (c!=' ' && c!='\t' && c!='\f')) {
+          
+          seek(start);
+          return;
+        }
+      }
+    }
+    
+    /*
+     * Decode the next character of the logical line, joining continuation
+     * lines and resolving escapes, or return -1 and move past the line
+     * terminator at the end of the logical line.
+     */
+    int next() {
+      
+      escaped = false;
+      
+      while (position<limit) {
+        
+        int b = byteAt(position++);
+        
+        if (b=='\r' || b=='\n') {
+          
+          if (b=='\r' && position<limit && byteAt(position)=='\n') {
+            
+            position++;
+          }
+          
+          ended = true;
+          return -1;
+        }
+        
+        if (b!='\\') {
+          
+          return b;
+        }
+        
+        if (position==limit) {
+          
+          ended = true;
+          return -1;
+        }
+        
+        b = byteAt(position++);
+        
+        if (b=='\r' || b=='\n') {
+          
+          // a continuation line; drop the terminator and leading whitespace
+          if (b=='\r' && position<limit && byteAt(position)=='\n') {
+            
+            position++;
+          }
+          
+          while (position<limit && (byteAt(position)==' ' || byteAt(position)=='\t' ||
+              byteAt(position)=='\f')) {
+            
+            position++;
+          }
+          
+          continue;
+        }
+        
+        escaped = true;
+        
+        switch (b) {
+          
+          case 't':
+            return '\t';
+          case 'n':
+            return '\n';
+          case 'r':
+            return '\r';
+          case 'f':
+            return '\f';
+          case 'u':
+            return unicode();
+          default:
+            return b;
+        }
+      }
+      
+      ended = true;
+      return -1;
+    }
+    
+    /*
+     * Decode the four hex digits of a \\uXXXX escape.
+     */
+    private int unicode() {
+      
+      int value = 0;
+      
+      for (int i = 0; i<4; i++) {
+        
+        int digit = position<limit ? Character.digit(byteAt(position++), 16) : -1;
+        
+        if (digit<0) {
+          
+          throw new IllegalArgumentException("Malformed \\uxxxx encoding at position " +
+              position);
+        }
+        
+        value = (value << 4) | digit;
+      }
+      
+      return value;
+    }
+    
+    /*
+     * Read an ISO-8859-1 character.
+     */
+    private int byteAt(int index) {
+      
+      return buffer.get(index) & 0xff;
+    }
+  }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+/**
+ * A service that exports the metrics of factories to a monitoring system.
+ * Exporters are located with {@link java.util.ServiceLoader ServiceLoader}
+ * the first time the metrics of a factory are enabled, and are handed the
+ * FactoryMetrics of every factory that enables them afterwards, and are
+ * asked to remove them when the factory disables them.  An exporter
+ * typically keeps the FactoryMetrics it is given and reads them on its own
+ * schedule; reading never blocks the factories.
+ * <p>
+ * Exporters are registered in a file named
+ * META-INF/services/net.yannaccone.pattern.factory.MetricsExporter.
+ */
+public interface MetricsExporter {
+
+  /**
+   * Start exporting the metrics of a factory.
+   * 
+   * @param metrics the FactoryMetrics of the factory
+   */
+  void export(FactoryMetrics metrics);
+  
+  /**
+   * Stop exporting the metrics of a factory that disabled them, releasing
+   * any reference to them.  The default does nothing.
+   * 
+   * @param metrics the FactoryMetrics of the factory
+   */
+  default void remove(FactoryMetrics metrics) {
+  }
+
+}
@@ -0,0 +1,685 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable Configuration that shares structure with the configurations it
+ * is derived from.
+ * <p>
+ * The properties are held in a hash array mapped trie.  {@link #with(String,
+ * String) with} and {@link #without(String) without} return a new
+ * configuration that copies only the path of trie nodes leading to the
+ * changed property, at most seven small arrays, and shares every other node
+ * with its parent.  Many configurations that differ from a common base in a
+ * few properties therefore cost little more memory than the base itself.
+ * <p>
+ * Equal configurations derived independently can be collapsed into one
+ * instance with {@link #intern()}.  The hash code is maintained incrementally
+ * by with and without, so interning costs one lookup in a weak table.
+ */
+public final class PersistentConfiguration implements TypedConfiguration {
+  
+  /*
+   * The number of hash bits consumed at each level of the trie
+   */
+  private static final int BITS = 5;
+  
+  /*
+   * The empty configuration
+   */
+  private static final PersistentConfiguration EMPTY =
+      new PersistentConfiguration(BitmapNode.EMPTY, 0, 0);
+  
+  /*
+   * The interned configurations; both the keys and the values are weakly
+   * referenced, so interned configurations can still be collected
+   */
+  private static final Map<PersistentConfiguration, WeakReference<PersistentConfiguration>>
+      INTERNED = new WeakHashMap<>();
+  
+  /*
+   * The root of the trie
+   */
+  private final Node root;
+  
+  /*
+   * The number of properties
+   */
+  private final int size;
+  
+  /*
+   * The sum of the hash codes of the properties, computed as by Map.Entry
+   */
+  private final int hash;
+
+  /*
+   * 
+   */
+  private PersistentConfiguration(Node root, int size, int hash) {
+    
+    this.root = root;
+    this.size = size;
+    this.hash = hash;
+  }
+  
+  /**
+   * Get the empty configuration.
+   * 
+   * @return the empty PersistentConfiguration
+   */
+  public static PersistentConfiguration empty() {
+    
+    return EMPTY;
+  }
+  
+  /**
+   * Create a configuration holding the properties of another configuration.
+   * 
+   * @param configuration the TypedConfiguration to copy
+   * @return a PersistentConfiguration holding the same properties
+   */
+  public static PersistentConfiguration of(TypedConfiguration configuration) {
+    
+    if (configuration instanceof PersistentConfiguration) {
+      
+      return (PersistentConfiguration) configuration;
+    }
+    
+    PersistentConfiguration result = EMPTY;
+    
+    for (String key : configuration.stringPropertyNames()) {
+      
+      result = result.with(key, configuration.getProperty(key));
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Derive a configuration in which a property has the provided value.
+   * 
+   * @param key the property name
+   * @param value the property value
+   * @return the derived configuration, or this configuration if the property
+   *         already has the value
+   */
+  public PersistentConfiguration with(String key, String value) {
+    
+    if (key==null || value==null) {
+      
+      throw new IllegalArgumentException("key and value must not be null");
+    }
+    
+    Change change = new Change();
+    Node changed = root.with(key, value, spread(key.hashCode()), 0, change);
+    
+    if (changed==root) {
+      
+      return this;
+    }
+    
+    int entryHash = key.hashCode() ^ value.hashCode();
+    
+    if (change.replaced==null) {
+      
+      return new PersistentConfiguration(changed, size + 1, hash + entryHash);
+    }
+    
+    return new PersistentConfiguration(changed, size,
+        hash - (key.hashCode() ^ change.replaced.hashCode()) + entryHash);
+  }
+  
+  /**
+   * Derive a configuration in which a property is not set.
+   * 
+   * @param key the property name
+   * @return the derived configuration, or this configuration if the property
+   *         is not set
+   */
+  public PersistentConfiguration without(String key) {
+    
+    Change change = new Change();
+    Node changed = root.without(key, spread(key.hashCode()), 0, change);
+    
+    if (changed==root) {
+      
+      return this;
+    }
+    
+    return new PersistentConfiguration(changed==null ? BitmapNode.EMPTY : changed, size - 1,
+        hash - (key.hashCode() ^ change.replaced.hashCode()));
+  }
+  
+  /**
+   * Get the canonical instance of the configurations equal to this one.  The
+   * first configuration interned with a given content becomes its canonical
+   * instance, for as long as it is reachable.
+   * 
+   * @return the canonical PersistentConfiguration equal to this one
+   */
+  public PersistentConfiguration intern() {
+    
+    synchronized (INTERNED) {
+      
+      WeakReference<PersistentConfiguration> reference = INTERNED.get(this);
+      PersistentConfiguration interned = reference==null ? null : reference.get();
+      
+      if (interned==null) {
+        
+        interned = this;
+        INTERNED.put(this, new WeakReference<>(this));
+      }
+      
+      return interned;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String)
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    return root.get(key, spread(key.hashCode()), 0);
+  }
+  
+  /**
+   * Get the number of properties.
+   * 
+   * @return the number of properties
+   */
+  public int size() {
+    
+    return size;
+  }
+
+  /**
+   * Get the property names.
+   * 
+   * @return an unmodifiable Set of the property names
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    Set<String> names = new LinkedHashSet<>();
+    
+    root.forEach((key, value) -> names.add(key));
+    
+    return Collections.unmodifiableSet(names);
+  }
+  
+  /**
+   * Pass every property to the provided action, in no particular order.
+   * 
+   * @param action the action to perform on each property name and value
+   */
+  public void forEach(BiConsumer<? super String, ? super String> action) {
+    
+    root.forEach(action);
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    
+    if (this==obj) {
+      
+      return true;
+    }
+    
+    if (!(obj instanceof PersistentConfiguration)) {
+      
+      return false;
+    }
+    
+    PersistentConfiguration other = (PersistentConfiguration) obj;
+    
+    if (size!=other.size || hash!=other.hash) {
+      
+      return false;
+    }
+    
+    boolean[] equal = { true };
+    
+    root.forEach((key, value) -> equal[0] &= value.equals(other.getProperty(key)));
+    
+    return equal[0];
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    
+    return hash;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    StringBuilder builder = new StringBuilder("{");
+    
+    root.forEach((key, value) -> {
+      
+      if (builder.length()>1) {
+        
+        builder.append(", ");
+      }
+      
+      builder.append(key).append('=').append(value);
+    });
+    
+    return builder.append('}').toString();
+  }
+  
+  /*
+   * Spread the hash code of a key so that every level of the trie sees well
+   * mixed bits.
+   */
+  private static int spread(int hashCode) {
+    
+    int h = hashCode * 0x9E3779B9;
+    
+    return h ^ (h >>> 16);
+  }
+  
+  /*
+   * The outcome of a with or without operation on the trie
+   */
+  private static final class Change {
+    
+    /*
+     * The value replaced or removed, or null if a property was added
+     */
+    private String replaced;
+  }
+  
+  /*
+   * A node of the trie
+   */
+  private abstract static class Node {
+    
+    abstract String get(String key, int hash, int shift);
+    
+    abstract Node with(String key, String value, int hash, int shift, Change change);
+    
+    /*
+     * Return the node without the key, this node if the key is absent, or
+     * null if the node becomes empty.
+     */
+    abstract Node without(String key, int hash, int shift, Change change);
+    
+    abstract void forEach(BiConsumer<? super String, ? super String> action);
+    
+    /*
+     * Whether the node holds a single property and no children, and can be
+     * inlined into its parent.
+     */
+    abstract boolean isSingleton();
+  }
+  
+  /*
+   * A node with up to 32 slots selected by BITS bits of the hash.  A slot
+   * holds either a property, as a key and value pair in entries, or a child
+   * node, as null and the node.
+   */
+  private static final class BitmapNode extends Node {
+    
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+    
+    private final int bitmap;
+    
+    private final Object[] entries;
+    
+    BitmapNode(int bitmap, Object[] entries) {
+      
+      this.bitmap = bitmap;
+      this.entries = entries;
+    }
+    
+    @Override
+    String get(String key, int hash, int shift) {
+      
+      int bit = 1 << ((hash >>> shift) & 31);
+      
+      if ((bitmap & bit)==0) {
+        
+        return null;
+      }
+      
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object k = entries[index];
+      
+      if (k==null) {
+        
+        return ((Node) entries[index + 1]).get(key, hash, shift + BITS);
+      }
+      
+      return key.equals(k) ? (String) entries[index + 1] : null;
+    }
+    
+    @Override
+    Node with(String key, String value, int hash, int shift, Change change) {
+      
+      int bit = 1 << ((hash >>> shift) & 31);
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      
+      if ((bitmap & bit)==0) {
+        
+        Object[] inserted = new Object[entries.length + 2];
+        
+        System.arraycopy(entries, 0, inserted, 0, index);
+        inserted[index] = key;
+        inserted[index + 1] = value;
+        System.arraycopy(entries, index, inserted, index + 2, entries.length - index);
+        
+        return new BitmapNode(bitmap | bit, inserted);
+      }
+      
+      Object k = entries[index];
+      Object v = entries[index + 1];
+      
+      if (k==null) {
+        
+        Node child = ((Node) v).with(key, value, hash, shift + BITS, change);
+        
+        return child==v ? this : replace(index, null, child);
+      }
+      
+      if (key.equals(k)) {
+        
+        if (value.equals(v)) {
+          
+          return this;
+        }
+        
+        change.replaced = (String) v;
+        
+        return replace(index, k, value);
+      }
+      
+      Node child = pair((String) k, (String) v, spread(k.hashCode()), key, value, hash,
+          shift + BITS);
+      
+      return replace(index, null, child);
+    }
+    
+    @Override
+    Node without(String key, int hash, int shift, Change change) {
+      
+      int bit = 1 << ((hash >>> shift) & 31);
+      
+      if ((bitmap & bit)==0) {
+        
+        return this;
+      }
+      
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object k = entries[index];
+      Object v = entries[index + 1];
+      
+      if (k==null) {
+        
+        Node child = ((Node) v).without(key, hash, shift + BITS, change);
+        
+        if (child==v) {
+          
+          return this;
+        }
+        
+        if (child==null) {
+          
+          return remove(bit, index);
+        }
+        
+        if (child.isSingleton()) {
+          
+          // inline the remaining property so that the trie stays shallow
+          Object[] single = new Object[2];
+          
+          child.forEach((ck, cv) -> {
+            
+            single[0] = ck;
+            single[1] = cv;
+          });
+          
+          return replace(index, single[0], single[1]);
+        }
+        
+        return replace(index, null, child);
+      }
+      
+      if (!key.equals(k)) {
+        
+        return this;
+      }
+      
+      change.replaced = (String) v;
+      
+      return remove(bit, index);
+    }
+    
+    @Override
+    void forEach(BiConsumer<? super String, ? super String> action) {
+      
+      for (int i = 0; i<entries.length; i += 2) {
+        
+        if (entries[i]==null) {
+          
+          ((Node) entries[i + 1]).forEach(action);
+          
+        } else {
+          
+          action.accept((String) entries[i], (String) entries[i + 1]);
+        }
+      }
+    }
+    
+    @Override
+    boolean isSingleton() {
+      
+      return entries.length==2 && entries[0]!=null;
+    }
+    
+    /*
+     * Copy the node with one slot replaced.
+     */
+    private BitmapNode replace(int index, Object key, Object value) {
+      
+      Object[] replaced = entries.clone();
+      
+      replaced[index] = key;
+      replaced[index + 1] = value;
+      
+      return new BitmapNode(bitmap, replaced);
+    }
+    
+    /*
+     * Copy the node with one slot removed, or return null if it was the last.
+     */
+    private BitmapNode remove(int bit, int index) {
+      
+      if (entries.length==2) {
+        
+        return null;
+      }
+      
+      Object[] removed = new Object[entries.length - 2];
+      
+      System.arraycopy(entries, 0, removed, 0, index);
+      System.arraycopy(entries, index + 2, removed, index, entries.length - index - 2);
+      
+      return new BitmapNode(bitmap & ~bit, removed);
+    }
+    
+    /*
+     * Create the node holding two properties whose hashes agree up to shift.
+     */
+    private static Node pair(String key1, String value1, int hash1, String key2,
+        String value2, int hash2, int shift) {
+      
+      if (shift>=32) {
+        
+        return new CollisionNode(new String[] { key1, key2 }, new String[] { value1, value2 });
+      }
+      
+      int index1 = (hash1 >>> shift) & 31;
+      int index2 = (hash2 >>> shift) & 31;
+      
+      if (index1==index2) {
+        
+        return new BitmapNode(1 << index1, new Object[] { null,
+            pair(key1, value1, hash1, key2, value2, hash2, shift + BITS) });
+      }
+      
+      return new BitmapNode((1 << index1) | (1 << index2), index1<index2 ?
+          new Object[] { key1, value1, key2, value2 } :
+          new Object[] { key2, value2, key1, value1 });
+    }
+  }
+  
+  /*
+   * A node holding properties whose keys have the same hash.
+   */
+  private static final class CollisionNode extends Node {
+    
+    private final String[] keys;
+    
+    private final String[] values;
+    
+    CollisionNode(String[] keys, String[] values) {
+      
+      this.keys = keys;
+      this.values = values;
+    }
+    
+    @Override
+    String get(String key, int hash, int shift) {
+      
+      int index = indexOf(key);
+      
+      return index<0 ? null : values[index];
+    }
+    
+    @Override
+    Node with(String key, String value, int hash, int shift, Change change) {
+      
+      int index = indexOf(key);
+      
+      if (index>=0) {
+        
+        if (values[index].equals(value)) {
+          
+          return this;
+        }
+        
+        change.replaced = values[index];
+        
+        String[] replaced = values.clone();
+        replaced[index] = value;
+        
+        return new CollisionNode(keys, replaced);
+      }
+      
+      String[] addedKeys = Arrays.copyOf(keys, keys.length + 1);
+      String[] addedValues = Arrays.copyOf(values, values.length + 1);
+      
+      addedKeys[keys.length] = key;
+      addedValues[values.length] = value;
+      
+      return new CollisionNode(addedKeys, addedValues);
+    }
+    
+    @Override
+    Node without(String key, int hash, int shift, Change change) {
+      
+      int index = indexOf(key);
+      
+      if (index<0) {
+        
+        return this;
+      }
+      
+      change.replaced = values[index];
+      
+      if (keys.length==1) {
+        
+        return null;
+      }
+      
+      String[] removedKeys = new String[keys.length - 1];
+      String[] removedValues = new String[values.length - 1];
+      
+      for (int i = 0, j = 0; i<keys.length; i++) {
+        
+        if (i!=index) {
+          
+          removedKeys[j] = keys[i];
+          removedValues[j++] = values[i];
+        }
+      }
+      
+      return new CollisionNode(removedKeys, removedValues);
+    }
+    
+    @Override
+    void forEach(BiConsumer<? super String, ? super String> action) {
+      
+      for (int i = 0; i<keys.length; i++) {
+        
+        action.accept(keys[i], values[i]);
+      }
+    }
+    
+    @Override
+    boolean isSingleton() {
+      
+      return keys.length==1;
+    }
+    
+    private int indexOf(String key) {
+      
+      for (int i = 0; i<keys.length; i++) {
+        
+        if (keys[i].equals(key)) {
+          
+          return i;
+        }
+      }
+      
+      return -1;
+    }
+  }
+
+}
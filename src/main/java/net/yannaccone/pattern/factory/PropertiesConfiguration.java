@@ -24,8 +24,14 @@ import java.util.Properties;
  * A Properties subclass that implements Configuration so it can be used as the
  * configuration object for a Configurable implementation by
  * ConfigurableFactory.
+ * <p>
+ * The typed accessors of TypedConfiguration parse the property value on every
+ * call, because a Properties object can be modified through too many paths
+ * for a cache of parsed values to be kept consistent.  Configurations that
+ * are read on hot paths should be converted to an ImmutableConfiguration,
+ * which parses each value once.
  */
-public class PropertiesConfiguration extends Properties implements Configuration {
+public class PropertiesConfiguration extends Properties implements TypedConfiguration {
 
   /**
    * 
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+/**
+ * An interface that may be implemented by types created through a
+ * {@link net.yannaccone.pattern.factory.PrototypeConfigurableFactory PrototypeConfigurableFactory}.
+ * A Prototype is created and configured once; later instances are obtained
+ * by copying it.
+ * <p>
+ * The implementation decides how deep the copy is.  State that is immutable
+ * or safe to share, such as values read from the Configuration, may be
+ * copied by reference; mutable state that each instance must own must be
+ * copied deeply.
+ */
+public interface Prototype<T1> {
+
+  /**
+   * Create a copy of this configured instance.  The copy must behave as if
+   * it had been created and configured with the same Configuration as this
+   * instance, and must not share mutable state with it.
+   * 
+   * @return a new instance equivalent to this instance
+   */
+  T1 copy();
+
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A ConfigurableFactory that builds and configures one prototype instance per
+ * type and Configuration through a delegate ConfigurableFactory, and returns
+ * copies of that prototype from later create calls.  Implementations opt in
+ * by implementing
+ * {@link net.yannaccone.pattern.factory.Prototype Prototype}; instances that
+ * do not are created by the delegate on every call, as usual.
+ * <p>
+ * A prototype is kept only once a type and Configuration are used a second
+ * time, so a Configuration used once costs a single create, as it would
+ * through the delegate; {@link #prepare(String, Configuration) prepare}
+ * keeps one ahead of the first use.  At most a fixed number of types and
+ * Configurations are remembered, and once that number is reached one is
+ * forgotten for each new one, so a stream of fresh Configurations does not
+ * accumulate prototypes.  Those used only once are forgotten first; among
+ * the prototypes, one that has not been copied since the last eviction
+ * passed over it is forgotten before one that has.
+ * <p>
+ * Prototypes are keyed by the type String and by the identity of the
+ * Configuration instance.  A Configuration must therefore not be modified
+ * once it has been used with this factory, or the prototype built from it
+ * must be discarded with
+ * {@link net.yannaccone.pattern.factory.PrototypeConfigurableFactory#remove(String, Configuration) remove}.
+ */
+public class PrototypeConfigurableFactory<T1 extends Configurable<T2>, T2 extends Configuration>
+    implements ConfigurableFactory<T1, T2> {
+  
+  /**
+   * The number of types and Configurations remembered by default.
+   */
+  public static final int DEFAULT_MAX_PROTOTYPES = 1024;
+  
+  /*
+   * Marks a type and Configuration used once, with no prototype yet
+   */
+  private static final Entry SEEN = new Entry(null);
+  
+  /*
+   * The factory used to build prototypes and non-prototype instances
+   */
+  private final ConfigurableFactory<T1, T2> delegate;
+  
+  /*
+   * The maximum number of entries of prototypes
+   */
+  private final int maxPrototypes;
+  
+  /*
+   * The configured prototype for each type and Configuration, or SEEN
+   */
+  private final ConcurrentMap<Key, Entry> prototypes = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a new PrototypeConfigurableFactory that builds prototypes with
+   * the provided delegate and remembers up to
+   * {@link #DEFAULT_MAX_PROTOTYPES} types and Configurations.
+   * 
+   * @param delegate the ConfigurableFactory used to create and configure
+   *        prototype instances
+   */
+  public PrototypeConfigurableFactory(ConfigurableFactory<T1, T2> delegate) {
+    
+    this(delegate, DEFAULT_MAX_PROTOTYPES);
+  }
+
+  /**
+   * Constructs a new PrototypeConfigurableFactory that builds prototypes with
+   * the provided delegate.
+   * 
+   * @param delegate the ConfigurableFactory used to create and configure
+   *        prototype instances
+   * @param maxPrototypes the number of types and Configurations to remember
+   */
+  public PrototypeConfigurableFactory(ConfigurableFactory<T1, T2> delegate,
+      int maxPrototypes) {
+    
+    if (delegate==null) {
+      
+      throw new IllegalArgumentException("Parameter delegate cannot be null");
+    }
+    
+    if (maxPrototypes<1) {
+      
+      throw new IllegalArgumentException("Parameter maxPrototypes must be positive");
+    }
+    
+    this.delegate = delegate;
+    this.maxPrototypes = maxPrototypes;
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.ConfigurableFactory#create(java.lang.String, net.yannaccone.pattern.factory.Configuration)
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T1 create(String type, T2 configuration) throws FactoryException,
+      ConfigurationException {
+    
+    Key key = new Key(type, configuration);
+    Entry cached = prototypes.get(key);
+    
+    if (cached!=null && cached!=SEEN) {
+      
+      cached.reference();
+      
+      // The prototype itself is never handed out, so callers cannot alter
+      // the state that later copies are made from
+      return copy(type, (T1) cached.prototype);
+    }
+    
+    T1 instance = delegate.create(type, configuration);
+    
+    if (!(instance instanceof Prototype)) {
+      
+      // Not copyable; every call pays for a full create and configure
+      return instance;
+    }
+    
+    if (cached==null) {
+      
+      // First use; a Configuration used only once is not worth a prototype
+      store(key, SEEN);
+      return instance;
+    }
+    
+    return copy(type, keep(key, instance));
+  }
+  
+  /**
+   * Build and keep the prototype for the provided type and Configuration
+   * ahead of their first use, if the type implements Prototype and it is not
+   * already kept.
+   * 
+   * @param type the type String of the prototype
+   * @param configuration the Configuration of the prototype
+   * @throws FactoryException if the delegate fails to create the instance
+   * @throws ConfigurationException if the delegate fails to configure the
+   *         instance
+   */
+  public void prepare(String type, T2 configuration) throws FactoryException,
+      ConfigurationException {
+    
+    Key key = new Key(type, configuration);
+    Entry cached = prototypes.get(key);
+    
+    if (cached!=null && cached!=SEEN) {
+      
+      return;
+    }
+    
+    T1 instance = delegate.create(type, configuration);
+    
+    if (instance instanceof Prototype) {
+      
+      keep(key, instance);
+    }
+  }
+  
+  /**
+   * Discard the prototype built for the provided type and Configuration, so
+   * that the next create call builds a new one.
+   * 
+   * @param type the type String of the prototype
+   * @param configuration the Configuration of the prototype
+   */
+  public void remove(String type, T2 configuration) {
+    
+    prototypes.remove(new Key(type, configuration));
+  }
+  
+  /**
+   * Discard every prototype.
+   */
+  public void clear() {
+    
+    prototypes.clear();
+  }
+  
+  /*
+   * Keep an instance as the prototype of a key unless another thread kept
+   * one first, and return the prototype kept.
+   */
+  @SuppressWarnings("unchecked")
+  private T1 keep(Key key, T1 instance) {
+    
+    Entry entry = new Entry(instance);
+    
+    while (true) {
+      
+      Entry cached = prototypes.get(key);
+      
+      if (cached!=null && cached!=SEEN) {
+        
+        return (T1) cached.prototype;
+      }
+      
+      if (cached==null ? store(key, entry) : prototypes.replace(key, SEEN, entry)) {
+        
+        return instance;
+      }
+    }
+  }
+  
+  /*
+   * Add an entry for a key that has none, evicting other entries while the
+   * maximum is exceeded.
+   */
+  private boolean store(Key key, Entry entry) {
+    
+    if (prototypes.putIfAbsent(key, entry)!=null) {
+      
+      return false;
+    }
+    
+    while (prototypes.size()>maxPrototypes && evict(key)) {
+      
+      // Each call evicts one entry
+    }
+    
+    return true;
+  }
+  
+  /*
+   * Evict one entry other than key, returning false if there is none.  The
+   * entries are visited from a random position, so that the order of the
+   * map does not favor any of them, and the first SEEN entry is evicted.
+   * Failing one, the first prototype not copied since an eviction last
+   * visited it is evicted, clearing the mark of those copied so they get a
+   * second chance, and failing that the first prototype visited.
+   */
+  private boolean evict(Key key) {
+    
+    int start = ThreadLocalRandom.current().nextInt(maxPrototypes);
+    Key unreferenced = null;
+    Key first = null;
+    
+    for (int pass = 0; pass<2; pass++) {
+      
+      int index = 0;
+      
+      for (Map.Entry<Key, Entry> other : prototypes.entrySet()) {
+        
+        // The first pass visits the entries from start, the second those
+        // before it
+        if ((index++<start)==(pass==0) || other.getKey().equals(key)) {
+          
+          continue;
+        }
+        
+        Entry entry = other.getValue();
+        
+        if (entry==SEEN) {
+          
+          if (prototypes.remove(other.getKey(), SEEN)) {
+            
+            return true;
+          }
+          
+        } else if (entry.referenced) {
+          
+          entry.referenced = false;
+          
+        } else if (unreferenced==null) {
+          
+          unreferenced = other.getKey();
+        }
+        
+        if (first==null) {
+          
+          first = other.getKey();
+        }
+      }
+    }
+    
+    Key victim = unreferenced!=null ? unreferenced : first;
+    
+    return victim!=null && prototypes.remove(victim)!=null;
+  }
+  
+  /*
+   * Copy the prototype, verifying that the copy hook honored its contract.
+   */
+  @SuppressWarnings("unchecked")
+  private T1 copy(String type, T1 prototype) throws FactoryException {
+    
+    Object copy = ((Prototype<?>) prototype).copy();
+    
+    if (copy==null || copy==prototype || copy.getClass()!=prototype.getClass()) {
+      
+      throw new FactoryException("Prototype " + prototype.getClass().getName() +
+          " of type " + type + " did not return a new instance of its own class from copy()");
+    }
+    
+    return (T1) copy;
+  }
+  
+  /*
+   * A prototype, or none for SEEN, and whether it has been copied since an
+   * eviction last visited it.
+   */
+  private static final class Entry {
+    
+    private final Object prototype;
+    
+    private volatile boolean referenced;
+    
+    Entry(Object prototype) {
+      
+      // A new prototype has just been used or prepared
+      this.prototype = prototype;
+      this.referenced = prototype!=null;
+    }
+    
+    void reference() {
+      
+      // Read first, so that copies of a marked prototype do not write
+      if (!referenced) {
+        
+        referenced = true;
+      }
+    }
+  }
+  
+  /*
+   * A key made of a type String and the identity of a Configuration.
+   */
+  private static final class Key {
+    
+    private final String type;
+    
+    private final Configuration configuration;
+    
+    Key(String type, Configuration configuration) {
+      
+      this.type = type;
+      this.configuration = configuration;
+    }
+
+    @Override
+    public int hashCode() {
+      
+      return 31 * (type==null ? 0 : type.hashCode()) +
+          System.identityHashCode(configuration);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      
+      if (!(obj instanceof Key)) {
+        
+        return false;
+      }
+      
+      Key other = (Key) obj;
+      
+      return configuration==other.configuration &&
+          (type==null ? other.type==null : type.equals(other.type));
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning the build of the implementation registry
+ * of a base factory from a Reflector scan.  A factory builds its registry on
+ * first use and again after each reload of the Reflector.
+ */
+@Name("net.yannaccone.pattern.factory.RegistryBuild")
+@Label("Factory Registry Build")
+@Category({"Pattern", "Factory"})
+@Description("The indexing of the implementations of a factory by their type Strings")
+@StackTrace(false)
+final class RegistryBuildEvent extends jdk.jfr.Event {
+  
+  /*
+   * 
+   */
+  @Label("Factory")
+  Class<?> factory;
+  
+  /*
+   * 
+   */
+  @Label("Implementations")
+  @Description("The number of implementations registered")
+  int implementations;
+  
+  /*
+   * 
+   */
+  @Label("Failed")
+  @Description("Whether an annotated class could not be registered")
+  boolean failed;
+  
+  /**
+   * Commit the event if it is enabled and within its threshold.
+   * 
+   * @param factory the factory
+   * @param registry the registry built
+   */
+  void record(Object factory, ImplementationRegistry registry) {
+    
+    if (shouldCommit()) {
+      
+      this.factory = factory.getClass();
+      this.implementations = registry.size();
+      this.failed = registry.isFailed();
+      commit();
+    }
+  }
+
+}
@@ -0,0 +1,566 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Configuration backed by a properties file that is reloaded when the file
+ * changes.
+ * <p>
+ * The file is loaded into an immutable {@link ImmutableConfiguration}
+ * snapshot, which is replaced as a whole on each reload.  Each read of a
+ * ReloadingConfiguration sees a single snapshot; a reader that needs several
+ * properties from the same snapshot should read them from
+ * {@link #snapshot()}.
+ * <p>
+ * Configurable instances registered with track are configured with each new
+ * snapshot that changes one of the properties they declared, and are skipped
+ * otherwise.  A reload whose content is equal to the current snapshot, such as
+ * one caused by touching the file, reconfigures nothing.  Tracked instances
+ * are weakly referenced and are forgotten once collected.
+ * <p>
+ * The file is watched by a daemon thread using a WatchService on its
+ * directory, started by {@link #watch()} and stopped by {@link #close()}.  A
+ * reload that fails leaves the previous snapshot in place; the failure is
+ * available from {@link #getLastFailure()}.
+ */
+public final class ReloadingConfiguration implements TypedConfiguration, Closeable {
+  
+  /*
+   * How long the watcher waits for an event before checking whether it was
+   * closed
+   */
+  private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+  
+  /*
+   * The watched properties file
+   */
+  private final Path file;
+  
+  /*
+   * The current snapshot
+   */
+  private volatile ImmutableConfiguration snapshot;
+  
+  /*
+   * The tracked instances; guarded by this
+   */
+  private final List<Tracked> tracked = new ArrayList<>();
+  
+  /*
+   * The failure of the last reload, or null if it succeeded
+   */
+  private volatile Exception lastFailure;
+  
+  /*
+   * The WatchService of the watcher thread, or null if not watching; guarded
+   * by this
+   */
+  private WatchService watchService;
+
+  /**
+   * Load a properties file.  The file is not watched until
+   * {@link #watch()} is called.
+   * 
+   * @param file the properties file
+   * @throws IOException if the file cannot be read
+   */
+  public ReloadingConfiguration(Path file) throws IOException {
+    
+    if (file==null) {
+      
+      throw new IllegalArgumentException("file must not be null");
+    }
+    
+    this.file = file.toAbsolutePath();
+    this.snapshot = load(this.file);
+  }
+  
+  /**
+   * Start watching the file on a daemon thread.  Calling watch again has no
+   * effect.
+   * 
+   * @return this ReloadingConfiguration
+   * @throws IOException if the directory of the file cannot be watched
+   */
+  public synchronized ReloadingConfiguration watch() throws IOException {
+    
+    if (watchService!=null) {
+      
+      return this;
+    }
+    
+    WatchService service = file.getFileSystem().newWatchService();
+    
+    file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY);
+    
+    Thread watcher = new Thread(() -> run(service), "ReloadingConfiguration " + file);
+    
+    watcher.setDaemon(true);
+    watcher.start();
+    watchService = service;
+    
+    return this;
+  }
+  
+  /**
+   * Get the current snapshot.
+   * 
+   * @return the ImmutableConfiguration loaded last
+   */
+  public ImmutableConfiguration snapshot() {
+    
+    return snapshot;
+  }
+  
+  /**
+   * Configure an instance with the current snapshot, and configure it again
+   * with every later snapshot that changes one of the provided properties.
+   * 
+   * @param instance the Configurable to track
+   * @param keys the properties the instance reads; if none are provided,
+   *        every change reconfigures the instance
+   * @throws ConfigurationException if the instance cannot be configured with
+   *         the current snapshot; it is not tracked
+   */
+  public synchronized <T1 extends Configurable<? super ImmutableConfiguration>> void track(
+      T1 instance, String... keys) throws ConfigurationException {
+    
+    instance.configure(snapshot);
+    tracked.add(new Tracked(instance, keys));
+  }
+  
+  /**
+   * Stop tracking an instance.
+   * 
+   * @param instance the tracked Configurable
+   */
+  public synchronized void untrack(Configurable<?> instance) {
+    
+    for (Iterator<Tracked> i = tracked.iterator(); i.hasNext();) {
+      
+      Configurable<?> candidate = i.next().get();
+      
+      if (candidate==null || candidate==instance) {
+        
+        i.remove();
+      }
+    }
+  }
+  
+  /**
+   * Reload the file now, install the new snapshot and reconfigure the
+   * tracked instances affected by the change.
+   * 
+   * @return the names of the properties added, removed or changed
+   * @throws IOException if the file cannot be read; the current snapshot is
+   *         kept
+   * @throws ConfigurationException if any tracked instance rejects the new
+   *         snapshot, with the failures of further instances suppressed;
+   *         every other affected instance is still reconfigured
+   */
+  public synchronized Set<String> reload() throws IOException, ConfigurationException {
+    
+    ImmutableConfiguration current = snapshot;
+    ImmutableConfiguration loaded = load(file);
+    
+    if (loaded.hashCode()==current.hashCode() && loaded.equals(current)) {
+      
+      return Collections.emptySet();
+    }
+    
+    Set<String> changed = diff(current, loaded);
+    ConfigurationException failure = null;
+    
+    snapshot = loaded;
+    
+    for (Iterator<Tracked> i = tracked.iterator(); i.hasNext();) {
+      
+      Tracked entry = i.next();
+      Configurable<? super ImmutableConfiguration> instance = entry.get();
+      
+      if (instance==null) {
+        
+        i.remove();
+        continue;
+      }
+      
+      if (!entry.isAffectedBy(changed)) {
+        
+        continue;
+      }
+      
+      try {
+        
+        instance.configure(loaded);
+        
+      } catch (ConfigurationException e) {
+        
+        if (failure==null) {
+          
+          failure = e;
+          
+        } else {
+          
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    
+    if (failure!=null) {
+      
+      throw failure;
+    }
+    
+    return changed;
+  }
+  
+  /**
+   * Get the failure of the last reload made by the watcher thread.
+   * 
+   * @return the IOException or ConfigurationException of the last reload,
+   *         or null if it succeeded
+   */
+  public Exception getLastFailure() {
+    
+    return lastFailure;
+  }
+  
+  /**
+   * Stop watching the file.  The current snapshot remains readable.
+   * 
+   * @throws IOException if the WatchService cannot be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    
+    if (watchService!=null) {
+      
+      watchService.close();
+      watchService = null;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String)
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    return snapshot.getProperty(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return snapshot.getInt(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    return snapshot.getLong(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    return snapshot.getBoolean(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String)
+   */
+  @Override
+  public long getBytes(String key) throws ConfigurationException {
+    
+    return snapshot.getBytes(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String)
+   */
+  @Override
+  public Duration getDuration(String key) throws ConfigurationException {
+    
+    return snapshot.getDuration(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return snapshot.getEnum(key, enumType);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getList(java.lang.String)
+   */
+  @Override
+  public List<String> getList(String key) {
+    
+    return snapshot.getList(key);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String, java.lang.String)
+   */
+  @Override
+  public String getProperty(String key, String defaultValue) {
+    
+    return snapshot.getProperty(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    return snapshot.getInt(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    return snapshot.getLong(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue) throws ConfigurationException {
+    
+    return snapshot.getBoolean(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getDuration(java.lang.String, java.time.Duration)
+   */
+  @Override
+  public Duration getDuration(String key, Duration defaultValue) throws ConfigurationException {
+    
+    return snapshot.getDuration(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBytes(java.lang.String, long)
+   */
+  @Override
+  public long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    return snapshot.getBytes(key, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getEnum(java.lang.String, java.lang.Class, java.lang.Enum)
+   */
+  @Override
+  public <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    return snapshot.getEnum(key, enumType, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#stringPropertyNames()
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    return snapshot.stringPropertyNames();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return getClass().getSimpleName() + "[" + file + "]";
+  }
+  
+  /*
+   * Wait for changes to the file and reload it, until the WatchService is
+   * closed.
+   */
+  private void run(WatchService service) {
+    
+    try {
+      
+      while (true) {
+        
+        WatchKey key = service.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        
+        if (key==null) {
+          
+          continue;
+        }
+        
+        boolean changed = false;
+        
+        for (WatchEvent<?> event : key.pollEvents()) {
+          
+          changed |= file.getFileName().equals(event.context()) ||
+              event.kind()==StandardWatchEventKinds.OVERFLOW;
+        }
+        
+        key.reset();
+        
+        if (changed) {
+          
+          try {
+            
+            reload();
+            lastFailure = null;
+            
+          } catch (IOException | ConfigurationException | RuntimeException e) {
+            
+            lastFailure = e;
+          }
+        }
+      }
+      
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      
+      // closed
+    }
+  }
+  
+  /*
+   * Load the file into a snapshot.
+   */
+  private static ImmutableConfiguration load(Path file) throws IOException {
+    
+    Properties properties = new Properties();
+    
+    try (InputStream in = Files.newInputStream(file)) {
+      
+      properties.load(in);
+      
+    } catch (IllegalArgumentException e) {
+      
+      throw new IOException("Malformed properties file " + file, e);
+    }
+    
+    return ImmutableConfiguration.of(properties);
+  }
+  
+  /*
+   * Get the names of the properties added, removed or changed between two
+   * snapshots.
+   */
+  private static Set<String> diff(ImmutableConfiguration before, ImmutableConfiguration after) {
+    
+    Set<String> changed = new HashSet<>();
+    
+    after.forEach((key, value) -> {
+      
+      if (!value.equals(before.getProperty(key))) {
+        
+        changed.add(key);
+      }
+    });
+    
+    before.forEach((key, value) -> {
+      
+      if (!after.containsKey(key)) {
+        
+        changed.add(key);
+      }
+    });
+    
+    return Collections.unmodifiableSet(changed);
+  }
+  
+  /*
+   * A weakly referenced tracked instance and the properties it reads
+   */
+  private static final class Tracked
+      extends WeakReference<Configurable<? super ImmutableConfiguration>> {
+    
+    /*
+     * The properties the instance reads, or null for all of them
+     */
+    private final Set<String> keys;
+    
+    Tracked(Configurable<? super ImmutableConfiguration> instance, String[] keys) {
+      
+      super(instance);
+      this.keys = keys.length==0 ? null : new HashSet<>(Arrays.asList(keys));
+    }
+    
+    boolean isAffectedBy(Set<String> changed) {
+      
+      if (keys==null) {
+        
+        return true;
+      }
+      
+      for (String key : changed) {
+        
+        if (keys.contains(key)) {
+          
+          return true;
+        }
+      }
+      
+      return false;
+    }
+  }
+
+}
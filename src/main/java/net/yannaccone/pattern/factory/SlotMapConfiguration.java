@@ -0,0 +1,747 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Configuration that stores its properties in slots fixed by a shared
+ * {@link SlotMapConfiguration.Layout Layout}.  Each property name is resolved
+ * to an int slot once, typically when a Configurable is configured, and the
+ * property is then read by slot with an array index and no hashing.
+ * <p>
+ * Values are stored by kind: integral and boolean values in a long[],
+ * booleans as 1 or 0 but marked as booleans so that they read back as
+ * "true" or "false",
+ * floating point values in a double[] and all other values in an Object[], so
+ * numeric values are never boxed.  A String value is also parsed once, when it
+ * is set, into the primitive slots, so that the primitive accessors read it
+ * without parsing; other Objects are parsed from their String form on every
+ * read.  The properties can be visited with {@link #forEach(SlotVisitor)},
+ * which does not allocate.
+ * <p>
+ * Like MapConfiguration, a SlotMapConfiguration is not synchronized; it
+ * should be populated before it is shared between threads.
+ */
+public final class SlotMapConfiguration implements TypedConfiguration {
+  
+  /*
+   * Kinds of values stored in a slot
+   */
+  private static final byte UNSET = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte OBJECT = 3;
+  private static final byte BOOLEAN = 4;
+  
+  /*
+   * The primitive forms into which a String value was parsed when it was set
+   */
+  private static final byte PARSED_LONG = 1;
+  private static final byte PARSED_DOUBLE = 2;
+  private static final byte PARSED_BOOLEAN = 4;
+  
+  /*
+   * 
+   */
+  private final Layout layout;
+  
+  /*
+   * The kind of value stored in each slot
+   */
+  private final byte[] kinds;
+  
+  /*
+   * The integral and boolean values, in their slots
+   */
+  private final long[] longs;
+  
+  /*
+   * The floating point values, in their slots
+   */
+  private final double[] doubles;
+  
+  /*
+   * All other values, in their slots
+   */
+  private final Object[] objects;
+  
+  /*
+   * The PARSED_ flags of the String value in each slot
+   */
+  private final byte[] parsed;
+
+  /**
+   * Create an empty configuration with the provided layout.
+   * 
+   * @param layout the Layout that assigns the slots of the properties
+   */
+  public SlotMapConfiguration(Layout layout) {
+    
+    if (layout==null) {
+      
+      throw new IllegalArgumentException("layout must not be null");
+    }
+    
+    this.layout = layout;
+    this.kinds = new byte[layout.size()];
+    this.longs = new long[layout.size()];
+    this.doubles = new double[layout.size()];
+    this.objects = new Object[layout.size()];
+    this.parsed = new byte[layout.size()];
+  }
+  
+  /**
+   * Get the layout of this configuration.
+   * 
+   * @return the Layout
+   */
+  public Layout getLayout() {
+    
+    return layout;
+  }
+  
+  /**
+   * Resolve a property name to its slot.
+   * 
+   * @param key the property name
+   * @return the slot of the property, or -1 if the layout has no such property
+   */
+  public int slot(String key) {
+    
+    return layout.slot(key);
+  }
+  
+  /**
+   * Set an integral property.
+   * 
+   * @param slot the slot of the property
+   * @param value the property value
+   */
+  public void setLong(int slot, long value) {
+    
+    kinds[slot] = LONG;
+    longs[slot] = value;
+    objects[slot] = null;
+  }
+  
+  /**
+   * Set a boolean property.
+   * 
+   * @param slot the slot of the property
+   * @param value the property value
+   */
+  public void setBoolean(int slot, boolean value) {
+    
+    kinds[slot] = BOOLEAN;
+    longs[slot] = value ? 1 : 0;
+    objects[slot] = null;
+  }
+  
+  /**
+   * Set a floating point property.
+   * 
+   * @param slot the slot of the property
+   * @param value the property value
+   */
+  public void setDouble(int slot, double value) {
+    
+    kinds[slot] = DOUBLE;
+    doubles[slot] = value;
+    objects[slot] = null;
+  }
+  
+  /**
+   * Set a property.  Integral, floating point and boolean values are unboxed
+   * into their primitive slots, and a String value is parsed into them as
+   * well; a null value clears the property.
+   * 
+   * @param slot the slot of the property
+   * @param value the property value, or null
+   */
+  public void set(int slot, Object value) {
+    
+    if (value instanceof Long || value instanceof Integer ||
+        value instanceof Short || value instanceof Byte) {
+      
+      setLong(slot, ((Number) value).longValue());
+      
+    } else if (value instanceof Double || value instanceof Float) {
+      
+      setDouble(slot, ((Number) value).doubleValue());
+      
+    } else if (value instanceof Boolean) {
+      
+      setBoolean(slot, (Boolean) value);
+      
+    } else {
+      
+      kinds[slot] = value==null ? UNSET : OBJECT;
+      objects[slot] = value;
+      parsed[slot] = value instanceof String ? parse(slot, (String) value) : 0;
+    }
+  }
+  
+  /**
+   * Set a property by name.
+   * 
+   * @param key the property name
+   * @param value the property value, or null
+   * @throws IllegalArgumentException if the layout has no such property
+   */
+  public void set(String key, Object value) {
+    
+    int slot = layout.slot(key);
+    
+    if (slot<0) {
+      
+      throw new IllegalArgumentException("Property " + key + " is not in the layout");
+    }
+    
+    set(slot, value);
+  }
+  
+  /**
+   * Whether a property is set.
+   * 
+   * @param slot the slot of the property
+   * @return true if the property is set
+   */
+  public boolean isSet(int slot) {
+    
+    return kinds[slot]!=UNSET;
+  }
+  
+  /**
+   * Get an integral property.  A value set as an Object other than a String
+   * is parsed on every read.
+   * 
+   * @param slot the slot of the property
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not
+   *         integral
+   */
+  public long getLong(int slot) throws ConfigurationException {
+    
+    switch (kinds[slot]) {
+      
+      case LONG:
+        return longs[slot];
+      case OBJECT:
+        return (parsed[slot] & PARSED_LONG)!=0 ? longs[slot] :
+            ConfigurationUtil.parseLong(layout.key(slot), objects[slot].toString());
+      case DOUBLE:
+      case BOOLEAN:
+        throw invalid(slot, "a long");
+      default:
+        throw missing(slot);
+    }
+  }
+  
+  /**
+   * Get an integral property, or a default value if it is not set.
+   * 
+   * @param slot the slot of the property
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not integral
+   */
+  public long getLong(int slot, long defaultValue) throws ConfigurationException {
+    
+    return kinds[slot]==LONG ? longs[slot] :
+        kinds[slot]==UNSET ? defaultValue : getLong(slot);
+  }
+  
+  /**
+   * Get a floating point property.  Integral values are widened; a value set
+   * as an Object other than a String is parsed on every read.
+   * 
+   * @param slot the slot of the property
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not a
+   *         number
+   */
+  public double getDouble(int slot) throws ConfigurationException {
+    
+    switch (kinds[slot]) {
+      
+      case DOUBLE:
+        return doubles[slot];
+      case LONG:
+        return longs[slot];
+      case OBJECT:
+        return (parsed[slot] & PARSED_DOUBLE)!=0 ? doubles[slot] :
+            ConfigurationUtil.parseDouble(layout.key(slot), objects[slot].toString());
+      case BOOLEAN:
+        throw invalid(slot, "a double");
+      default:
+        throw missing(slot);
+    }
+  }
+  
+  /**
+   * Get a floating point property, or a default value if it is not set.
+   * 
+   * @param slot the slot of the property
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not a number
+   */
+  public double getDouble(int slot, double defaultValue) throws ConfigurationException {
+    
+    return kinds[slot]==DOUBLE ? doubles[slot] :
+        kinds[slot]==UNSET ? defaultValue : getDouble(slot);
+  }
+  
+  /**
+   * Get a boolean property.  A value set as an Object other than a String is
+   * parsed on every read.
+   * 
+   * @param slot the slot of the property
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not a
+   *         boolean
+   */
+  public boolean getBoolean(int slot) throws ConfigurationException {
+    
+    switch (kinds[slot]) {
+      
+      case BOOLEAN:
+        return longs[slot]!=0;
+      case OBJECT:
+        return (parsed[slot] & PARSED_BOOLEAN)!=0 ? longs[slot]!=0 :
+            ConfigurationUtil.parseBoolean(layout.key(slot), objects[slot].toString());
+      case LONG:
+      case DOUBLE:
+        throw invalid(slot, "a boolean");
+      default:
+        throw missing(slot);
+    }
+  }
+  
+  /**
+   * Get a boolean property, or a default value if it is not set.
+   * 
+   * @param slot the slot of the property
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not a boolean
+   */
+  public boolean getBoolean(int slot, boolean defaultValue) throws ConfigurationException {
+    
+    return kinds[slot]==BOOLEAN ? longs[slot]!=0 :
+        kinds[slot]==UNSET ? defaultValue : getBoolean(slot);
+  }
+  
+  /**
+   * Get a property set as an Object.
+   * 
+   * @param slot the slot of the property
+   * @return the property value, or null if the property is not set or holds
+   *         a primitive
+   */
+  public Object getObject(int slot) {
+    
+    return objects[slot];
+  }
+  
+  /**
+   * Get the String form of a property.  Primitive values are converted to a
+   * new String.
+   * 
+   * @param slot the slot of the property
+   * @return the String form of the property value, or null if the property
+   *         is not set
+   */
+  public String getProperty(int slot) {
+    
+    switch (kinds[slot]) {
+      
+      case LONG:
+        return Long.toString(longs[slot]);
+      case DOUBLE:
+        return Double.toString(doubles[slot]);
+      case BOOLEAN:
+        return longs[slot]!=0 ? "true" : "false";
+      case OBJECT:
+        return objects[slot].toString();
+      default:
+        return null;
+    }
+  }
+  
+  /**
+   * Visit every set property, in slot order, without allocating.
+   * 
+   * @param visitor the SlotVisitor to call for each property
+   */
+  public void forEach(SlotVisitor visitor) {
+    
+    for (int slot = 0; slot<kinds.length; slot++) {
+      
+      switch (kinds[slot]) {
+        
+        case LONG:
+          visitor.visitLong(slot, layout.key(slot), longs[slot]);
+          break;
+        case DOUBLE:
+          visitor.visitDouble(slot, layout.key(slot), doubles[slot]);
+          break;
+        case BOOLEAN:
+          visitor.visitBoolean(slot, layout.key(slot), longs[slot]!=0);
+          break;
+        case OBJECT:
+          visitor.visitObject(slot, layout.key(slot), objects[slot]);
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getProperty(java.lang.String)
+   */
+  @Override
+  public String getProperty(String key) {
+    
+    int slot = layout.slot(key);
+    
+    return slot<0 ? null : getProperty(slot);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String)
+   */
+  @Override
+  public long getLong(String key) throws ConfigurationException {
+    
+    int slot = layout.slot(key);
+    
+    if (slot<0) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return getLong(slot);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String)
+   */
+  @Override
+  public int getInt(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.toInt(key, getLong(key));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getLong(java.lang.String, long)
+   */
+  @Override
+  public long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    int slot = layout.slot(key);
+    
+    return slot<0 ? defaultValue : getLong(slot, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getInt(java.lang.String, int)
+   */
+  @Override
+  public int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    return ConfigurationUtil.toInt(key, getLong(key, defaultValue));
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String)
+   */
+  @Override
+  public boolean getBoolean(String key) throws ConfigurationException {
+    
+    int slot = layout.slot(key);
+    
+    if (slot<0) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return getBoolean(slot);
+  }
+
+  /* (non-Javadoc)
+   * @see net.yannaccone.pattern.factory.TypedConfiguration#getBoolean(java.lang.String, boolean)
+   */
+  @Override
+  public boolean getBoolean(String key, boolean defaultValue)
+      throws ConfigurationException {
+    
+    int slot = layout.slot(key);
+    
+    return slot<0 ? defaultValue : getBoolean(slot, defaultValue);
+  }
+  
+  /**
+   * Get the names of the properties that are set, in slot order.
+   * 
+   * @return a new Set of the property names
+   */
+  @Override
+  public Set<String> stringPropertyNames() {
+    
+    Set<String> names = new LinkedHashSet<>();
+    
+    for (int slot = 0; slot<kinds.length; slot++) {
+      
+      if (kinds[slot]!=UNSET) {
+        
+        names.add(layout.key(slot));
+      }
+    }
+    
+    return names;
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    StringBuilder builder = new StringBuilder("{");
+    
+    for (int slot = 0; slot<kinds.length; slot++) {
+      
+      if (kinds[slot]!=UNSET) {
+        
+        if (builder.length()>1) {
+          
+          builder.append(", ");
+        }
+        
+        builder.append(layout.key(slot)).append('=').append(getProperty(slot));
+      }
+    }
+    
+    return builder.append('}').toString();
+  }
+  
+  /*
+   * Parse a String value into the primitive slots, returning the PARSED_
+   * flags of the forms it has.  A value that is not a boolean and does not
+   * start like a number is not parsed, so that the common String values do
+   * not throw; the accessors parse a value with no parsed form on every read.
+   */
+  private byte parse(int slot, String value) {
+    
+    String trimmed = value.trim();
+    
+    if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("false")) {
+      
+      longs[slot] = trimmed.length()==4 ? 1 : 0;
+      return PARSED_BOOLEAN;
+    }
+    
+    char first = trimmed.isEmpty() ? ' ' : trimmed.charAt(0);
+    
+    if (first!='-' && first!='+' && first!='.' && (first<'0' || first>'9')) {
+      
+      return 0;
+    }
+    
+    try {
+      
+      longs[slot] = Long.parseLong(trimmed);
+      doubles[slot] = longs[slot];
+      return PARSED_LONG | PARSED_DOUBLE;
+      
+    } catch (NumberFormatException e) {
+      
+      // Not integral; it may still be floating point
+    }
+    
+    try {
+      
+      doubles[slot] = Double.parseDouble(trimmed);
+      return PARSED_DOUBLE;
+      
+    } catch (NumberFormatException e) {
+      
+      return 0;
+    }
+  }
+  
+  /*
+   * Create the exception reporting a primitive value of the wrong kind.
+   */
+  private ConfigurationException invalid(int slot, String expected) {
+    
+    return new ConfigurationException("Invalid value '" + getProperty(slot) +
+        "' of property " + layout.key(slot) + "; expected " + expected);
+  }
+  
+  /*
+   * Create the exception reporting a missing property.
+   */
+  private ConfigurationException missing(int slot) {
+    
+    return new ConfigurationException("Missing required property " + layout.key(slot));
+  }
+  
+  /**
+   * An immutable assignment of property names to slots, shared by every
+   * SlotMapConfiguration with the same set of properties.
+   */
+  public static final class Layout {
+    
+    /*
+     * The property names, by slot
+     */
+    private final String[] keys;
+    
+    /*
+     * The slot of each property name
+     */
+    private final Map<String, Integer> slots;
+    
+    /*
+     * 
+     */
+    private Layout(String[] keys, Map<String, Integer> slots) {
+      
+      this.keys = keys;
+      this.slots = slots;
+    }
+    
+    /**
+     * Create a layout that assigns slots to the property names in order.
+     * 
+     * @param keys the property names; duplicates are assigned a single slot
+     * @return the Layout
+     */
+    public static Layout of(String... keys) {
+      
+      Set<String> names = new LinkedHashSet<>(Arrays.asList(keys));
+      Map<String, Integer> slots = new HashMap<>();
+      
+      for (String name : names) {
+        
+        if (name==null) {
+          
+          throw new IllegalArgumentException("keys must not contain null");
+        }
+        
+        slots.put(name, slots.size());
+      }
+      
+      return new Layout(names.toArray(new String[names.size()]),
+          Collections.unmodifiableMap(slots));
+    }
+    
+    /**
+     * Resolve a property name to its slot.
+     * 
+     * @param key the property name
+     * @return the slot of the property, or -1 if there is no such property
+     */
+    public int slot(String key) {
+      
+      Integer slot = slots.get(key);
+      
+      return slot==null ? -1 : slot;
+    }
+    
+    /**
+     * Get the property name of a slot.
+     * 
+     * @param slot the slot
+     * @return the property name
+     */
+    public String key(int slot) {
+      
+      return keys[slot];
+    }
+    
+    /**
+     * Get the number of slots.
+     * 
+     * @return the number of slots
+     */
+    public int size() {
+      
+      return keys.length;
+    }
+  }
+  
+  /**
+   * Receives the properties of a SlotMapConfiguration from
+   * {@link SlotMapConfiguration#forEach(SlotVisitor)}, with each value passed
+   * in its stored kind.
+   */
+  public interface SlotVisitor {
+    
+    /**
+     * Visit an integral property.
+     * 
+     * @param slot the slot of the property
+     * @param key the property name
+     * @param value the property value
+     */
+    void visitLong(int slot, String key, long value);
+    
+    /**
+     * Visit a floating point property.
+     * 
+     * @param slot the slot of the property
+     * @param key the property name
+     * @param value the property value
+     */
+    void visitDouble(int slot, String key, double value);
+    
+    /**
+     * Visit any other property.
+     * 
+     * @param slot the slot of the property
+     * @param key the property name
+     * @param value the property value
+     */
+    void visitObject(int slot, String key, Object value);
+    
+    /**
+     * Visit a boolean property.  By default it is visited as an Object, with
+     * a cached Boolean.
+     * 
+     * @param slot the slot of the property
+     * @param key the property name
+     * @param value the property value
+     */
+    default void visitBoolean(int slot, String key, boolean value) {
+      
+      visitObject(slot, key, Boolean.valueOf(value));
+    }
+  }
+
+}
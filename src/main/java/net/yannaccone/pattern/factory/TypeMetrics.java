@@ -0,0 +1,165 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one implementation class of a factory: the number of
+ * instances created and of failed creations, and the latencies of
+ * constructing and of configuring its instances.  The latency of
+ * construction covers the Configuration constructor of an implementation
+ * that declares one, which configures the instance in the same step.
+ */
+public final class TypeMetrics {
+  
+  /*
+   * 
+   */
+  private final Class<?> implementation;
+  
+  /*
+   * The type Strings the implementation was first created with
+   */
+  private final String type;
+  
+  /*
+   * 
+   */
+  private final LongAdder failures = new LongAdder();
+  
+  /*
+   * 
+   */
+  private final LatencyHistogram constructLatency = new LatencyHistogram();
+  
+  /*
+   * 
+   */
+  private final LatencyHistogram configureLatency = new LatencyHistogram();
+
+  /*
+   * 
+   */
+  TypeMetrics(Class<?> implementation, String type) {
+    
+    this.implementation = implementation;
+    this.type = type;
+  }
+  
+  /**
+   * Get the name of the implementation class.
+   * 
+   * @return the class name
+   */
+  public String getImplementation() {
+    
+    return implementation.getName();
+  }
+  
+  /**
+   * Get the type Strings of the implementation, separated by colons.
+   * 
+   * @return the type Strings
+   */
+  public String getType() {
+    
+    return type;
+  }
+  
+  /**
+   * Get the number of instances created.
+   * 
+   * @return the number of instances
+   */
+  public long getCreated() {
+    
+    // Every created instance records one construction latency
+    return constructLatency.getCount();
+  }
+  
+  /**
+   * Get the number of creations that failed while constructing or
+   * configuring an instance.
+   * 
+   * @return the number of failures
+   */
+  public long getFailures() {
+    
+    return failures.sum();
+  }
+  
+  /**
+   * Get the latencies of constructing instances.
+   * 
+   * @return the LatencyHistogram
+   */
+  public LatencyHistogram getConstructLatency() {
+    
+    return constructLatency;
+  }
+  
+  /**
+   * Get the latencies of configuring instances; empty for implementations
+   * configured by their constructor, and for factories that do not
+   * configure.
+   * 
+   * @return the LatencyHistogram
+   */
+  public LatencyHistogram getConfigureLatency() {
+    
+    return configureLatency;
+  }
+  
+  /**
+   * Get the implementation class.
+   * 
+   * @return the implementation class
+   */
+  public Class<?> implementationClass() {
+    
+    return implementation;
+  }
+  
+  /*
+   * Record an instance created in one step, by its constructor alone.
+   */
+  void created(long constructNanos) {
+    
+    constructLatency.record(constructNanos);
+  }
+  
+  /*
+   * Record an instance constructed and then configured.
+   */
+  void created(long constructNanos, long configureNanos) {
+    
+    constructLatency.record(constructNanos);
+    configureLatency.record(configureNanos);
+  }
+  
+  /*
+   * Record a failed creation.
+   */
+  void failed() {
+    
+    failures.increment();
+  }
+
+}
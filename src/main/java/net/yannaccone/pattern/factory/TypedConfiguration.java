@@ -0,0 +1,261 @@
+/**
+ * Copyright 2018 - Yannaccone Holdings, LLC.
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.factory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Configuration whose properties can be read by String name, either as
+ * Strings or converted to typed values.  Every accessor that takes no default
+ * value throws a ConfigurationException if the property is not set, and every
+ * accessor throws a ConfigurationException if the property value cannot be
+ * converted; the accepted formats are those of the parse methods of
+ * {@link net.yannaccone.pattern.factory.ConfigurationUtil ConfigurationUtil}.
+ * <p>
+ * The default methods parse the String value on every call.  Implementations
+ * that can do so cache the converted values instead, so that a value is
+ * parsed once however often it is read.
+ */
+public interface TypedConfiguration extends Configuration {
+
+  /**
+   * Get the value of a property.
+   * 
+   * @param key the property name
+   * @return the property value, or null if the property is not set
+   */
+  String getProperty(String key);
+  
+  /**
+   * Get the value of a property, or a default value if the property is not
+   * set.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   */
+  default String getProperty(String key, String defaultValue) {
+    
+    String value = getProperty(key);
+    
+    return value==null ? defaultValue : value;
+  }
+  
+  /**
+   * Get the names of the properties that are set.
+   * 
+   * @return a Set of the property names
+   */
+  Set<String> stringPropertyNames();
+  
+  /**
+   * Get the value of a required property as an int.
+   * 
+   * @param key the property name
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not an int
+   */
+  default int getInt(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseInt(key, require(key));
+  }
+  
+  /**
+   * Get the value of a property as an int.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not an int
+   */
+  default int getInt(String key, int defaultValue) throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getInt(key);
+  }
+  
+  /**
+   * Get the value of a required property as a long.
+   * 
+   * @param key the property name
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not a long
+   */
+  default long getLong(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseLong(key, require(key));
+  }
+  
+  /**
+   * Get the value of a property as a long.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not a long
+   */
+  default long getLong(String key, long defaultValue) throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getLong(key);
+  }
+  
+  /**
+   * Get the value of a required property as a boolean.
+   * 
+   * @param key the property name
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not a
+   *         boolean
+   */
+  default boolean getBoolean(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseBoolean(key, require(key));
+  }
+  
+  /**
+   * Get the value of a property as a boolean.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not a boolean
+   */
+  default boolean getBoolean(String key, boolean defaultValue) throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getBoolean(key);
+  }
+  
+  /**
+   * Get the value of a required property as a Duration.
+   * 
+   * @param key the property name
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or is not a
+   *         duration
+   */
+  default Duration getDuration(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseDuration(key, require(key));
+  }
+  
+  /**
+   * Get the value of a property as a Duration.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property is not a duration
+   */
+  default Duration getDuration(String key, Duration defaultValue)
+      throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getDuration(key);
+  }
+  
+  /**
+   * Get the value of a required property as a number of bytes.
+   * 
+   * @param key the property name
+   * @return the property value in bytes
+   * @throws ConfigurationException if the property is not set or is not a
+   *         size
+   */
+  default long getBytes(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseBytes(key, require(key));
+  }
+  
+  /**
+   * Get the value of a property as a number of bytes.
+   * 
+   * @param key the property name
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value in bytes, or defaultValue if the property is
+   *         not set
+   * @throws ConfigurationException if the property is not a size
+   */
+  default long getBytes(String key, long defaultValue) throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getBytes(key);
+  }
+  
+  /**
+   * Get the value of a required property as a constant of an enum type.
+   * 
+   * @param <E> the enum type
+   * @param key the property name
+   * @param enumType the Class of the enum type
+   * @return the property value
+   * @throws ConfigurationException if the property is not set or does not
+   *         name a constant of the enum type
+   */
+  default <E extends Enum<E>> E getEnum(String key, Class<E> enumType)
+      throws ConfigurationException {
+    
+    return ConfigurationUtil.parseEnum(key, require(key), enumType);
+  }
+  
+  /**
+   * Get the value of a property as a constant of an enum type.
+   * 
+   * @param <E> the enum type
+   * @param key the property name
+   * @param enumType the Class of the enum type
+   * @param defaultValue the value to return if the property is not set
+   * @return the property value, or defaultValue if the property is not set
+   * @throws ConfigurationException if the property does not name a constant
+   *         of the enum type
+   */
+  default <E extends Enum<E>> E getEnum(String key, Class<E> enumType, E defaultValue)
+      throws ConfigurationException {
+    
+    return getProperty(key)==null ? defaultValue : getEnum(key, enumType);
+  }
+  
+  /**
+   * Get the value of a property as a list of comma separated Strings.
+   * 
+   * @param key the property name
+   * @return an unmodifiable List of the trimmed, non-empty elements of the
+   *         property value; empty if the property is not set
+   * @throws ConfigurationException never by the default implementation;
+   *         declared for implementations that validate their values
+   */
+  default List<String> getList(String key) throws ConfigurationException {
+    
+    return ConfigurationUtil.parseList(key, getProperty(key));
+  }
+  
+  /*
+   * Get the value of a required property.
+   */
+  private String require(String key) throws ConfigurationException {
+    
+    String value = getProperty(key);
+    
+    if (value==null) {
+      
+      throw new ConfigurationException("Missing required property " + key);
+    }
+    
+    return value;
+  }
+
+}
@@ -18,5 +18,24 @@
  */
 /**
  * A generalized abstract factory pattern implementation.
+ * <p>
+ * The base factories record Flight Recorder events in the "Pattern"
+ * category: net.yannaccone.pattern.factory.RegistryBuild when a factory
+ * indexes its implementations, and net.yannaccone.pattern.factory.Create
+ * and net.yannaccone.pattern.factory.Configure for each create call.  The
+ * Create and Configure events are disabled by default; enable them in the
+ * settings of a recording, for example with
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start settings=profile +net.yannaccone.pattern.factory.Create#enabled=true
+ * </pre>
+ * on Java 17 or later, or with a custom .jfc file.
+ * <p>
+ * Factories also keep
+ * {@link net.yannaccone.pattern.factory.FactoryMetrics FactoryMetrics} once
+ * their enableMetrics method is called: counts of created instances,
+ * failures and misses, and histograms of construct and configure latency per
+ * implementation, published as MXBeans and through
+ * {@link net.yannaccone.pattern.factory.MetricsExporter MetricsExporter}
+ * services until their disableMetrics method is called.
  */
 package net.yannaccone.pattern.factory;
\ No newline at end of file
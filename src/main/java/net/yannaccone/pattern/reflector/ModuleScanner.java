@@ -0,0 +1,284 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+
+/**
+ * Scans the named modules of a ModuleLayer and its parents for annotated
+ * classes, as the Reflector does on the module path instead of scanning
+ * classpath URLs.  Only the packages within the root packages that a module
+ * exports to the module of the Reflector are read, through the ModuleReader
+ * of the module, so modules without such packages are never opened.
+ * Packages that lie within the root packages but are not exported are
+ * skipped and their modules listed as excluded in the {@link ScanReport},
+ * as are the modules that the classloader and jar levels of the
+ * {@link ScanFilter} exclude.
+ * <p>
+ * Class files are read with javassist, and their runtime visible class
+ * annotations recorded, as Reflections does.
+ */
+final class ModuleScanner {
+  
+  /*
+   * 
+   */
+  private ModuleScanner() {
+  }
+  
+  /*
+   * Scan a layer and its parents for the annotated classes within the
+   * provided root packages that a filter accepts.
+   */
+  static ScanReport scan(ModuleLayer layer, boolean reload, ScanFilter filter,
+      String... reflectorPackages) {
+    
+    Instant startTime = Instant.now();
+    long start = System.nanoTime();
+    Module framework = ModuleScanner.class.getModule();
+    List<ScanReport.UrlScan> urlScans = new ArrayList<>();
+    Set<String> excludedUrls = new LinkedHashSet<>();
+    Map<String, Set<String>> annotated = new TreeMap<>();
+    
+    for (Module module : modules(layer)) {
+      
+      Set<String> packages = new TreeSet<>();
+      boolean unexported = false;
+      
+      for (String modulePackage : module.getPackages()) {
+        
+        if (!within(modulePackage, reflectorPackages)) {
+          
+          continue;
+        }
+        
+        if (module.isExported(modulePackage, framework)) {
+          
+          packages.add(modulePackage);
+          
+        } else {
+          
+          unexported = true;
+        }
+      }
+      
+      ModuleReference reference = module.getLayer().configuration()
+          .findModule(module.getName()).get().reference();
+      String location = reference.location().map(URI::toString)
+          .orElse("module:" + module.getName());
+      
+      if (!packages.isEmpty() && !accepts(filter, module, location)) {
+        
+        packages.clear();
+        unexported = true;
+      }
+      
+      if (unexported) {
+        
+        excludedUrls.add(location);
+      }
+      
+      if (!packages.isEmpty()) {
+        
+        urlScans.add(scan(reference, location, packages, filter, annotated));
+      }
+    }
+    
+    return new ScanReport(Arrays.asList(reflectorPackages), reload, false, startTime,
+        System.nanoTime() - start, urlScans, new ArrayList<>(excludedUrls), annotated);
+  }
+  
+  /*
+   * Check whether a filter accepts a module by its classloader and, if it
+   * is packaged as a jar, by the name of the jar.
+   */
+  private static boolean accepts(ScanFilter filter, Module module, String location) {
+    
+    if (!filter.acceptsClassLoader(module.getClassLoader())) {
+      
+      return false;
+    }
+    
+    try {
+      
+      return !location.startsWith("file:") || filter.acceptsUrl(URI.create(location).toURL());
+      
+    } catch (MalformedURLException | IllegalArgumentException e) {
+      
+      return true;
+    }
+  }
+  
+  /*
+   * Scan the provided packages of a module.
+   */
+  private static ScanReport.UrlScan scan(ModuleReference reference, String location,
+      Set<String> packages, ScanFilter filter, Map<String, Set<String>> annotated) {
+    
+    ScanUrlEvent event = new ScanUrlEvent();
+    event.begin();
+    
+    ScanReport.UrlScan urlScan = new ScanReport.UrlScan(location);
+    long allocated = ScanRecorder.allocatedBytes();
+    long start = System.nanoTime();
+    
+    try (ModuleReader reader = reference.open();
+        Stream<String> resources = reader.list()) {
+      
+      for (String resource : (Iterable<String>) resources::iterator) {
+        
+        if (!resource.endsWith(".class") || resource.endsWith("module-info.class")) {
+          
+          continue;
+        }
+        
+        String className = resource.substring(0, resource.length() - ".class".length())
+            .replace('/', '.');
+        int dot = className.lastIndexOf('.');
+        
+        if (dot<0 || !packages.contains(className.substring(0, dot)) ||
+            !filter.acceptsClass(className)) {
+          
+          continue;
+        }
+        
+        byte[] bytes;
+        
+        try (InputStream in = reader.open(resource).get()) {
+          
+          bytes = in.readAllBytes();
+        }
+        
+        urlScan.classes++;
+        urlScan.bytes += bytes.length;
+        record(new ClassFile(new DataInputStream(new ByteArrayInputStream(bytes))), urlScan,
+            annotated);
+      }
+      
+    } catch (IOException | UncheckedIOException e) {
+      
+      // Skip an unreadable module, as Reflections skips an unreadable URL
+      urlScan.failed = true;
+      event.failed = true;
+    }
+    
+    urlScan.durationNanos = System.nanoTime() - start;
+    
+    long allocatedNow = ScanRecorder.allocatedBytes();
+    urlScan.allocatedBytes = allocated<0 || allocatedNow<0 ? -1L : allocatedNow - allocated;
+    
+    if (event.shouldCommit()) {
+      
+      event.url = location;
+      event.commit();
+    }
+    
+    return urlScan;
+  }
+  
+  /*
+   * Record the runtime visible annotations of a class.
+   */
+  private static void record(ClassFile classFile, ScanReport.UrlScan urlScan,
+      Map<String, Set<String>> annotated) {
+    
+    AnnotationsAttribute attribute = (AnnotationsAttribute) classFile
+        .getAttribute(AnnotationsAttribute.visibleTag);
+    
+    if (attribute==null || attribute.getAnnotations().length==0) {
+      
+      return;
+    }
+    
+    for (Annotation annotation : attribute.getAnnotations()) {
+      
+      annotated.computeIfAbsent(annotation.getTypeName(), a -> new TreeSet<>())
+          .add(classFile.getName());
+      urlScan.annotations.merge(annotation.getTypeName(), 1, Integer::sum);
+    }
+    
+    urlScan.annotatedTypes++;
+  }
+  
+  /*
+   * Get the named modules of a layer and its parents, each once.
+   */
+  private static Set<Module> modules(ModuleLayer layer) {
+    
+    Set<Module> modules = new LinkedHashSet<>();
+    List<ModuleLayer> pending = new ArrayList<>();
+    Set<ModuleLayer> seen = new LinkedHashSet<>();
+    
+    pending.add(layer);
+    
+    while (!pending.isEmpty()) {
+      
+      ModuleLayer current = pending.remove(0);
+      
+      if (seen.add(current)) {
+        
+        modules.addAll(current.modules().stream()
+            .sorted((a, b) -> a.getName().compareTo(b.getName()))
+            .collect(Collectors.toList()));
+        pending.addAll(current.parents());
+      }
+    }
+    
+    return modules;
+  }
+  
+  /*
+   * Check whether a package lies within one of the provided root packages.
+   */
+  private static boolean within(String modulePackage, String... reflectorPackages) {
+    
+    for (String reflectorPackage : reflectorPackages) {
+      
+      if (reflectorPackage.isEmpty() || modulePackage.equals(reflectorPackage) ||
+          modulePackage.startsWith(reflectorPackage + ".")) {
+        
+        return true;
+      }
+    }
+    
+    return false;
+  }
+
+}
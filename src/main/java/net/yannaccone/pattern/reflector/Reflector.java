@@ -16,25 +16,67 @@
  */
 package net.yannaccone.pattern.reflector;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.SwitchPoint;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
-import org.reflections.Reflections;
-import org.reflections.scanners.TypeAnnotationsScanner;
 import org.reflections.util.ClasspathHelper;
 import org.reflections.util.ConfigurationBuilder;
 
 /**
- * A utility class that initializes and maintains a singleton instance of
- * Reflections.  This eliminates the need to rescan classes every time
- * Reflections needs to be used.
+ * A utility class that scans the classpath once with Reflections and
+ * maintains an index of the annotated classes it found.  This eliminates
+ * the need to rescan classes every time annotated classes are needed.
  * <p>
  * The Reflector requires a base package name to serve as the root of the
  * package hierarchy that will be scanned.  If not provided, the Reflector
  * will use a default root package.
+ * <p>
+ * Each scan is associated with a SwitchPoint that is invalidated when the
+ * scan is replaced by {@link #reload(String...) reload}.  Anything derived
+ * from a scan, such as the implementation registries of the factories, can
+ * check or guard on that SwitchPoint to detect that it is stale.
+ * <p>
+ * Each scan is recorded as a net.yannaccone.pattern.reflector.Scan Flight
+ * Recorder event, and the scan of each classpath URL within it as a
+ * net.yannaccone.pattern.reflector.ScanUrl event, and summarized in a
+ * {@link ScanReport} available from {@link #getScanReport() getScanReport}.
+ * <p>
+ * Index resources generated at build time by
+ * {@link ReflectorIndexGenerator} let the Reflector read the annotated
+ * classes instead of scanning the classpath, which makes it work in a
+ * GraalVM native image.  They are used when the root packages lie within
+ * those of the index resources, in a native image or when the system
+ * property net.yannaccone.pattern.reflector.index is true; setting it to
+ * false ignores them in a native image too.  Since an index resource only
+ * describes the jars it was generated from, the property should be set only
+ * when every jar within the root packages is indexed.  Only the classes
+ * within the root packages are read from the index, and a reload scans
+ * again, except in a native image.
+ * <p>
+ * When the Reflector is itself in a named module, it scans the named
+ * modules of its ModuleLayer, reading only the packages within the root
+ * packages that each module exports to it, and then the classpath for the
+ * classes of the unnamed module, skipping the jars of the named modules.  An
+ * application module makes its implementations visible with a qualified
+ * export such as exports com.acme.codecs to net.yannaccone.pattern.  Other
+ * layers, such as those of plugins, are scanned with
+ * {@link #initialize(ModuleLayer, String...) initialize(ModuleLayer, String...)}.
  */
 public final class Reflector {
 
@@ -44,9 +86,46 @@ public final class Reflector {
   private static final String DEFAULT_REFLECTION_PACKAGE = "net.yannaccone";
   
   /*
-   * The singleton instance of Reflections
+   * The system property that enables the index resources when true, or
+   * disables them in a native image when false
+   */
+  private static final String INDEX_PROPERTY = "net.yannaccone.pattern.reflector.index";
+  
+  /*
+   * The index of the current scan
    */
-  private static Reflections reflections;
+  private static volatile ReflectorIndex index;
+  
+  /*
+   * The ModuleLayer of the current scan, or null if it scanned the classpath
+   */
+  private static volatile ModuleLayer layer;
+  
+  /*
+   * The system property set to "runtime" in a GraalVM native image
+   */
+  private static final String IMAGE_CODE_PROPERTY = "org.graalvm.nativeimage.imagecode";
+  
+  /*
+   * The index resources, or null if there are none or they are not enabled;
+   * read on the first scan
+   */
+  private static ReflectorIndex bakedIndex;
+  
+  /*
+   * Whether the index resources have been read
+   */
+  private static boolean bakedIndexRead;
+  
+  /*
+   * The SwitchPoint of the current scan
+   */
+  private static volatile SwitchPoint switchPoint = new SwitchPoint();
+  
+  /*
+   * The report of the current scan
+   */
+  private static volatile ScanReport scanReport;
 
   /**
    * Find and return a collection of Classes that have the specified annotationType
@@ -58,9 +137,61 @@ public final class Reflector {
   public static final Collection<Class<?>> resolveAnnotatedClass(
       Class<? extends Annotation> annotationType) {
 
-    initialize();
+    ReflectorIndex current = index;
+    
+    if (current==null) {
+      
+      initialize();
+      current = index;
+    }
+    
+    ScanReport report = scanReport;
+    
+    if (report!=null) {
+      
+      report.resolved(annotationType.getName());
+    }
 
-    return reflections.getTypesAnnotatedWith(annotationType);
+    Set<Class<?>> annotated = new HashSet<>();
+    
+    for (String className : current.annotatedWith(annotationType.getName())) {
+      
+      Class<?> annotatedClass = loadClass(className);
+      
+      if (annotatedClass!=null) {
+        
+        annotated.add(annotatedClass);
+      }
+    }
+    
+    return annotated;
+  }
+  
+  /**
+   * Get the SwitchPoint of the current scan.  The SwitchPoint is invalidated
+   * when the scan is replaced by {@link #reload(String...) reload}.  Callers
+   * that cache results derived from the scan must obtain the SwitchPoint
+   * before reading the scan.
+   * 
+   * @return the SwitchPoint of the current scan
+   */
+  public static final SwitchPoint getSwitchPoint() {
+    
+    return switchPoint;
+  }
+ 
+  /**
+   * Get the report of the current scan: the time taken and the classes found
+   * by classpath URL and by annotation, the URLs that hold no annotated
+   * class and the root packages that hold no class with an annotation
+   * resolved by a factory.
+   * 
+   * @return the ScanReport, or null if the Reflector has not been
+   *         initialized
+   */
+  public static final ScanReport getScanReport() {
+    
+    return scanReport;
   }
  
   /**
@@ -101,13 +232,11 @@ public final class Reflector {
    */
   public static synchronized final void initialize() {
 
-      if (reflections!=null) {
+      if (index!=null) {
           return;
       }
 
-      reflections = new Reflections(new ConfigurationBuilder()
-          .setUrls(ClasspathHelper.forPackage(DEFAULT_REFLECTION_PACKAGE))
-          .setScanners(new TypeAnnotationsScanner()));
+      index = scan(false, ScanFilter.none(), defaultLayer(), DEFAULT_REFLECTION_PACKAGE);
   }
 
   /**
@@ -121,18 +250,460 @@ public final class Reflector {
    */
   public static synchronized final void initialize(String... reflectorPackages) {
 
-      if (reflections!=null) {
+      if (index!=null) {
           return;
       }
       
+      index = scan(false, ScanFilter.none(), defaultLayer(), reflectorPackages);
+  }
+
+  /**
+   * Scan the specified package hierarchies within the scope of the provided
+   * filter to build a cache of all the annotated classes.  Like the other
+   * initialize methods, this has no effect once the Reflector has been
+   * initialized.
+   * 
+   * @param filter the ScanFilter limiting the URLs and classes scanned
+   * @param reflectorPackages a variable-length array of String
+   *        representations of the root packages in the hierarchies that the
+   *        Reflector will scan.
+   */
+  public static synchronized final void initialize(ScanFilter filter,
+      String... reflectorPackages) {
+
+      if (filter==null) {
+          throw new IllegalArgumentException("Parameter filter cannot be null");
+      }
+      
+      if (index!=null) {
+          return;
+      }
+      
+      index = scan(false, filter, defaultLayer(), reflectorPackages);
+  }
+
+  /**
+   * Scan the specified package hierarchies of the named modules of the
+   * provided ModuleLayer and its parents to build a cache of all the
+   * annotated classes.  Like the other initialize methods, this has no
+   * effect once the Reflector has been initialized.
+   * 
+   * @param moduleLayer the ModuleLayer to scan
+   * @param reflectorPackages a variable-length array of String
+   *        representations of the root packages in the hierarchies that the
+   *        Reflector will scan.
+   */
+  public static synchronized final void initialize(ModuleLayer moduleLayer,
+      String... reflectorPackages) {
+
+      if (moduleLayer==null) {
+          throw new IllegalArgumentException("Parameter moduleLayer cannot be null");
+      }
+      
+      if (index!=null) {
+          return;
+      }
+      
+      index = scan(false, ScanFilter.none(), moduleLayer, reflectorPackages);
+  }
+
+  /**
+   * Replace the cache of annotated classes with a new scan of the default
+   * package hierarchy.  See {@link #reload(String...) reload} for details.
+   */
+  public static final void reload() {
+    
+      reload(DEFAULT_REFLECTION_PACKAGE);
+  }
+
+  /**
+   * Replace the cache of annotated classes with a new scan of the specified
+   * package hierarchies, and invalidate the SwitchPoint of the previous scan
+   * so that results derived from it are discarded.  Unlike initialize, this
+   * method always scans, and ignores the index resources outside of a native
+   * image.
+   * 
+   * @param reflectorPackages a variable-length array of String
+   *        representations of the root packages in the hierarchies that the
+   *        Reflector will scan.
+   */
+  public static synchronized final void reload(String... reflectorPackages) {
+    
+      reload(ScanFilter.none(), reflectorPackages);
+  }
+
+  /**
+   * Replace the cache of annotated classes with a new scan of the specified
+   * package hierarchies within the scope of the provided filter.  See
+   * {@link #reload(String...) reload} for details.
+   * 
+   * @param filter the ScanFilter limiting the URLs and classes scanned
+   * @param reflectorPackages a variable-length array of String
+   *        representations of the root packages in the hierarchies that the
+   *        Reflector will scan.
+   */
+  public static synchronized final void reload(ScanFilter filter,
+      String... reflectorPackages) {
+    
+      if (filter==null) {
+          throw new IllegalArgumentException("Parameter filter cannot be null");
+      }
+      
+      replace(scan(true, filter, defaultLayer(), reflectorPackages));
+  }
+
+  /**
+   * Replace the cache of annotated classes with a new scan of the specified
+   * package hierarchies of the named modules of the provided ModuleLayer and
+   * its parents.  See {@link #reload(String...) reload} for details.
+   * 
+   * @param moduleLayer the ModuleLayer to scan
+   * @param reflectorPackages a variable-length array of String
+   *        representations of the root packages in the hierarchies that the
+   *        Reflector will scan.
+   */
+  public static synchronized final void reload(ModuleLayer moduleLayer,
+      String... reflectorPackages) {
+    
+      if (moduleLayer==null) {
+          throw new IllegalArgumentException("Parameter moduleLayer cannot be null");
+      }
+      
+      replace(scan(true, ScanFilter.none(), moduleLayer, reflectorPackages));
+  }
+  
+  /*
+   * Replace the current index and invalidate the SwitchPoint of the previous
+   * scan.
+   */
+  private static void replace(ReflectorIndex scanned) {
+    
+      index = scanned;
+      
+      SwitchPoint previous = switchPoint;
+      switchPoint = new SwitchPoint();
+      SwitchPoint.invalidateAll(new SwitchPoint[] { previous });
+  }
+  
+  /*
+   * Scan the specified package hierarchies within the scope of a filter,
+   * from the index resources if they cover the package hierarchies of the
+   * default scope and otherwise from the ModuleLayer or, if it is null, the
+   * classpath, recording the scan as a Flight Recorder event and in the
+   * ScanReport.
+   */
+  private static ReflectorIndex scan(boolean reload, ScanFilter filter,
+      ModuleLayer moduleLayer, String... reflectorPackages) {
+      
+      ScanEvent event = new ScanEvent();
+      event.begin();
+      
+      ReflectorIndex baked = moduleLayer==defaultLayer() && (!reload || inNativeImage())
+          ? bakedIndex() : null;
+      ReflectorIndex scanned;
+      
+      layer = moduleLayer;
+      
+      if (baked!=null && baked.covers(reflectorPackages)) {
+        
+        Instant startTime = Instant.now();
+        long start = System.nanoTime();
+        
+        scanned = baked.select(filter, reflectorPackages);
+        scanReport = new ScanReport(Arrays.asList(reflectorPackages), reload, true, startTime,
+            System.nanoTime() - start, Collections.<ScanReport.UrlScan>emptyList(),
+            Collections.<String>emptyList(), scanned.getAnnotated());
+        
+      } else {
+        
+        scanReport = scanSource(reload, filter, moduleLayer, reflectorPackages);
+        scanned = new ReflectorIndex(scanReport.getPackages(), scanReport.getAnnotations());
+      }
+      
+      if (event.shouldCommit()) {
+        
+        event.packages = String.join(",", reflectorPackages);
+        event.urls = scanReport.getUrls().size();
+        event.reload = reload;
+        event.commit();
+      }
+      
+      return scanned;
+  }
+  
+  /*
+   * Scan the specified package hierarchies within the scope of a filter in
+   * the named modules of a ModuleLayer, or on the classpath if the
+   * ModuleLayer is null.
+   */
+  static ScanReport scanSource(boolean reload, ScanFilter filter, ModuleLayer moduleLayer,
+      String... reflectorPackages) {
+    
+      if (moduleLayer==null) {
+        return scanClasspath(reload, filter, Collections.<String>emptySet(), reflectorPackages);
+      }
+      
+      ScanReport modules = ModuleScanner.scan(moduleLayer, reload, filter, reflectorPackages);
+      
+      if (moduleLayer!=defaultLayer()) {
+        return modules;
+      }
+      
+      // The application may still be on the classpath when the framework is
+      // on the module path, so scan the classpath too, less the jars of the
+      // named modules that were scanned or excluded
+      Set<String> modulePaths = new HashSet<>();
+      for (ScanReport.UrlScan urlScan : modules.getUrls()) {
+        modulePaths.add(path(urlScan.getUrl()));
+      }
+      for (String excludedUrl : modules.getExcludedUrls()) {
+        modulePaths.add(path(excludedUrl));
+      }
+      
+      return merge(modules, scanClasspath(reload, filter, modulePaths, reflectorPackages));
+  }
+  
+  /*
+   * Merge the ScanReport of a module scan with that of the classpath scan
+   * that followed it.
+   */
+  private static ScanReport merge(ScanReport modules, ScanReport classpath) {
+    
+      List<ScanReport.UrlScan> urls = new ArrayList<>(modules.getUrls());
+      urls.addAll(classpath.getUrls());
+      
+      Set<String> excludedUrls = new LinkedHashSet<>(modules.getExcludedUrls());
+      excludedUrls.addAll(classpath.getExcludedUrls());
+      
+      Map<String, Set<String>> annotated = new TreeMap<>();
+      for (ScanReport report : Arrays.asList(modules, classpath)) {
+        for (Map.Entry<String, List<String>> entry : report.getAnnotations().entrySet()) {
+          annotated.computeIfAbsent(entry.getKey(), key -> new TreeSet<>())
+              .addAll(entry.getValue());
+        }
+      }
+      
+      return new ScanReport(modules.getPackages(), modules.isReload(), false,
+          modules.getStartTime(), modules.getDurationNanos() + classpath.getDurationNanos(),
+          urls, new ArrayList<>(excludedUrls), annotated);
+  }
+  
+  /*
+   * The file path of a URL or module location, without the jar: scheme, so
+   * that the URL of a jar on the classpath matches its module location.
+   */
+  private static String path(String location) {
+    
+      String path = location.startsWith("jar:") ? location.substring("jar:".length()) : location;
+      
+      if (path.contains("!/")) {
+        path = path.substring(0, path.indexOf("!/"));
+      }
+      
+      try {
+        URI uri = new URI(path);
+        return uri.getPath()!=null ? uri.getPath() : path;
+      } catch (URISyntaxException e) {
+        return path;
+      }
+  }
+  
+  /*
+   * The ModuleLayer of the Reflector if it is in a named module, otherwise
+   * null to scan the classpath.
+   */
+  static ModuleLayer defaultLayer() {
+    
+      Module module = Reflector.class.getModule();
+      
+      return module.isNamed() ? module.getLayer() : null;
+  }
+  
+  /*
+   * Scan the classpath URLs of the specified package hierarchies within the
+   * scope of a filter, less those whose file paths are skipped, recording the
+   * scan of each URL as a Flight Recorder event.
+   */
+  static ScanReport scanClasspath(boolean reload, ScanFilter filter, Set<String> skippedPaths,
+      String... reflectorPackages) {
+      
+      Instant startTime = Instant.now();
+      long start = System.nanoTime();
+      ScanRecorder recorder = new ScanRecorder();
+      
       Set<URL> packageUrls = new HashSet<>();
+      Set<String> excludedUrls = new LinkedHashSet<>();
       for (String reflectorPackage : reflectorPackages) {
-        packageUrls.addAll(ClasspathHelper.forPackage(reflectorPackage));
+        resolveUrls(filter, reflectorPackage, skippedPaths, packageUrls, excludedUrls);
       }
 
-      reflections = new Reflections(new ConfigurationBuilder()
+      // The ScanRecorder collects the annotated classes, so the Reflections
+      // store is not needed once the scan completes
+      ConfigurationBuilder configuration = new ConfigurationBuilder()
           .setUrls(packageUrls)
-          .setScanners(new TypeAnnotationsScanner()));
+          .setScanners(recorder);
+      
+      if (filter!=ScanFilter.none()) {
+        // Reflections checks the inputs filter before a scanner reads the
+        // class file
+        configuration.filterInputsBy(filter::acceptsInput);
+      }
+      
+      new ScanningReflections(configuration);
+      
+      return new ScanReport(Arrays.asList(reflectorPackages), reload, false, startTime,
+          System.nanoTime() - start, recorder.getUrlScans(), new ArrayList<>(excludedUrls),
+          recorder.getAnnotated());
+  }
+  
+  /*
+   * Read the index resources visible to the context classloader on first
+   * use, unless they are disabled.
+   */
+  private static ReflectorIndex bakedIndex() {
+      
+      if (!bakedIndexRead) {
+        
+        String enabled = System.getProperty(INDEX_PROPERTY);
+        
+        if (inNativeImage() ? !"false".equalsIgnoreCase(enabled)
+            : "true".equalsIgnoreCase(enabled)) {
+          try {
+            bakedIndex = ReflectorIndex.load(classLoader());
+          } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + ReflectorIndex.RESOURCE, e);
+          }
+        }
+        
+        bakedIndexRead = true;
+      }
+      
+      return bakedIndex;
+  }  
+  /*
+   * Whether the Reflector runs in a GraalVM native image, where the
+   * classpath cannot be scanned.
+   */
+  private static boolean inNativeImage() {
+    
+      return System.getProperty(IMAGE_CODE_PROPERTY)!=null;
+  }
+
+  
+  /*
+   * Load an annotated class through the context classloader, falling back to
+   * the classloader of the Reflector; null if neither can load it, as
+   * Reflections skips such classes.
+   */
+  private static Class<?> loadClass(String className) {
+      
+      ModuleLayer moduleLayer = layer;
+      
+      if (moduleLayer!=null) {
+        
+        Module module = findModule(moduleLayer, packageOf(className));
+        Class<?> annotatedClass = module==null ? null : Class.forName(module, className);
+        
+        if (annotatedClass!=null) {
+          return annotatedClass;
+        }
+      }
+      
+      ClassLoader context = classLoader();
+      
+      try {
+        return Class.forName(className, false, context);
+      } catch (ClassNotFoundException | LinkageError e) {
+        // Try the classloader of the Reflector
+      }
+      
+      try {
+        return context==Reflector.class.getClassLoader() ? null
+            : Class.forName(className, false, Reflector.class.getClassLoader());
+      } catch (ClassNotFoundException | LinkageError e) {
+        return null;
+      }
+  }  
+  /*
+   * Find the named module of a ModuleLayer or its parents that contains a
+   * package.
+   */
+  private static Module findModule(ModuleLayer moduleLayer, String packageName) {
+    
+      for (Module module : moduleLayer.modules()) {
+        
+        if (module.getPackages().contains(packageName)) {
+          return module;
+        }
+      }
+      
+      for (ModuleLayer parent : moduleLayer.parents()) {
+        
+        Module module = findModule(parent, packageName);
+        
+        if (module!=null) {
+          return module;
+        }
+      }
+      
+      return null;
+  }
+  
+  /*
+   * The package name of a binary class name.
+   */
+  private static String packageOf(String className) {
+    
+      int dot = className.lastIndexOf('.');
+      
+      return dot<0 ? "" : className.substring(0, dot);
+  }
+
+  
+  /*
+   * Get the context classloader, or the classloader of the Reflector if
+   * there is none.
+   */
+  private static ClassLoader classLoader() {
+      
+      ClassLoader context = Thread.currentThread().getContextClassLoader();
+      
+      return context==null ? Reflector.class.getClassLoader() : context;
+  }
+  
+  /*
+   * Resolve the URLs of a root package through the classloaders of a
+   * filter, ignoring those whose file paths are skipped, and adding those the
+   * filter accepts to urls and the others to excludedUrls.
+   */
+  private static void resolveUrls(ScanFilter filter, String reflectorPackage,
+      Set<String> skippedPaths, Set<URL> urls, Set<String> excludedUrls) {
+      
+      List<ClassLoader> loaders = filter.getClassLoaders();
+      Collection<URL> resolved = loaders.isEmpty()
+          ? ClasspathHelper.forPackage(reflectorPackage)
+          : ClasspathHelper.forPackage(reflectorPackage, loaders.toArray(new ClassLoader[0]));
+      
+      // The URLs an excluded classloader adds to those of its parent
+      Set<URL> excludedOwn = new HashSet<>();
+      for (ClassLoader excluded : filter.getExcludedClassLoaders()) {
+        Set<URL> own = new HashSet<>(ClasspathHelper.forPackage(reflectorPackage, excluded));
+        if (excluded.getParent()!=null) {
+          own.removeAll(ClasspathHelper.forPackage(reflectorPackage, excluded.getParent()));
+        }
+        excludedOwn.addAll(own);
+      }
+      
+      for (URL url : resolved) {
+        if (!skippedPaths.isEmpty() && skippedPaths.contains(path(url.toExternalForm()))) {
+          continue;
+        }
+        if (!excludedOwn.contains(url) && filter.acceptsUrl(url)) {
+          urls.add(url);
+        } else {
+          excludedUrls.add(url.toExternalForm());
+        }
+      }
   }
 
 }
@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The names of the annotated classes found within a set of root packages,
+ * by annotation name.  The Reflector resolves annotated classes from the
+ * index of its current scan, which is either built by scanning the
+ * classpath or loaded from index resources generated at build time by
+ * {@link ReflectorIndexGenerator}.
+ * <p>
+ * An index resource is a properties file holding the root packages under
+ * the key "packages", separated by commas, and the annotated classes of
+ * each annotation under the annotation name prefixed with "@", also
+ * separated by commas.  Index resources are encoded in UTF-8.
+ */
+final class ReflectorIndex {
+  
+  /*
+   * The name of the index resources
+   */
+  static final String RESOURCE = "META-INF/net.yannaccone.pattern/reflector.index";
+  
+  /*
+   * The key of the root packages in an index resource
+   */
+  private static final String PACKAGES = "packages";
+  
+  /*
+   * The prefix of the keys of the annotations in an index resource
+   */
+  private static final String ANNOTATION = "@";
+  
+  /*
+   * 
+   */
+  private final List<String> packages;
+  
+  /*
+   * The sorted names of the annotated classes, by annotation name
+   */
+  private final Map<String, Set<String>> annotated;
+
+  /*
+   * 
+   */
+  ReflectorIndex(List<String> packages, Map<String, ? extends Collection<String>> annotated) {
+    
+    this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+    
+    Map<String, Set<String>> copy = new TreeMap<>();
+    
+    for (Map.Entry<String, ? extends Collection<String>> entry : annotated.entrySet()) {
+      
+      copy.put(entry.getKey(), Collections.unmodifiableSet(new TreeSet<>(entry.getValue())));
+    }
+    
+    this.annotated = Collections.unmodifiableMap(copy);
+  }
+  
+  /*
+   * Load and merge the index resources visible to a classloader.
+   */
+  static ReflectorIndex load(ClassLoader loader) throws IOException {
+    
+    Set<String> packages = new TreeSet<>();
+    Map<String, Set<String>> annotated = new TreeMap<>();
+    Enumeration<URL> resources = loader.getResources(RESOURCE);
+    boolean found = false;
+    
+    while (resources.hasMoreElements()) {
+      
+      Properties properties = new Properties();
+      
+      try (InputStream in = resources.nextElement().openStream()) {
+        
+        properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+      }
+      
+      found = true;
+      packages.addAll(split(properties.getProperty(PACKAGES)));
+      
+      for (String key : properties.stringPropertyNames()) {
+        
+        if (key.startsWith(ANNOTATION)) {
+          
+          annotated.computeIfAbsent(key.substring(ANNOTATION.length()), k -> new TreeSet<>())
+              .addAll(split(properties.getProperty(key)));
+        }
+      }
+    }
+    
+    return found ? new ReflectorIndex(new ArrayList<>(packages), annotated) : null;
+  }
+  
+  /*
+   * Get the root packages of the index.
+   */
+  List<String> getPackages() {
+    
+    return packages;
+  }
+  
+  /*
+   * Get the sorted names of the annotated classes, by annotation name.
+   */
+  Map<String, Set<String>> getAnnotated() {
+    
+    return annotated;
+  }
+  
+  /*
+   * Get the names of the classes annotated with an annotation.
+   */
+  Set<String> annotatedWith(String annotation) {
+    
+    Set<String> classNames = annotated.get(annotation);
+    
+    return classNames==null ? Collections.<String>emptySet() : classNames;
+  }
+  
+  /*
+   * Check whether every one of the provided root packages lies within a
+   * root package of the index.
+   */
+  boolean covers(String... reflectorPackages) {
+    
+    for (String reflectorPackage : reflectorPackages) {
+      
+      boolean covered = false;
+      
+      for (String indexed : packages) {
+        
+        if (indexed.isEmpty() || reflectorPackage.equals(indexed) ||
+            reflectorPackage.startsWith(indexed + ".")) {
+          
+          covered = true;
+          break;
+        }
+      }
+      
+      if (!covered) {
+        
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  /*
+   * Restrict the index to the classes within the provided root packages
+   * that a filter accepts.  Only the package globs of the filter apply, as
+   * the index has no URLs.
+   */
+  ReflectorIndex select(ScanFilter filter, String... reflectorPackages) {
+    
+    Map<String, Set<String>> selected = new TreeMap<>();
+    
+    for (Map.Entry<String, Set<String>> entry : annotated.entrySet()) {
+      
+      for (String className : entry.getValue()) {
+        
+        if (within(className, reflectorPackages) && filter.acceptsClass(className)) {
+          
+          selected.computeIfAbsent(entry.getKey(), k -> new TreeSet<>()).add(className);
+        }
+      }
+    }
+    
+    return new ReflectorIndex(Arrays.asList(reflectorPackages), selected);
+  }
+  
+  /*
+   * Check whether a class lies within one of the provided root packages.
+   */
+  private static boolean within(String className, String... reflectorPackages) {
+    
+    for (String reflectorPackage : reflectorPackages) {
+      
+      if (reflectorPackage.isEmpty() || className.startsWith(reflectorPackage + ".")) {
+        
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /*
+   * Write the index as an index resource.
+   */
+  void write(Writer out) throws IOException {
+    
+    out.write("# Generated by " + ReflectorIndexGenerator.class.getName() + "\n");
+    out.write(PACKAGES + "=" + String.join(",", packages) + "\n");
+    
+    for (Map.Entry<String, Set<String>> entry : annotated.entrySet()) {
+      
+      // Class names need no escaping in a properties file
+      out.write(ANNOTATION + entry.getKey() + "=" + String.join(",", entry.getValue()) + "\n");
+    }
+    
+    out.flush();
+  }
+  
+  /*
+   * Split a comma separated value, ignoring empty elements.
+   */
+  private static List<String> split(String value) {
+    
+    List<String> elements = new ArrayList<>();
+    
+    if (value!=null) {
+      
+      for (String element : value.split(",")) {
+        
+        if (!element.trim().isEmpty()) {
+          
+          elements.add(element.trim());
+        }
+      }
+    }
+    
+    return elements;
+  }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates, at build time, the resources that let the Reflector run without
+ * scanning the classpath, as it must in a GraalVM native image.  Run it on
+ * the classpath of the application after compiling, with the directory of
+ * the generated resources and the root packages the factories scan:
+ * <pre>
+ * java -cp &lt;classpath&gt; net.yannaccone.pattern.reflector.ReflectorIndexGenerator \
+ *     build/generated/reflector com.acme
+ * </pre>
+ * and add that directory to the resources packaged with the application.
+ * It writes:
+ * <ul>
+ * <li>META-INF/net.yannaccone.pattern/reflector.index, the annotated classes
+ * by annotation, which the Reflector reads instead of scanning when it
+ * covers the root packages of a scan, in a native image or when the system
+ * property net.yannaccone.pattern.reflector.index is true</li>
+ * <li>META-INF/native-image/net.yannaccone.pattern/reflector/reflect-config.json,
+ * which registers the annotations for reflection, and the constructors of
+ * the annotated classes for the factories to instantiate and to bind
+ * Configuration constructors to</li>
+ * <li>META-INF/native-image/net.yannaccone.pattern/reflector/resource-config.json,
+ * which includes the index in the image</li>
+ * </ul>
+ * native-image reads the configuration files from the classpath without
+ * further options.  Lazy proxies generate classes at run time and are not
+ * supported in a native image.
+ */
+public final class ReflectorIndexGenerator {
+  
+  /*
+   * The directory of the native-image configuration files
+   */
+  private static final String NATIVE_IMAGE_DIRECTORY =
+      "META-INF/native-image/net.yannaccone.pattern/reflector";
+
+  /*
+   * 
+   */
+  private ReflectorIndexGenerator() {
+  }
+  
+  /**
+   * Generate the resources.
+   * 
+   * @param args the output directory, followed by the root packages to scan
+   * @throws IOException if a resource cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    
+    if (args.length<2) {
+      
+      System.err.println("Usage: " + ReflectorIndexGenerator.class.getName() +
+          " <output directory> <root package>...");
+      System.exit(2);
+    }
+    
+    ScanReport report = generate(Paths.get(args[0]),
+        Arrays.copyOfRange(args, 1, args.length));
+    
+    // No factory resolves annotations here, so report the root packages
+    // that hold none of each annotation
+    System.out.println("Indexed " + report.getAnnotations().size() + " annotations in " +
+        report.getUrls().size() + " URLs");
+    
+    for (String annotationName : report.getAnnotations().keySet()) {
+      
+      System.out.println("  " + annotationName + ": unmatched packages " +
+          report.getUnmatchedPackages(annotationName));
+    }
+  }
+  
+  /**
+   * Scan the classpath, or the module layer of the Reflector when it is in a
+   * named module, for the provided root packages and write the index
+   * and native-image configuration resources under the output directory.
+   * The scan ignores any index resources already on the classpath.
+   * 
+   * @param outputDirectory the directory to write the resources to
+   * @param reflectorPackages the root packages to scan
+   * @return the ScanReport of the scan
+   * @throws IOException if a resource cannot be written
+   */
+  public static ScanReport generate(Path outputDirectory, String... reflectorPackages)
+      throws IOException {
+    
+    if (outputDirectory==null || reflectorPackages==null || reflectorPackages.length==0) {
+      
+      throw new IllegalArgumentException(
+          "An output directory and at least one root package are required");
+    }
+    
+    ScanReport report = Reflector.scanSource(false, ScanFilter.none(),
+        Reflector.defaultLayer(), reflectorPackages);
+    ReflectorIndex index = new ReflectorIndex(report.getPackages(), report.getAnnotations());
+    
+    try (Writer out = writer(outputDirectory.resolve(ReflectorIndex.RESOURCE))) {
+      
+      index.write(out);
+    }
+    
+    try (Writer out = writer(outputDirectory.resolve(NATIVE_IMAGE_DIRECTORY)
+        .resolve("reflect-config.json"))) {
+      
+      writeReflectConfig(out, index);
+    }
+    
+    try (Writer out = writer(outputDirectory.resolve(NATIVE_IMAGE_DIRECTORY)
+        .resolve("resource-config.json"))) {
+      
+      out.write("{\n  \"resources\": {\n    \"includes\": [\n      {\"pattern\": \"\\\\Q" +
+          ReflectorIndex.RESOURCE + "\\\\E\"}\n    ]\n  }\n}\n");
+    }
+    
+    return report;
+  }
+  
+  /*
+   * Write the reflection configuration of the annotations and annotated
+   * classes of an index.
+   */
+  private static void writeReflectConfig(Writer out, ReflectorIndex index) throws IOException {
+    
+    Map<String, Set<String>> annotated = index.getAnnotated();
+    
+    Set<String> classNames = new TreeSet<>();
+    
+    for (Set<String> annotatedClasses : annotated.values()) {
+      
+      classNames.addAll(annotatedClasses);
+    }
+    
+    // An annotation may itself be annotated, and then needs both
+    Set<String> names = new TreeSet<>(annotated.keySet());
+    names.addAll(classNames);
+    
+    String separator = "\n";
+    
+    out.write("[");
+    
+    for (String name : names) {
+      
+      out.write(separator + "  {\"name\": \"" + name + "\"");
+      
+      if (annotated.containsKey(name)) {
+        
+        out.write(", \"allDeclaredMethods\": true");
+      }
+      
+      if (classNames.contains(name)) {
+        
+        out.write(", \"allDeclaredConstructors\": true, \"allPublicConstructors\": true");
+      }
+      
+      out.write("}");
+      separator = ",\n";
+    }
+    
+    out.write("\n]\n");
+  }
+  
+  /*
+   * Open a UTF-8 writer on a new file, creating its directory.
+   */
+  private static Writer writer(Path file) throws IOException {
+    
+    Files.createDirectories(file.getParent());
+    
+    return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning a scan of the Reflector, from the
+ * resolution of the root packages to their URLs to the end of the scan of
+ * the last URL.
+ */
+@Name("net.yannaccone.pattern.reflector.Scan")
+@Label("Reflector Scan")
+@Category({"Pattern", "Reflector"})
+@Description("A scan of the classpath for annotated classes")
+@StackTrace(false)
+final class ScanEvent extends jdk.jfr.Event {
+  
+  /*
+   * 
+   */
+  @Label("Packages")
+  @Description("The root packages scanned, separated by commas")
+  String packages;
+  
+  /*
+   * 
+   */
+  @Label("URLs")
+  @Description("The number of classpath URLs scanned")
+  int urls;
+  
+  /*
+   * 
+   */
+  @Label("Reload")
+  @Description("Whether the scan replaced a previous scan")
+  boolean reload;
+
+}
@@ -0,0 +1,507 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Limits the scope of a scan of the Reflector, for classpaths where the
+ * root packages are shared with jars that hold nothing of interest.  A
+ * filter works at three levels, each applied before any class file is read:
+ * <ul>
+ * <li>by classloader; the URLs of the root packages are resolved through
+ * the included classloaders only, and URLs that an excluded classloader
+ * adds to those of its parent are skipped.  On the module path, modules
+ * defined by an excluded classloader, or by a classloader that none of the
+ * included classloaders delegates to, are skipped</li>
+ * <li>by jar name; jars whose file name matches an excluded pattern, or no
+ * included pattern, are skipped without being opened, whether on the
+ * classpath or as modules.  Directories are not affected</li>
+ * <li>by package; class files whose package matches an excluded glob, or no
+ * included glob, are skipped without being read</li>
+ * </ul>
+ * Excludes win over includes, and an empty list of includes includes
+ * everything.
+ * <p>
+ * Package globs match package names: * matches within one package name,
+ * ** matches across package names, and a trailing .** also matches the
+ * package itself, so com.acme.** matches com.acme and every package below
+ * it.  Jar patterns match file names, such as vendor-*.jar, where * matches
+ * any run of characters and ? a single character.
+ */
+public final class ScanFilter {
+  
+  /*
+   * The filter that accepts everything
+   */
+  private static final ScanFilter NONE = builder().build();
+  
+  /*
+   * 
+   */
+  private final List<Pattern> includedPackages;
+  
+  /*
+   * 
+   */
+  private final List<Pattern> excludedPackages;
+  
+  /*
+   * 
+   */
+  private final List<Pattern> includedJars;
+  
+  /*
+   * 
+   */
+  private final List<Pattern> excludedJars;
+  
+  /*
+   * 
+   */
+  private final List<ClassLoader> classLoaders;
+  
+  /*
+   * 
+   */
+  private final List<ClassLoader> excludedClassLoaders;
+  
+  /*
+   * 
+   */
+  private ScanFilter(Builder builder) {
+    
+    this.includedPackages = Collections.unmodifiableList(new ArrayList<>(builder.includedPackages));
+    this.excludedPackages = Collections.unmodifiableList(new ArrayList<>(builder.excludedPackages));
+    this.includedJars = Collections.unmodifiableList(new ArrayList<>(builder.includedJars));
+    this.excludedJars = Collections.unmodifiableList(new ArrayList<>(builder.excludedJars));
+    this.classLoaders = Collections.unmodifiableList(new ArrayList<>(builder.classLoaders));
+    this.excludedClassLoaders = Collections.unmodifiableList(
+        new ArrayList<>(builder.excludedClassLoaders));
+  }
+  
+  /**
+   * Get the filter that accepts everything, which is the filter of a scan
+   * that is not given one.
+   * 
+   * @return the ScanFilter
+   */
+  public static ScanFilter none() {
+    
+    return NONE;
+  }
+  
+  /**
+   * Create a new Builder.
+   * 
+   * @return a new, empty Builder
+   */
+  public static Builder builder() {
+    
+    return new Builder();
+  }
+  
+  /**
+   * Get the classloaders the URLs of the root packages are resolved through.
+   * 
+   * @return an unmodifiable List of the classloaders; empty to use the
+   *         context and Reflections classloaders
+   */
+  public List<ClassLoader> getClassLoaders() {
+    
+    return classLoaders;
+  }
+  
+  /**
+   * Get the classloaders whose own URLs are skipped.
+   * 
+   * @return an unmodifiable List of the classloaders
+   */
+  public List<ClassLoader> getExcludedClassLoaders() {
+    
+    return excludedClassLoaders;
+  }
+  
+  /**
+   * Check whether the filter accepts a URL by its jar name.  URLs that are
+   * not jars are accepted.
+   * 
+   * @param url the URL
+   * @return true if the URL is to be scanned
+   */
+  public boolean acceptsUrl(URL url) {
+    
+    String name = jarName(url);
+    
+    return name==null || accepts(name, includedJars, excludedJars);
+  }
+  
+  /**
+   * Check whether the filter accepts a class by its package.
+   * 
+   * @param className the fully qualified name of the class
+   * @return true if the class is to be scanned
+   */
+  public boolean acceptsClass(String className) {
+    
+    int dot = className.lastIndexOf('.');
+    
+    return accepts(dot<0 ? "" : className.substring(0, dot), includedPackages,
+        excludedPackages);
+  }
+  
+  /*
+   * Check whether the filter accepts the classloader of a module: one that
+   * is not excluded and that an included classloader delegates to.  The
+   * bootstrap classloader, null, is visible to every classloader.
+   */
+  boolean acceptsClassLoader(ClassLoader loader) {
+    
+    if (loader!=null && excludedClassLoaders.contains(loader)) {
+      
+      return false;
+    }
+    
+    if (loader==null || classLoaders.isEmpty()) {
+      
+      return true;
+    }
+    
+    for (ClassLoader included : classLoaders) {
+      
+      for (ClassLoader parent = included; parent!=null; parent = parent.getParent()) {
+        
+        if (parent==loader) {
+          
+          return true;
+        }
+      }
+    }
+    
+    return false;
+  }
+  
+  /*
+   * Check whether the filter accepts an input of a scan: a path within a URL
+   * with its slashes replaced by dots.  Inputs other than class files are
+   * left to the scanners.
+   */
+  boolean acceptsInput(String input) {
+    
+    return !input.endsWith(".class") ||
+        acceptsClass(input.substring(0, input.length() - ".class".length()));
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return "ScanFilter[includedPackages=" + includedPackages + ", excludedPackages=" +
+        excludedPackages + ", includedJars=" + includedJars + ", excludedJars=" +
+        excludedJars + ", classLoaders=" + classLoaders + ", excludedClassLoaders=" +
+        excludedClassLoaders + "]";
+  }
+  
+  /*
+   * Check a name against lists of included and excluded patterns.
+   */
+  private static boolean accepts(String name, List<Pattern> included, List<Pattern> excluded) {
+    
+    for (Pattern pattern : excluded) {
+      
+      if (pattern.matcher(name).matches()) {
+        
+        return false;
+      }
+    }
+    
+    if (included.isEmpty()) {
+      
+      return true;
+    }
+    
+    for (Pattern pattern : included) {
+      
+      if (pattern.matcher(name).matches()) {
+        
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /*
+   * Get the file name of the jar of a URL, or null if the URL is not a jar.
+   */
+  private static String jarName(URL url) {
+    
+    String location = url.toExternalForm();
+    
+    if (location.startsWith("jar:") && location.contains("!/")) {
+      
+      location = location.substring(0, location.indexOf("!/"));
+      
+    } else if (location.endsWith("/") || !location.toLowerCase(Locale.ROOT).endsWith(".jar")) {
+      
+      return null;
+    }
+    
+    return location.substring(location.lastIndexOf('/') + 1);
+  }
+  
+  /*
+   * Compile a package glob.
+   */
+  private static Pattern packageGlob(String glob) {
+    
+    StringBuilder regex = new StringBuilder();
+    String body = glob;
+    boolean orBelow = false;
+    
+    if (body.endsWith(".**")) {
+      
+      body = body.substring(0, body.length() - ".**".length());
+      orBelow = true;
+    }
+    
+    for (int i = 0; i < body.length(); i++) {
+      
+      char c = body.charAt(i);
+      
+      if (c=='*' && i + 1<body.length() && body.charAt(i + 1)=='*') {
+        
+        regex.append(".*");
+        i++;
+        
+      } else if (c=='*') {
+        
+        regex.append("[^.]*");
+        
+      } else if (c=='?') {
+        
+        regex.append("[^.]");
+        
+      } else {
+        
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    
+    if (orBelow) {
+      
+      regex.append("(\\..*)?");
+    }
+    
+    return Pattern.compile(regex.toString());
+  }
+  
+  /*
+   * Compile a jar name pattern.
+   */
+  private static Pattern jarGlob(String glob) {
+    
+    StringBuilder regex = new StringBuilder();
+    
+    for (int i = 0; i < glob.length(); i++) {
+      
+      char c = glob.charAt(i);
+      
+      if (c=='*') {
+        
+        regex.append(".*");
+        
+      } else if (c=='?') {
+        
+        regex.append('.');
+        
+      } else {
+        
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    
+    return Pattern.compile(regex.toString());
+  }
+  
+  /**
+   * A builder of ScanFilter instances.  A Builder is not thread safe.
+   */
+  public static final class Builder {
+    
+    /*
+     * 
+     */
+    private final List<Pattern> includedPackages = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private final List<Pattern> excludedPackages = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private final List<Pattern> includedJars = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private final List<Pattern> excludedJars = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private final List<ClassLoader> classLoaders = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private final List<ClassLoader> excludedClassLoaders = new ArrayList<>();
+    
+    /*
+     * 
+     */
+    private Builder() {
+    }
+    
+    /**
+     * Scan only classes in packages matching one of the provided globs.
+     * 
+     * @param globs the package globs
+     * @return this Builder
+     */
+    public Builder includePackages(String... globs) {
+      
+      for (String glob : checked(globs)) {
+        
+        includedPackages.add(packageGlob(glob));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Skip classes in packages matching one of the provided globs.
+     * 
+     * @param globs the package globs
+     * @return this Builder
+     */
+    public Builder excludePackages(String... globs) {
+      
+      for (String glob : checked(globs)) {
+        
+        excludedPackages.add(packageGlob(glob));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Scan only jars whose file name matches one of the provided patterns.
+     * 
+     * @param patterns the jar name patterns
+     * @return this Builder
+     */
+    public Builder includeJars(String... patterns) {
+      
+      for (String pattern : checked(patterns)) {
+        
+        includedJars.add(jarGlob(pattern));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Skip jars whose file name matches one of the provided patterns.
+     * 
+     * @param patterns the jar name patterns
+     * @return this Builder
+     */
+    public Builder excludeJars(String... patterns) {
+      
+      for (String pattern : checked(patterns)) {
+        
+        excludedJars.add(jarGlob(pattern));
+      }
+      
+      return this;
+    }
+    
+    /**
+     * Resolve the URLs of the root packages through the provided
+     * classloaders only.
+     * 
+     * @param loaders the classloaders
+     * @return this Builder
+     */
+    public Builder classLoaders(ClassLoader... loaders) {
+      
+      classLoaders.addAll(checked(loaders));
+      
+      return this;
+    }
+    
+    /**
+     * Skip the URLs that the provided classloaders add to those of their
+     * parents.
+     * 
+     * @param loaders the classloaders
+     * @return this Builder
+     */
+    public Builder excludeClassLoaders(ClassLoader... loaders) {
+      
+      excludedClassLoaders.addAll(checked(loaders));
+      
+      return this;
+    }
+    
+    /**
+     * Build a ScanFilter from the patterns and classloaders added so far.
+     * The Builder can continue to be used afterwards.
+     * 
+     * @return a new ScanFilter
+     */
+    public ScanFilter build() {
+      
+      return new ScanFilter(this);
+    }
+    
+    /*
+     * Check that none of the provided values is null.
+     */
+    private static <T> List<T> checked(T[] values) {
+      
+      if (values==null || Arrays.asList(values).contains(null)) {
+        
+        throw new IllegalArgumentException("Filter patterns and classloaders cannot be null");
+      }
+      
+      return Arrays.asList(values);
+    }
+  }
+
+}
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.reflections.scanners.AbstractScanner;
+import org.reflections.vfs.Vfs;
+
+/**
+ * A Scanner that collects the annotated classes of a scan by annotation,
+ * from which the Reflector builds its index, and records what the scan of
+ * each URL visits for the {@link ScanReport} of the scan: the class files
+ * read, their size, the memory allocated reading them, and the annotations
+ * found on the classes.
+ * {@link ScanningReflections} marks the start and end of each URL.
+ * <p>
+ * The size of the class files is only known for directories; the size of a
+ * jar is that of the jar file.
+ */
+final class ScanRecorder extends AbstractScanner {
+  
+  /*
+   * Counts the bytes allocated by a thread, if the JVM supports it
+   */
+  private static final com.sun.management.ThreadMXBean THREADS = threads();
+  
+  /*
+   * The scans of the URLs finished so far
+   */
+  private final List<ScanReport.UrlScan> urlScans = new ArrayList<>();
+  
+  /*
+   * The annotated classes found, by annotation
+   */
+  private final Map<String, TreeSet<String>> annotated = new TreeMap<>();
+  
+  /*
+   * The URL being scanned, or null between URLs
+   */
+  private ScanReport.UrlScan current;
+  
+  /*
+   * The directory of the URL being scanned, or null if it is not a directory
+   */
+  private File directory;
+  
+  /*
+   * The time the scan of the current URL started
+   */
+  private long start;
+  
+  /*
+   * The bytes allocated by the scanning thread when the current URL started,
+   * or -1 if unknown
+   */
+  private long allocated;
+
+  /* (non-Javadoc)
+   * @see org.reflections.scanners.AbstractScanner#acceptsInput(java.lang.String)
+   */
+  @Override
+  public boolean acceptsInput(String file) {
+    
+    return file.endsWith(".class");
+  }
+
+  /* (non-Javadoc)
+   * @see org.reflections.scanners.AbstractScanner#scan(org.reflections.vfs.Vfs.File, java.lang.Object)
+   */
+  @Override
+  public Object scan(Vfs.File file, Object classObject) {
+    
+    if (current!=null) {
+      
+      current.classes++;
+      
+      if (directory!=null) {
+        
+        current.bytes += new File(directory, file.getRelativePath()).length();
+      }
+    }
+    
+    return super.scan(file, classObject);
+  }
+
+  /* (non-Javadoc)
+   * @see org.reflections.scanners.AbstractScanner#scan(java.lang.Object)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public void scan(Object cls) {
+    
+    List<String> annotations = getMetadataAdapter().getClassAnnotationNames(cls);
+    
+    if (annotations.isEmpty()) {
+      
+      return;
+    }
+    
+    String className = getMetadataAdapter().getClassName(cls);
+    
+    for (String annotation : annotations) {
+      
+      annotated.computeIfAbsent(annotation, a -> new TreeSet<>()).add(className);
+      
+      if (current!=null) {
+        
+        current.annotations.merge(annotation, 1, Integer::sum);
+      }
+    }
+    
+    if (current!=null) {
+      
+      current.annotatedTypes++;
+    }
+  }
+  
+  /*
+   * Mark the start of the scan of a URL.
+   */
+  void begin(URL url) {
+    
+    current = new ScanReport.UrlScan(url.toExternalForm());
+    directory = null;
+    
+    String location = url.toExternalForm();
+    
+    if (location.startsWith("jar:") && location.contains("!/")) {
+      
+      // The jar itself, rather than the root entry within it
+      location = location.substring("jar:".length(), location.indexOf("!/"));
+    }
+    
+    if (location.startsWith("file:")) {
+      
+      try {
+        
+        File file = new File(new URI(location));
+        
+        if (file.isDirectory()) {
+          
+          directory = file;
+          
+        } else {
+          
+          current.bytes = file.length();
+        }
+        
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        
+        // Leave the size of an unusual file URL unknown
+      }
+    }
+    
+    allocated = allocatedBytes();
+    start = System.nanoTime();
+  }
+  
+  /*
+   * Mark the end of the scan of the current URL.
+   */
+  void end(boolean failed) {
+    
+    current.durationNanos = System.nanoTime() - start;
+    current.failed = failed;
+    
+    long allocatedNow = allocatedBytes();
+    current.allocatedBytes = allocated<0 || allocatedNow<0 ? -1L : allocatedNow - allocated;
+    
+    urlScans.add(current);
+    current = null;
+  }
+  
+  /*
+   * Get the scans of the URLs finished so far.
+   */
+  List<ScanReport.UrlScan> getUrlScans() {
+    
+    return urlScans;
+  }
+  
+  /*
+   * Get the annotated classes found, by annotation.
+   */
+  Map<String, TreeSet<String>> getAnnotated() {
+    
+    return annotated;
+  }
+  
+  /*
+   * Get the bytes allocated so far by the current thread, or -1 if unknown.
+   */
+  static long allocatedBytes() {
+    
+    return THREADS==null ? -1L : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+  
+  /*
+   * Get the ThreadMXBean that counts allocated bytes, if the JVM has one.
+   */
+  private static com.sun.management.ThreadMXBean threads() {
+    
+    try {
+      
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      
+      if (threads instanceof com.sun.management.ThreadMXBean &&
+          ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+        
+        return (com.sun.management.ThreadMXBean) threads;
+      }
+      
+    } catch (LinkageError e) {
+      
+      // The jdk.management module is not present
+    }
+    
+    return null;
+  }
+
+}
@@ -0,0 +1,644 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A report of one scan of the Reflector: the time the scan took, what it
+ * found in each classpath URL and the annotated classes it found by
+ * annotation, for finding which URLs and root packages make startup slow.
+ * The report of the current scan is available from
+ * {@link Reflector#getScanReport() Reflector.getScanReport}, and can be
+ * dumped as JSON with {@link #toJson() toJson}.
+ * <p>
+ * A URL is empty when none of the classes it holds is annotated.  A root
+ * package is unmatched when no class within it carries an annotation that a
+ * factory resolved from the scan, which includes a root package that is not
+ * on the classpath at all; classes carrying only other annotations, such as
+ * Deprecated, do not match it.  Both are candidates to be removed from the
+ * scan.  The resolved annotations are added as factories build their
+ * registries, so the unmatched root packages are computed on each call.
+ */
+public final class ScanReport {
+  
+  /*
+   * 
+   */
+  private final List<String> packages;
+  
+  /*
+   * 
+   */
+  private final boolean reload;
+  
+  /*
+   * Whether the scan read the index resources instead of the classpath
+   */
+  private final boolean indexed;
+  
+  /*
+   * 
+   */
+  private final Instant startTime;
+  
+  /*
+   * 
+   */
+  private final long durationNanos;
+  
+  /*
+   * 
+   */
+  private final List<UrlScan> urls;
+  
+  /*
+   * The URLs skipped by the ScanFilter of the scan
+   */
+  private final List<String> excludedUrls;
+  
+  /*
+   * The names of the annotated classes, by annotation
+   */
+  private final Map<String, List<String>> annotations;
+  
+  /*
+   * The names of the annotations resolved from the scan by factories
+   */
+  private final Set<String> resolvedAnnotations = ConcurrentHashMap.newKeySet();
+
+  /*
+   * 
+   */
+  ScanReport(List<String> packages, boolean reload, boolean indexed, Instant startTime,
+      long durationNanos, List<UrlScan> urls, List<String> excludedUrls,
+      Map<String, ? extends Collection<String>> annotated) {
+    
+    this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+    this.reload = reload;
+    this.indexed = indexed;
+    this.startTime = startTime;
+    this.durationNanos = durationNanos;
+    this.urls = Collections.unmodifiableList(new ArrayList<>(urls));
+    this.excludedUrls = Collections.unmodifiableList(new ArrayList<>(excludedUrls));
+    
+    Map<String, List<String>> annotations = new TreeMap<>();
+    
+    for (Map.Entry<String, ? extends Collection<String>> entry : annotated.entrySet()) {
+      
+      annotations.put(entry.getKey(),
+          Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+    }
+    
+    this.annotations = Collections.unmodifiableMap(annotations);
+  }
+  
+  /**
+   * Get the root packages of the scan.
+   * 
+   * @return an unmodifiable List of the root packages
+   */
+  public List<String> getPackages() {
+    
+    return packages;
+  }
+  
+  /**
+   * Check whether the scan replaced a previous scan.
+   * 
+   * @return true if the scan was a reload
+   */
+  public boolean isReload() {
+    
+    return reload;
+  }
+  
+  /**
+   * Check whether the scan read index resources generated at build time
+   * instead of scanning the classpath, in which case there are no URLs.
+   * 
+   * @return true if the scan read the index resources
+   */
+  public boolean isIndexed() {
+    
+    return indexed;
+  }
+  
+  /**
+   * Get the time the scan started.
+   * 
+   * @return the start time
+   */
+  public Instant getStartTime() {
+    
+    return startTime;
+  }
+  
+  /**
+   * Get the time the scan took, including resolving the root packages to
+   * URLs.
+   * 
+   * @return the duration in nanoseconds
+   */
+  public long getDurationNanos() {
+    
+    return durationNanos;
+  }
+  
+  /**
+   * Get the scans of the URLs, in the order they were scanned.
+   * 
+   * @return an unmodifiable List of the UrlScans
+   */
+  public List<UrlScan> getUrls() {
+    
+    return urls;
+  }
+  
+  /**
+   * Get the URLs of the root packages that the
+   * {@link ScanFilter ScanFilter} of the scan skipped.
+   * 
+   * @return an unmodifiable List of the URLs
+   */
+  public List<String> getExcludedUrls() {
+    
+    return excludedUrls;
+  }
+  
+  /**
+   * Get the names of the classes found with each annotation, including
+   * annotations no factory uses.
+   * 
+   * @return an unmodifiable Map of sorted class names by annotation name
+   */
+  public Map<String, List<String>> getAnnotations() {
+    
+    return annotations;
+  }
+  
+  /**
+   * Get the names of the annotations that factories have resolved from the
+   * scan so far.
+   * 
+   * @return a new sorted Set of the annotation names
+   */
+  public Set<String> getResolvedAnnotations() {
+    
+    return new TreeSet<>(resolvedAnnotations);
+  }
+  
+  /**
+   * Get the root packages within which no class carries an annotation that
+   * a factory has resolved from the scan so far.  Every root package is
+   * unmatched until a factory resolves an annotation.
+   * 
+   * @return a new List of the unmatched root packages
+   */
+  public List<String> getUnmatchedPackages() {
+    
+    List<String> unmatched = new ArrayList<>(packages);
+    
+    for (String annotationName : resolvedAnnotations) {
+      
+      unmatched.retainAll(getUnmatchedPackages(annotationName));
+    }
+    
+    return unmatched;
+  }
+  
+  /**
+   * Get the root packages within which no class carries an annotation, for
+   * finding the root packages that a factory does not need.
+   * 
+   * @param annotationName the name of the annotation
+   * @return a new List of the unmatched root packages
+   */
+  public List<String> getUnmatchedPackages(String annotationName) {
+    
+    List<String> classNames = annotations.getOrDefault(annotationName,
+        Collections.<String>emptyList());
+    List<String> unmatched = new ArrayList<>();
+    
+    for (String reflectorPackage : packages) {
+      
+      if (!matches(reflectorPackage, classNames)) {
+        
+        unmatched.add(reflectorPackage);
+      }
+    }
+    
+    return unmatched;
+  }
+  
+  /**
+   * Get the URLs that hold no annotated class.
+   * 
+   * @return a new List of the URLs
+   */
+  public List<String> getEmptyUrls() {
+    
+    List<String> empty = new ArrayList<>();
+    
+    for (UrlScan url : urls) {
+      
+      if (url.isEmpty()) {
+        
+        empty.add(url.getUrl());
+      }
+    }
+    
+    return empty;
+  }
+  
+  /**
+   * Get the number of classes read, across all URLs.
+   * 
+   * @return the number of classes
+   */
+  public int getClasses() {
+    
+    int classes = 0;
+    
+    for (UrlScan url : urls) {
+      
+      classes += url.getClasses();
+    }
+    
+    return classes;
+  }
+  
+  /**
+   * Write the report as a JSON object.
+   * 
+   * @param out the Appendable to write to
+   * @throws IOException if writing fails
+   */
+  public void writeJson(Appendable out) throws IOException {
+    
+    out.append("{\n  \"packages\": ");
+    writeStrings(out, packages);
+    out.append(",\n  \"reload\": ").append(String.valueOf(reload));
+    out.append(",\n  \"indexed\": ").append(String.valueOf(indexed));
+    out.append(",\n  \"startTime\": ");
+    writeString(out, startTime.toString());
+    out.append(",\n  \"durationNanos\": ").append(String.valueOf(durationNanos));
+    out.append(",\n  \"classes\": ").append(String.valueOf(getClasses()));
+    out.append(",\n  \"unmatchedPackages\": ");
+    writeStrings(out, getUnmatchedPackages());
+    out.append(",\n  \"resolvedAnnotations\": {");
+    
+    String resolvedSeparator = "";
+    
+    for (String annotationName : getResolvedAnnotations()) {
+      
+      out.append(resolvedSeparator);
+      writeString(out, annotationName);
+      out.append(": {\"unmatchedPackages\": ");
+      writeStrings(out, getUnmatchedPackages(annotationName));
+      out.append('}');
+      resolvedSeparator = ", ";
+    }
+    
+    out.append('}');
+    out.append(",\n  \"emptyUrls\": ");
+    writeStrings(out, getEmptyUrls());
+    out.append(",\n  \"excludedUrls\": ");
+    writeStrings(out, excludedUrls);
+    out.append(",\n  \"urls\": [");
+    
+    for (int i = 0; i < urls.size(); i++) {
+      
+      UrlScan url = urls.get(i);
+      
+      out.append(i==0 ? "\n    {" : ",\n    {");
+      out.append("\"url\": ");
+      writeString(out, url.getUrl());
+      out.append(", \"durationNanos\": ").append(String.valueOf(url.getDurationNanos()));
+      out.append(", \"classes\": ").append(String.valueOf(url.getClasses()));
+      out.append(", \"bytes\": ").append(String.valueOf(url.getBytes()));
+      out.append(", \"allocatedBytes\": ").append(String.valueOf(url.getAllocatedBytes()));
+      out.append(", \"annotatedTypes\": ").append(String.valueOf(url.getAnnotatedTypes()));
+      out.append(", \"failed\": ").append(String.valueOf(url.isFailed()));
+      out.append(", \"annotations\": {");
+      
+      String separator = "";
+      
+      for (Map.Entry<String, Integer> entry : url.getAnnotations().entrySet()) {
+        
+        out.append(separator);
+        writeString(out, entry.getKey());
+        out.append(": ").append(String.valueOf(entry.getValue()));
+        separator = ", ";
+      }
+      
+      out.append("}}");
+    }
+    
+    out.append(urls.isEmpty() ? "]" : "\n  ]");
+    out.append(",\n  \"annotations\": {");
+    
+    String separator = "\n    ";
+    
+    for (Map.Entry<String, List<String>> entry : annotations.entrySet()) {
+      
+      out.append(separator);
+      writeString(out, entry.getKey());
+      out.append(": ");
+      writeStrings(out, entry.getValue());
+      separator = ",\n    ";
+    }
+    
+    out.append(annotations.isEmpty() ? "}" : "\n  }");
+    out.append("\n}\n");
+  }
+  
+  /**
+   * Get the report as a JSON object.
+   * 
+   * @return the JSON text
+   */
+  public String toJson() {
+    
+    StringBuilder json = new StringBuilder();
+    
+    try {
+      
+      writeJson(json);
+      
+    } catch (IOException e) {
+      
+      // A StringBuilder does not throw
+      throw new UncheckedIOException(e);
+    }
+    
+    return json.toString();
+  }
+  
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    
+    return "ScanReport[packages=" + packages + ", urls=" + urls.size() +
+        ", classes=" + getClasses() + ", durationNanos=" + durationNanos + "]";
+  }
+  
+  /*
+   * Record that a factory resolved an annotation from the scan.
+   */
+  void resolved(String annotationName) {
+    
+    resolvedAnnotations.add(annotationName);
+  }
+  
+  /*
+   * Check whether any of the classes lies within a root package.
+   */
+  private static boolean matches(String reflectorPackage, Collection<String> classNames) {
+    
+    String prefix = reflectorPackage.isEmpty() ? "" : reflectorPackage + ".";
+    
+    for (String className : classNames) {
+      
+      if (className.startsWith(prefix)) {
+        
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /*
+   * Write a JSON array of Strings.
+   */
+  private static void writeStrings(Appendable out, List<String> values) throws IOException {
+    
+    out.append('[');
+    
+    for (int i = 0; i < values.size(); i++) {
+      
+      if (i>0) {
+        
+        out.append(", ");
+      }
+      
+      writeString(out, values.get(i));
+    }
+    
+    out.append(']');
+  }
+  
+  /*
+   * Write a JSON String.
+   */
+  private static void writeString(Appendable out, String value) throws IOException {
+    
+    out.append('"');
+    
+    for (int i = 0; i < value.length(); i++) {
+      
+      char c = value.charAt(i);
+      
+      if (c=='"' || c=='\\') {
+        
+        out.append('\\').append(c);
+        
+      } else if (c<0x20) {
+        
+        out.append(String.format("\\u%04x", (int) c));
+        
+      } else {
+        
+        out.append(c);
+      }
+    }
+    
+    out.append('"');
+  }
+  
+  /**
+   * The scan of one classpath URL.
+   */
+  public static final class UrlScan {
+    
+    /*
+     * 
+     */
+    private final String url;
+    
+    /*
+     * The annotations found on the classes of the URL, with their counts
+     */
+    final Map<String, Integer> annotations = new LinkedHashMap<>();
+    
+    /*
+     * The remaining fields are assigned by the ScanRecorder while the URL is
+     * scanned, and only read once the report is published
+     */
+    long durationNanos;
+    
+    /*
+     * 
+     */
+    int classes;
+    
+    /*
+     * 
+     */
+    long bytes;
+    
+    /*
+     * 
+     */
+    long allocatedBytes;
+    
+    /*
+     * 
+     */
+    int annotatedTypes;
+    
+    /*
+     * 
+     */
+    boolean failed;
+    
+    /*
+     * 
+     */
+    UrlScan(String url) {
+      
+      this.url = url;
+    }
+    
+    /**
+     * Get the URL.
+     * 
+     * @return the external form of the URL
+     */
+    public String getUrl() {
+      
+      return url;
+    }
+    
+    /**
+     * Get the time the scan of the URL took.
+     * 
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+      
+      return durationNanos;
+    }
+    
+    /**
+     * Get the number of class files read from the URL.
+     * 
+     * @return the number of classes
+     */
+    public int getClasses() {
+      
+      return classes;
+    }
+    
+    /**
+     * Get the size of the URL: the size of the class files read from a
+     * directory, or the size of a jar file.
+     * 
+     * @return the size in bytes, or 0 if unknown
+     */
+    public long getBytes() {
+      
+      return bytes;
+    }
+    
+    /**
+     * Get the memory allocated while scanning the URL.
+     * 
+     * @return the allocated bytes, or -1 if the JVM does not count them
+     */
+    public long getAllocatedBytes() {
+      
+      return allocatedBytes;
+    }
+    
+    /**
+     * Get the number of annotated classes in the URL.
+     * 
+     * @return the number of annotated classes
+     */
+    public int getAnnotatedTypes() {
+      
+      return annotatedTypes;
+    }
+    
+    /**
+     * Get the number of classes in the URL with each annotation.
+     * 
+     * @return an unmodifiable Map of counts by annotation name
+     */
+    public Map<String, Integer> getAnnotations() {
+      
+      return Collections.unmodifiableMap(annotations);
+    }
+    
+    /**
+     * Check whether the URL could not be read and was skipped.
+     * 
+     * @return true if the scan of the URL failed
+     */
+    public boolean isFailed() {
+      
+      return failed;
+    }
+    
+    /**
+     * Check whether the URL holds no annotated class.
+     * 
+     * @return true if the URL is empty
+     */
+    public boolean isEmpty() {
+      
+      return annotatedTypes==0;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      
+      return "UrlScan[url=" + url + ", classes=" + classes + ", durationNanos=" +
+          durationNanos + "]";
+    }
+  }
+
+}
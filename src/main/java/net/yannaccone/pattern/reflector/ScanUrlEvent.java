@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event spanning the scan of one classpath URL, nested in
+ * a {@link ScanEvent}.
+ */
+@Name("net.yannaccone.pattern.reflector.ScanUrl")
+@Label("Reflector URL Scan")
+@Category({"Pattern", "Reflector"})
+@Description("The scan of one classpath URL for annotated classes")
+@StackTrace(false)
+final class ScanUrlEvent extends jdk.jfr.Event {
+  
+  /*
+   * 
+   */
+  @Label("URL")
+  String url;
+  
+  /*
+   * 
+   */
+  @Label("Failed")
+  @Description("Whether the URL could not be read and was skipped")
+  boolean failed;
+
+}
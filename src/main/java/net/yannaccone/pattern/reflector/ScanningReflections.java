@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership.  The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package net.yannaccone.pattern.reflector;
+
+import java.net.URL;
+
+import org.reflections.Configuration;
+import org.reflections.Reflections;
+import org.reflections.ReflectionsException;
+import org.reflections.scanners.Scanner;
+
+/**
+ * A Reflections that scans its URLs one at a time on the calling thread, so
+ * that the scan of each URL can be observed.  It scans the same URLs with
+ * the same scanners as Reflections does, and likewise skips a URL that
+ * cannot be read.  When one of the scanners is a {@link ScanRecorder}, it is
+ * told where the scan of each URL starts and ends.
+ * <p>
+ * Reflections scans from its constructor, before the fields of a subclass
+ * are assigned, so this class keeps no state of its own.
+ */
+final class ScanningReflections extends Reflections {
+
+  /**
+   * Scan the URLs of the provided configuration.
+   * 
+   * @param configuration the Configuration holding the URLs and scanners
+   */
+  ScanningReflections(Configuration configuration) {
+    
+    super(configuration);
+  }
+
+  /* (non-Javadoc)
+   * @see org.reflections.Reflections#scan()
+   */
+  @Override
+  protected void scan() {
+    
+    ScanRecorder recorder = null;
+    
+    for (Scanner scanner : configuration.getScanners()) {
+      
+      if (scanner instanceof ScanRecorder) {
+        
+        recorder = (ScanRecorder) scanner;
+      }
+    }
+    
+    for (URL url : configuration.getUrls()) {
+      
+      ScanUrlEvent event = new ScanUrlEvent();
+      event.begin();
+      
+      if (recorder!=null) {
+        
+        recorder.begin(url);
+      }
+      
+      try {
+        
+        scan(url);
+        
+      } catch (ReflectionsException e) {
+        
+        event.failed = true;
+        
+        if (log!=null) {
+          
+          log.warn("could not create Vfs.Dir from url. ignoring the exception and continuing",
+              e);
+        }
+        
+      } finally {
+        
+        if (recorder!=null) {
+          
+          recorder.end(event.failed);
+        }
+        
+        if (event.shouldCommit()) {
+          
+          event.url = url.toExternalForm();
+          event.commit();
+        }
+      }
+    }
+  }
+
+}